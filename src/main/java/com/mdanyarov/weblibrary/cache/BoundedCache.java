@@ -0,0 +1,543 @@
+package com.mdanyarov.weblibrary.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+
+/**
+ * Bounded in-process cache with W-TinyLFU eviction, expiry after write and read-through loading.
+ * <p>
+ * New entries enter a small LRU window (1% of the capacity). Entries leaving the window compete
+ * for a place in the main space, a segmented LRU with a probation and a protected (80%) segment:
+ * a {@link FrequencySketch} estimates how often each key was requested recently, and a candidate
+ * is only admitted if it is requested more often than the entry it would evict. This keeps
+ * popular entries cached while one-off lookups pass through the window without flushing them.
+ * <p>
+ * The capacity is a maximum total weight: with the default weigher every entry weighs 1 and the
+ * capacity is an entry count; a custom weigher can estimate entry sizes in bytes instead.
+ * Values are loaded outside the lock, and a value loaded while an invalidation happened is
+ * returned but not cached, so an invalidation is never undone by a concurrent stale load.
+ *
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Loads a value on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        /**
+         * @return The value, or null if there is none (null values are not cached)
+         */
+        V load(K key) throws Exception;
+    }
+
+    /**
+     * Estimates the weight of an entry.
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final Weigher<Object, Object> SINGLETON_WEIGHER = (key, value) -> 1;
+
+    private final String name;
+    private long maximumWeight;
+    private long windowMaximum;
+    private long protectedMaximum;
+    private final long ttlNanos;
+    private final Weigher<? super K, ? super V> weigher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, Node<K, V>> data = new HashMap<>();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+    private long invalidations;
+
+    private long hitCount;
+    private long missCount;
+    private long loadSuccessCount;
+    private long loadFailureCount;
+    private long totalLoadTimeNanos;
+    private long evictionCount;
+    private long evictionWeight;
+    private long expirationCount;
+
+    /**
+     * Creates a cache bounded by the number of entries.
+     *
+     * @param name The cache name, used in statistics and logs
+     * @param maximumSize The maximum number of entries
+     * @param timeToLive How long an entry stays valid after it has been written
+     */
+    public BoundedCache(String name, long maximumSize, Duration timeToLive) {
+        this(name, maximumSize, SINGLETON_WEIGHER, timeToLive);
+    }
+
+    /**
+     * Creates a cache bounded by the total weight of its entries.
+     *
+     * @param name The cache name, used in statistics and logs
+     * @param maximumWeight The maximum total weight (e.g. estimated bytes)
+     * @param weigher Estimates the weight of an entry
+     * @param timeToLive How long an entry stays valid after it has been written
+     */
+    public BoundedCache(String name, long maximumWeight, Weigher<? super K, ? super V> weigher, Duration timeToLive) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Cache maximum must be positive: " + maximumWeight);
+        }
+        this.name = name;
+        setMaximum(maximumWeight);
+        this.ttlNanos = timeToLive.toNanos();
+        this.weigher = weigher;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMaximumWeight() {
+        lock.lock();
+        try {
+            return maximumWeight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns whether the cache is bounded by a custom weigher rather than by the number of entries.
+     */
+    public boolean isWeighted() {
+        return weigher != SINGLETON_WEIGHER;
+    }
+
+    /**
+     * Changes the capacity, evicting entries right away if the cache no longer fits.
+     * Entries are evicted from the window first, then in LRU order from probation and protected.
+     *
+     * @param maximumWeight The new maximum total weight
+     */
+    public void resize(long maximumWeight) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Cache maximum must be positive: " + maximumWeight);
+        }
+        lock.lock();
+        try {
+            setMaximum(maximumWeight);
+            while (windowWeight > windowMaximum && !window.isEmpty()) {
+                evictNode(window.first());
+            }
+            while (protectedWeight > protectedMaximum && !protectedQueue.isEmpty()) {
+                Node<K, V> demoted = protectedQueue.removeFirst();
+                protectedWeight -= demoted.weight;
+                demoted.queue = Queue.PROBATION;
+                probation.addLast(demoted);
+                probationWeight += demoted.weight;
+            }
+            while (windowWeight + probationWeight + protectedWeight > maximumWeight) {
+                evictNode(!probation.isEmpty() ? probation.first() : protectedQueue.first());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value, or null if it is absent or expired.
+     *
+     * @param key The key
+     * @return The cached value or null
+     */
+    public V getIfPresent(K key) {
+        lock.lock();
+        try {
+            sketch.increment(key);
+            Node<K, V> node = data.get(key);
+            if (node == null || isExpired(node, System.nanoTime())) {
+                if (node != null) {
+                    removeNode(node);
+                    expirationCount++;
+                }
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            onAccess(node);
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the cached value, loading and caching it on a miss.
+     *
+     * @param key The key
+     * @param loader Loads the value on a miss
+     * @return The value, or null if the loader found none
+     * @throws Exception if the loader fails
+     */
+    public V get(K key, Loader<? super K, ? extends V> loader) throws Exception {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long invalidationsBefore = currentInvalidations();
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.load(key);
+        } catch (Exception e) {
+            recordLoad(false, System.nanoTime() - start);
+            throw e;
+        }
+        recordLoad(value != null, System.nanoTime() - start);
+
+        if (value != null) {
+            lock.lock();
+            try {
+                if (invalidations == invalidationsBefore) {
+                    putLocked(key, value);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, replacing any previous one.
+     *
+     * @param key The key
+     * @param value The value (must not be null)
+     */
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            putLocked(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entry for a key.
+     *
+     * @param key The key
+     */
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            invalidations++;
+            Node<K, V> node = data.get(key);
+            if (node != null) {
+                removeNode(node);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every entry matching the predicate.
+     *
+     * @param predicate Tested with each key and value
+     * @return The number of removed entries
+     */
+    public int invalidateIf(BiPredicate<? super K, ? super V> predicate) {
+        lock.lock();
+        try {
+            invalidations++;
+            int removed = 0;
+            for (Node<K, V> node : new ArrayList<>(data.values())) {
+                if (predicate.test(node.key, node.value)) {
+                    removeNode(node);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            invalidations++;
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedQueue.clear();
+            windowWeight = 0;
+            probationWeight = 0;
+            protectedWeight = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return data.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache statistics.
+     *
+     * @return The statistics
+     */
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hitCount, missCount, loadSuccessCount, loadFailureCount, totalLoadTimeNanos,
+                    evictionCount, evictionWeight, expirationCount, data.size(),
+                    windowWeight + probationWeight + protectedWeight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setMaximum(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_RATIO));
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_RATIO);
+    }
+
+    private long currentInvalidations() {
+        lock.lock();
+        try {
+            return invalidations;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordLoad(boolean success, long nanos) {
+        lock.lock();
+        try {
+            if (success) {
+                loadSuccessCount++;
+            } else {
+                loadFailureCount++;
+            }
+            totalLoadTimeNanos += nanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putLocked(K key, V value) {
+        Node<K, V> existing = data.get(key);
+        if (existing != null) {
+            removeNode(existing);
+        }
+
+        long weight = Math.max(0, weigher.weigh(key, value));
+        if (weight > maximumWeight) {
+            // Could never fit; caching it would just flush everything else
+            return;
+        }
+
+        Node<K, V> node = new Node<>(key, value, weight, System.nanoTime());
+        data.put(key, node);
+        sketch.ensureCapacity(data.size());
+        node.queue = Queue.WINDOW;
+        window.addLast(node);
+        windowWeight += weight;
+        evict();
+    }
+
+    /**
+     * Moves an accessed entry to the most-recently-used end of its segment, promoting probation
+     * entries to the protected segment.
+     */
+    private void onAccess(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                probationWeight -= node.weight;
+                node.queue = Queue.PROTECTED;
+                protectedQueue.addLast(node);
+                protectedWeight += node.weight;
+                // Keep the protected segment within its share by demoting its LRU entries
+                while (protectedWeight > protectedMaximum && protectedQueue.first() != node) {
+                    Node<K, V> demoted = protectedQueue.removeFirst();
+                    protectedWeight -= demoted.weight;
+                    demoted.queue = Queue.PROBATION;
+                    probation.addLast(demoted);
+                    probationWeight += demoted.weight;
+                }
+            }
+            case PROTECTED -> protectedQueue.moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        // Entries overflowing the window become candidates for the main space
+        while (windowWeight > windowMaximum && !window.isEmpty()) {
+            Node<K, V> candidate = window.removeFirst();
+            windowWeight -= candidate.weight;
+            candidate.queue = Queue.PROBATION;
+            probation.addLast(candidate);
+            probationWeight += candidate.weight;
+            admit(candidate);
+        }
+    }
+
+    /**
+     * Evicts until the cache fits, letting the candidate and the main-space LRU victims compete on frequency.
+     */
+    private void admit(Node<K, V> candidate) {
+        while (windowWeight + probationWeight + protectedWeight > maximumWeight) {
+            Node<K, V> victim = probation.first();
+            if (victim == candidate) {
+                // Only the candidate is left on probation; compete with the protected segment instead
+                victim = protectedQueue.isEmpty() ? null : protectedQueue.first();
+            }
+            if (victim == null) {
+                evictNode(candidate);
+                return;
+            }
+            if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                evictNode(victim);
+            } else {
+                evictNode(candidate);
+                return;
+            }
+        }
+    }
+
+    private void evictNode(Node<K, V> node) {
+        removeNode(node);
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+
+    private void removeNode(Node<K, V> node) {
+        data.remove(node.key);
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> {
+                probation.remove(node);
+                probationWeight -= node.weight;
+            }
+            case PROTECTED -> {
+                protectedQueue.remove(node);
+                protectedWeight -= node.weight;
+            }
+        }
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+        return ttlNanos > 0 && now - node.writeTime >= ttlNanos;
+    }
+
+    private enum Queue {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Node<K, V> {
+        private final K key;
+        private final V value;
+        private final long weight;
+        private final long writeTime;
+        private Queue queue;
+        private Node<K, V> prev;
+        private Node<K, V> next;
+
+        private Node(K key, V value, long weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * Doubly-linked list of nodes in access order, least recently used first.
+     */
+    private static final class AccessQueue<K, V> {
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        boolean isEmpty() {
+            return head == null;
+        }
+
+        Node<K, V> first() {
+            return head;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+        }
+
+        Node<K, V> removeFirst() {
+            Node<K, V> node = head;
+            remove(node);
+            return node;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+        }
+    }
+}
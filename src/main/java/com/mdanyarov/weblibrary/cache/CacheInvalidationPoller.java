@@ -0,0 +1,286 @@
+package com.mdanyarov.weblibrary.cache;
+
+import com.mdanyarov.weblibrary.dao.CacheInvalidationDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
+import com.mdanyarov.weblibrary.entity.Genre;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.BookGenresChangedEvent;
+import com.mdanyarov.weblibrary.event.GenreChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import com.mdanyarov.weblibrary.event.UserChangedEvent;
+import com.mdanyarov.weblibrary.search.IsbnIndex;
+import com.mdanyarov.weblibrary.service.BookService;
+import com.mdanyarov.weblibrary.service.GenreService;
+import com.mdanyarov.weblibrary.service.OrderService;
+import com.mdanyarov.weblibrary.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the changes made by other application nodes to the caches of this node.
+ * <p>
+ * Services append the entities they change to the cache_invalidations table in the same
+ * transaction (see {@link CacheInvalidationDao}). This poller reads the entries after the highest
+ * ID it has seen, skips its own, evicts the changed books from the book cache and publishes the
+ * same change events a local change would, so every in-memory structure updates itself.
+ * <p>
+ * IDs are allocated when a row is inserted but become visible when its transaction commits, so a
+ * missing ID below the highest one seen may still appear. Such gaps are looked up again on every
+ * poll until they appear or time out. Each poll is thus an index range scan past the last seen ID
+ * plus a lookup of the open gaps, however long the log is.
+ * <p>
+ * If polling fails for longer than the maximum staleness, all caches are cleared once it succeeds
+ * again, since entries may have been missed or purged in the meantime.
+ */
+@Component
+public class CacheInvalidationPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationPoller.class);
+
+    private static final int MAX_GAPS = 1000;
+    private static final int PURGE_BATCH_SIZE = 10_000;
+
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final ConnectionPool connectionPool;
+    private final BookService bookService;
+    private final GenreService genreService;
+    private final UserService userService;
+    private final OrderService orderService;
+    private final BoundedCache<Long, Book> bookCache;
+    private final CacheRegistry cacheRegistry;
+    private final IsbnIndex isbnIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long gapTimeoutNanos;
+    private final long maxStalenessNanos;
+    private final long retentionMinutes;
+
+    /** The highest entry ID seen, or -1 before the first poll. */
+    private long lastSeenId = -1;
+    /** IDs below the highest one seen that have not appeared yet, with the time they were first missed. */
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+    private long lastSuccessNanos;
+
+    @Autowired
+    public CacheInvalidationPoller(CacheInvalidationDao cacheInvalidationDao, ConnectionPool connectionPool,
+                                   BookService bookService, GenreService genreService, UserService userService,
+                                   OrderService orderService, BoundedCache<Long, Book> bookCache, CacheRegistry cacheRegistry,
+                                   IsbnIndex isbnIndex, ApplicationEventPublisher eventPublisher,
+                                   @Value("${cache.invalidation.batchSize:500}") int batchSize,
+                                   @Value("${cache.invalidation.gapTimeoutMs:60000}") long gapTimeoutMs,
+                                   @Value("${cache.invalidation.maxStalenessMs:30000}") long maxStalenessMs,
+                                   @Value("${cache.invalidation.retentionMinutes:60}") long retentionMinutes) {
+        this.cacheInvalidationDao = cacheInvalidationDao;
+        this.connectionPool = connectionPool;
+        this.bookService = bookService;
+        this.genreService = genreService;
+        this.userService = userService;
+        this.orderService = orderService;
+        this.bookCache = bookCache;
+        this.cacheRegistry = cacheRegistry;
+        this.isbnIndex = isbnIndex;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+        this.gapTimeoutNanos = gapTimeoutMs * 1_000_000;
+        this.maxStalenessNanos = maxStalenessMs * 1_000_000;
+        this.retentionMinutes = retentionMinutes;
+    }
+
+    /**
+     * Starts reading the log at its current end once the context is ready; the caches are empty
+     * at this point, so older entries do not matter.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (lastSeenId >= 0) {
+            return;
+        }
+        try (Connection connection = connectionPool.getConnection()) {
+            lastSeenId = cacheInvalidationDao.findMaxId(connection);
+            lastSuccessNanos = System.nanoTime();
+            logger.info("Cache invalidation log read from ID {} as node {}", lastSeenId, cacheInvalidationDao.getNodeId());
+        } catch (Exception e) {
+            logger.error("Error reading cache invalidation log", e);
+        }
+    }
+
+    /**
+     * Reads the new entries and applies those made by other nodes.
+     */
+    @Scheduled(fixedDelayString = "${cache.invalidation.pollIntervalMs:1000}",
+            initialDelayString = "${cache.invalidation.pollIntervalMs:1000}")
+    public synchronized void poll() {
+        if (lastSeenId < 0) {
+            start();
+            return;
+        }
+
+        List<CacheInvalidation> entries = new ArrayList<>();
+        try (Connection connection = connectionPool.getConnection()) {
+            if (!gaps.isEmpty()) {
+                for (CacheInvalidation entry : cacheInvalidationDao.findByIds(gaps.keySet(), connection)) {
+                    gaps.remove(entry.id());
+                    entries.add(entry);
+                }
+            }
+
+            List<CacheInvalidation> batch;
+            do {
+                batch = cacheInvalidationDao.findAfter(lastSeenId, batchSize, connection);
+                for (CacheInvalidation entry : batch) {
+                    addGaps(lastSeenId + 1, entry.id());
+                    lastSeenId = entry.id();
+                    entries.add(entry);
+                }
+            } while (batch.size() == batchSize);
+        } catch (Exception e) {
+            logger.warn("Error polling cache invalidation log: {}", e.getMessage());
+            return;
+        }
+
+        long now = System.nanoTime();
+        gaps.values().removeIf(firstMissed -> now - firstMissed > gapTimeoutNanos);
+        if (now - lastSuccessNanos > maxStalenessNanos) {
+            logger.warn("Cache invalidation log was not read for {} ms, clearing all caches",
+                    (now - lastSuccessNanos) / 1_000_000);
+            clearAll();
+        }
+        lastSuccessNanos = now;
+
+        String nodeId = cacheInvalidationDao.getNodeId();
+        List<CacheInvalidation> remote = entries.stream()
+                .filter(entry -> !nodeId.equals(entry.nodeId()))
+                .toList();
+        if (!remote.isEmpty()) {
+            logger.debug("Applying {} cache invalidations from other nodes", remote.size());
+            apply(remote);
+        }
+    }
+
+    /**
+     * Deletes the entries older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${cache.invalidation.purgeIntervalMs:600000}",
+            initialDelayString = "${cache.invalidation.purgeIntervalMs:600000}")
+    public void purge() {
+        try (Connection connection = connectionPool.getConnection()) {
+            int deleted = cacheInvalidationDao.deleteOlderThan(LocalDateTime.now().minusMinutes(retentionMinutes),
+                    PURGE_BATCH_SIZE, connection);
+            if (deleted > 0) {
+                logger.debug("Purged {} cache invalidations", deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Error purging cache invalidation log: {}", e.getMessage());
+        }
+    }
+
+    private void addGaps(long fromId, long toIdExclusive) {
+        long now = System.nanoTime();
+        for (long id = fromId; id < toIdExclusive && gaps.size() < MAX_GAPS; id++) {
+            gaps.put(id, now);
+        }
+    }
+
+    /**
+     * Applies a batch of entries, handling each changed entity once.
+     */
+    private void apply(List<CacheInvalidation> entries) {
+        Map<CacheInvalidation.EntityType, Map<Long, List<String>>> changes = new EnumMap<>(CacheInvalidation.EntityType.class);
+        for (CacheInvalidation entry : entries) {
+            changes.computeIfAbsent(entry.entityType(), type -> new LinkedHashMap<>())
+                    .computeIfAbsent(entry.entityId(), id -> new ArrayList<>())
+                    .add(entry.changeType());
+        }
+
+        Map<Long, List<String>> genres = changes.getOrDefault(CacheInvalidation.EntityType.GENRE, Map.of());
+        if (!genres.isEmpty()) {
+            genreService.reload();
+            genres.forEach((genreId, types) -> eventPublisher.publishEvent(new GenreChangedEvent(
+                    GenreChangedEvent.Type.valueOf(types.get(types.size() - 1)), genreId)));
+        }
+        changes.getOrDefault(CacheInvalidation.EntityType.BOOK, Map.of()).forEach(this::applyBookChange);
+        changes.getOrDefault(CacheInvalidation.EntityType.BOOK_GENRES, Map.of()).keySet().forEach(this::applyBookGenresChange);
+        changes.getOrDefault(CacheInvalidation.EntityType.USER, Map.of()).forEach(this::applyUserChange);
+        changes.getOrDefault(CacheInvalidation.EntityType.ORDER, Map.of()).forEach(this::applyOrderChange);
+    }
+
+    private void applyBookChange(Long bookId, List<String> types) {
+        bookCache.invalidate(bookId);
+        try {
+            Optional<Book> book = bookService.findById(bookId);
+            boolean created = types.contains(BookChangedEvent.Type.CREATED.name());
+            if (book.isPresent()) {
+                isbnIndex.add(book.get().getIsbn());
+                eventPublisher.publishEvent(new BookChangedEvent(
+                        created ? BookChangedEvent.Type.CREATED : BookChangedEvent.Type.UPDATED, bookId, book.get()));
+            } else if (!created) {
+                eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, bookId, null));
+            }
+        } catch (Exception e) {
+            logger.error("Error applying change of book " + bookId, e);
+        }
+    }
+
+    private void applyBookGenresChange(Long bookId) {
+        try {
+            Set<Long> genreIds = genreService.findByBookId(bookId).stream()
+                    .map(Genre::getId)
+                    .collect(Collectors.toSet());
+            eventPublisher.publishEvent(new BookGenresChangedEvent(bookId, genreIds));
+        } catch (Exception e) {
+            logger.error("Error applying genre change of book " + bookId, e);
+        }
+    }
+
+    private void applyUserChange(Long userId, List<String> types) {
+        try {
+            String username = userService.findById(userId).map(User::getUsername).orElse(null);
+            eventPublisher.publishEvent(new UserChangedEvent(
+                    UserChangedEvent.Type.valueOf(types.get(types.size() - 1)), userId, username));
+        } catch (Exception e) {
+            logger.error("Error applying change of user " + userId, e);
+        }
+    }
+
+    /**
+     * Publishes one event per logged status change, so listeners reacting to a particular status
+     * (such as new pending orders) see it even if the order has moved on since.
+     */
+    private void applyOrderChange(Long orderId, List<String> types) {
+        try {
+            Optional<Order> order = orderService.findById(orderId);
+            if (order.isEmpty()) {
+                return;
+            }
+            Long bookCopyId = order.get().getBookCopy().getId();
+            Long bookId = order.get().getBookCopy().getBook() != null ? order.get().getBookCopy().getBook().getId() : null;
+            for (String type : types) {
+                eventPublisher.publishEvent(new OrderChangedEvent(orderId, bookId, bookCopyId,
+                        Order.OrderStatus.valueOf(type), order.get().getReturnDate()));
+            }
+        } catch (Exception e) {
+            logger.error("Error applying change of order {}", orderId, e);
+        }
+    }
+
+    private void clearAll() {
+        cacheRegistry.getCaches().forEach(CacheMXBean::clear);
+        genreService.reload();
+    }
+}
@@ -0,0 +1,55 @@
+package com.mdanyarov.weblibrary.cache;
+
+/**
+ * Management interface of an application cache, exposed over JMX and on the admin cache page.
+ */
+public interface CacheMXBean {
+
+    String getName();
+
+    long getSize();
+
+    /**
+     * Returns the total weight of the entries: bytes for weighted caches, the entry count otherwise.
+     */
+    long getWeightedSize();
+
+    long getMaximumWeight();
+
+    boolean isWeighted();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    double getMissRate();
+
+    long getEvictionCount();
+
+    long getExpirationCount();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    double getAverageLoadPenaltyMillis();
+
+    /**
+     * Returns the estimated memory held by the entries in bytes, or -1 if the cache is not weighed in bytes.
+     */
+    long getEstimatedMemoryBytes();
+
+    /**
+     * Removes all entries.
+     */
+    void clear();
+
+    /**
+     * Changes the capacity, evicting entries if the cache no longer fits.
+     *
+     * @param maximumWeight The new maximum weight (entries, or bytes for weighted caches)
+     */
+    void resize(long maximumWeight);
+}
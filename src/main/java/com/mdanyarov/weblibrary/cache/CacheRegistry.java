@@ -0,0 +1,200 @@
+package com.mdanyarov.weblibrary.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Registry of the application caches.
+ * <p>
+ * Every cache is exposed as a {@link CacheMXBean} under
+ * {@code com.mdanyarov.weblibrary:type=Cache,name=<cache name>} in the platform MBean server, and
+ * the same views back the admin cache page. Weighted caches in this application are weighed in
+ * estimated bytes, so their weighted size doubles as their memory estimate.
+ */
+public class CacheRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheRegistry.class);
+
+    private static final String JMX_DOMAIN = "com.mdanyarov.weblibrary";
+
+    private final Map<String, CacheMXBean> caches = new LinkedHashMap<>();
+    private final List<ObjectName> registeredNames = new ArrayList<>();
+
+    public CacheRegistry(List<BoundedCache<?, ?>> caches) {
+        caches.stream()
+                .sorted(Comparator.comparing(BoundedCache::getName))
+                .forEach(cache -> this.caches.put(cache.getName(), new CacheView(cache)));
+    }
+
+    /**
+     * Returns the caches ordered by name.
+     */
+    public List<CacheMXBean> getCaches() {
+        return List.copyOf(caches.values());
+    }
+
+    /**
+     * Finds a cache by name.
+     *
+     * @param name Cache name
+     * @return The cache
+     * @throws IllegalArgumentException if there is no cache with that name
+     */
+    public CacheMXBean getCache(String name) {
+        CacheMXBean cache = caches.get(name);
+        if (cache == null) {
+            throw new IllegalArgumentException("Cache not found: " + name);
+        }
+        return cache;
+    }
+
+    /**
+     * Registers the caches with the platform MBean server once the context has started.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void registerMBeans() {
+        if (!registeredNames.isEmpty()) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (CacheMXBean cache : caches.values()) {
+            try {
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Cache,name=" + ObjectName.quote(cache.getName()));
+                if (server.isRegistered(objectName)) {
+                    // Left behind by a previous deployment of the application in the same JVM
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(cache, objectName);
+                registeredNames.add(objectName);
+            } catch (JMException e) {
+                logger.warn("Error registering cache {} with JMX: {}", cache.getName(), e.getMessage());
+            }
+        }
+        logger.info("Registered {} caches with JMX", registeredNames.size());
+    }
+
+    /**
+     * Unregisters the caches when the context is closed, so redeployments do not leak them.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void unregisterMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registeredNames) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.debug("Error unregistering {}: {}", objectName, e.getMessage());
+            }
+        }
+        registeredNames.clear();
+    }
+
+    /**
+     * Management view of a {@link BoundedCache}.
+     */
+    private static final class CacheView implements CacheMXBean {
+
+        private final BoundedCache<?, ?> cache;
+
+        private CacheView(BoundedCache<?, ?> cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        public String getName() {
+            return cache.getName();
+        }
+
+        @Override
+        public long getSize() {
+            return cache.size();
+        }
+
+        @Override
+        public long getWeightedSize() {
+            return cache.stats().weightedSize();
+        }
+
+        @Override
+        public long getMaximumWeight() {
+            return cache.getMaximumWeight();
+        }
+
+        @Override
+        public boolean isWeighted() {
+            return cache.isWeighted();
+        }
+
+        @Override
+        public long getHitCount() {
+            return cache.stats().hitCount();
+        }
+
+        @Override
+        public long getMissCount() {
+            return cache.stats().missCount();
+        }
+
+        @Override
+        public double getHitRate() {
+            return cache.stats().hitRate();
+        }
+
+        @Override
+        public double getMissRate() {
+            CacheStats stats = cache.stats();
+            return stats.requestCount() == 0 ? 0.0 : (double) stats.missCount() / stats.requestCount();
+        }
+
+        @Override
+        public long getEvictionCount() {
+            return cache.stats().evictionCount();
+        }
+
+        @Override
+        public long getExpirationCount() {
+            return cache.stats().expirationCount();
+        }
+
+        @Override
+        public long getLoadSuccessCount() {
+            return cache.stats().loadSuccessCount();
+        }
+
+        @Override
+        public long getLoadFailureCount() {
+            return cache.stats().loadFailureCount();
+        }
+
+        @Override
+        public double getAverageLoadPenaltyMillis() {
+            return cache.stats().averageLoadPenaltyNanos() / 1_000_000.0;
+        }
+
+        @Override
+        public long getEstimatedMemoryBytes() {
+            return cache.isWeighted() ? cache.stats().weightedSize() : -1;
+        }
+
+        @Override
+        public void clear() {
+            cache.invalidateAll();
+            logger.info("Cache {} cleared", cache.getName());
+        }
+
+        @Override
+        public void resize(long maximumWeight) {
+            cache.resize(maximumWeight);
+            logger.info("Cache {} resized to {}", cache.getName(), maximumWeight);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.mdanyarov.weblibrary.cache;
+
+/**
+ * Snapshot of the statistics of a {@link BoundedCache}.
+ *
+ * @param hitCount Number of lookups that found a cached value
+ * @param missCount Number of lookups that did not find a cached value
+ * @param loadSuccessCount Number of values loaded successfully
+ * @param loadFailureCount Number of loads that failed or returned nothing
+ * @param totalLoadTimeNanos Total time spent loading values
+ * @param evictionCount Number of entries evicted because the cache was full
+ * @param evictionWeight Total weight of the evicted entries
+ * @param expirationCount Number of entries dropped because their time-to-live had passed
+ * @param size Current number of entries
+ * @param weightedSize Current total weight of the entries
+ */
+public record CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                         long totalLoadTimeNanos, long evictionCount, long evictionWeight, long expirationCount,
+                         long size, long weightedSize) {
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of lookups that found a cached value, or 1.0 if there were no lookups.
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * Returns the average time spent loading a value in nanoseconds.
+     */
+    public double averageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+}
@@ -0,0 +1,94 @@
+package com.mdanyarov.weblibrary.cache;
+
+/**
+ * Count-min sketch estimating how often keys have been accessed recently.
+ * <p>
+ * Each key maps to one 4-bit counter in each of four rows; the estimate is the smallest of them.
+ * Once the number of recorded accesses reaches ten times the width, all counters are halved,
+ * so old popularity fades and the sketch follows changes in the access pattern.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb0f3c7a5, 0x5c1e7d4b, 0xe6546b64};
+
+    private byte[][] table;
+    private int mask;
+    private int additions;
+    private int sampleSize;
+
+    FrequencySketch() {
+        resize(64);
+    }
+
+    /**
+     * Grows the sketch so that it can track about the given number of distinct keys.
+     *
+     * @param expectedEntries The number of entries the cache currently holds
+     */
+    void ensureCapacity(int expectedEntries) {
+        if (expectedEntries > mask + 1) {
+            resize(Integer.highestOneBit(Math.max(expectedEntries, 32) - 1) << 1);
+        }
+    }
+
+    /**
+     * Returns the estimated access frequency of the key (0 to 15).
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, table[row][index(hash, row)]);
+        }
+        return min;
+    }
+
+    /**
+     * Records an access of the key.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    private void resize(int width) {
+        table = new byte[DEPTH][width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+        additions = 0;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private static int spread(int hash) {
+        hash ^= hash >>> 17;
+        hash *= 0xed5ad4bb;
+        hash ^= hash >>> 11;
+        return hash;
+    }
+}
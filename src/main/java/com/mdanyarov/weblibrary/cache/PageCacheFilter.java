@@ -0,0 +1,437 @@
+package com.mdanyarov.weblibrary.cache;
+
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.GenreChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import com.mdanyarov.weblibrary.search.CatalogVersions;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.i18n.CookieLocaleResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the rendered HTML of pages viewed anonymously, with stale-while-revalidate.
+ * <p>
+ * Entries are keyed by URL and locale cookie. A page is fresh for a short time as long as the
+ * catalog has not changed since it was rendered (see {@link CatalogVersions}). After that it is
+ * still served, and a single refresh per page renders it again: the request that first finds the
+ * page stale is answered with the stale copy in full and then, with the visitor no longer waiting,
+ * renders the page through the filter chain into a detached response. Book, genre and order
+ * changes drop all pages at once, since cached pages could link to deleted books or show
+ * availability that changed.
+ * <p>
+ * Only requests that cannot be authenticated (no session) are served from or stored in the cache,
+ * so pages with user names, role-dependent controls or CSRF tokens are never shared. Responses
+ * that set cookies, such as a locale change, are not cached.
+ */
+public class PageCacheFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageCacheFilter.class);
+
+    private static final String LOCALE_COOKIE = CookieLocaleResolver.DEFAULT_COOKIE_NAME;
+
+    /**
+     * A rendered page.
+     *
+     * @param body The HTML
+     * @param contentType The response content type
+     * @param etag The response ETag, or null
+     * @param cacheControl The response Cache-Control header, or null
+     * @param catalogTag The catalog stamp the page was rendered at
+     * @param renderedAt When the page was rendered (System.nanoTime)
+     */
+    public record CachedPage(byte[] body, String contentType, String etag, String cacheControl,
+                             String catalogTag, long renderedAt) {
+    }
+
+    private final BoundedCache<String, CachedPage> pageCache;
+    private final CatalogVersions catalogVersions;
+    private final long freshNanos;
+    /** Keys of the stale pages being refreshed. */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public PageCacheFilter(BoundedCache<String, CachedPage> pageCache, CatalogVersions catalogVersions,
+                           Duration freshFor) {
+        this.pageCache = pageCache;
+        this.catalogVersions = catalogVersions;
+        this.freshNanos = freshFor.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!isCacheable(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String key = cacheKey(request);
+        CachedPage page = pageCache.getIfPresent(key);
+        if (page != null) {
+            writePage(page, request, response);
+            if (!isFresh(page) && refreshing.add(key)) {
+                try {
+                    response.flushBuffer();
+                    refresh(key, request, response, filterChain);
+                } finally {
+                    refreshing.remove(key);
+                }
+            }
+            return;
+        }
+
+        String catalogTag = catalogVersions.catalogStamp().tag();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            store(key, wrapper.getStatus(), wrapper.getContentType(), wrapper.getHeader(HttpHeaders.ETAG),
+                    wrapper.getHeader(HttpHeaders.CACHE_CONTROL), wrapper.getHeaders(HttpHeaders.SET_COOKIE).isEmpty(),
+                    wrapper.getContentAsByteArray(), catalogTag);
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Drops all pages after changes that can alter links, book data or availability on every page.
+     */
+    @EventListener({BookChangedEvent.class, GenreChangedEvent.class, OrderChangedEvent.class})
+    public void onCatalogChanged() {
+        pageCache.invalidateAll();
+    }
+
+    /**
+     * Renders a stale page again after the visitor has been sent the stale copy. The response is
+     * complete at this point, so failures are only logged.
+     */
+    private void refresh(String key, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) {
+        String catalogTag = catalogVersions.catalogStamp().tag();
+        DetachedResponse detached = new DetachedResponse(response);
+        try {
+            filterChain.doFilter(new UnconditionalRequest(request), detached);
+            store(key, detached.getStatus(), detached.getContentType(), detached.getHeader(HttpHeaders.ETAG),
+                    detached.getHeader(HttpHeaders.CACHE_CONTROL), detached.getHeaders(HttpHeaders.SET_COOKIE).isEmpty(),
+                    detached.getBody(), catalogTag);
+        } catch (IOException | ServletException | RuntimeException e) {
+            logger.warn("Error refreshing cached page {}: {}", key, e.getMessage());
+        }
+    }
+
+    private boolean isCacheable(HttpServletRequest request) {
+        return "GET".equals(request.getMethod())
+                && request.getSession(false) == null
+                && request.getParameter("lang") == null;
+    }
+
+    private boolean isFresh(CachedPage page) {
+        return page.catalogTag().equals(catalogVersions.catalogStamp().tag())
+                && System.nanoTime() - page.renderedAt() < freshNanos;
+    }
+
+    private void writePage(CachedPage page, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (page.cacheControl() != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, page.cacheControl());
+        }
+        if (page.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, page.etag());
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null && ifNoneMatch.contains(page.etag())) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        response.setContentType(page.contentType());
+        response.setContentLength(page.body().length);
+        response.getOutputStream().write(page.body());
+    }
+
+    private void store(String key, int status, String contentType, String etag, String cacheControl,
+                       boolean noCookies, byte[] body, String catalogTag) {
+        if (status == HttpServletResponse.SC_OK && noCookies && body.length > 0
+                && contentType != null && contentType.startsWith("text/html")) {
+            pageCache.put(key, new CachedPage(body, contentType, etag, cacheControl, catalogTag, System.nanoTime()));
+        }
+    }
+
+    private static String cacheKey(HttpServletRequest request) {
+        String query = request.getQueryString();
+        String locale = localeCookie(request);
+        return "anonymous|" + (locale != null ? locale : "") + "|" + request.getRequestURI()
+                + (query != null ? "?" + query : "");
+    }
+
+    private static String localeCookie(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (LOCALE_COOKIE.equals(cookie.getName())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The visitor's request without conditional headers, so that a refresh renders the full page
+     * rather than answering 304 Not Modified.
+     */
+    private static final class UnconditionalRequest extends HttpServletRequestWrapper {
+
+        UnconditionalRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isConditional(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isConditional(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public long getDateHeader(String name) {
+            return isConditional(name) ? -1 : super.getDateHeader(name);
+        }
+
+        private static boolean isConditional(String name) {
+            return HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name) || HttpHeaders.IF_MODIFIED_SINCE.equalsIgnoreCase(name);
+        }
+    }
+
+    /**
+     * A response that keeps its status, headers and body to itself, for rendering a page after the
+     * real response has been completed. Everything else, such as URL encoding, goes to the real response.
+     */
+    private static final class DetachedResponse extends HttpServletResponseWrapper {
+        private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private int status = SC_OK;
+        private String contentType;
+        private String characterEncoding = StandardCharsets.ISO_8859_1.name();
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        DetachedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        byte[] getBody() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return body.toByteArray();
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void sendError(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void sendError(int status, String message) {
+            this.status = status;
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            status = SC_FOUND;
+            setHeader(HttpHeaders.LOCATION, location);
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            headers.put(name, new ArrayList<>(List.of(value)));
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) {
+                setContentType(value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            headers.computeIfAbsent(name, header -> new ArrayList<>()).add(value);
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            setHeader(name, String.valueOf(date));
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            addHeader(name, String.valueOf(date));
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            setHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            addHeader(name, String.valueOf(value));
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values != null && !values.isEmpty() ? values.get(0) : null;
+        }
+
+        @Override
+        public Collection<String> getHeaders(String name) {
+            return headers.getOrDefault(name, List.of());
+        }
+
+        @Override
+        public Collection<String> getHeaderNames() {
+            return headers.keySet();
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            addHeader(HttpHeaders.SET_COOKIE, cookie.getName());
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+            if (contentType != null) {
+                int charset = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+                if (charset >= 0) {
+                    characterEncoding = contentType.substring(charset + "charset=".length()).trim();
+                }
+            }
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public void setCharacterEncoding(String characterEncoding) {
+            this.characterEncoding = characterEncoding;
+            if (contentType != null && !contentType.toLowerCase(Locale.ROOT).contains("charset=")) {
+                contentType = contentType + ";charset=" + characterEncoding;
+            }
+        }
+
+        @Override
+        public String getCharacterEncoding() {
+            return characterEncoding;
+        }
+
+        @Override
+        public void setLocale(Locale locale) {
+        }
+
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setBufferSize(int size) {
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.reset();
+        }
+
+        @Override
+        public void reset() {
+            body.reset();
+            headers.clear();
+            status = SC_OK;
+            contentType = null;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        body.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) {
+                        body.write(bytes, offset, length);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), Charset.forName(characterEncoding)));
+            }
+            return writer;
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.mdanyarov.weblibrary.config;
 
+import com.mdanyarov.weblibrary.cache.BoundedCache;
+import com.mdanyarov.weblibrary.cache.CacheRegistry;
+import com.mdanyarov.weblibrary.cache.PageCacheFilter;
 import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.order.IdempotencyKeys;
+import com.mdanyarov.weblibrary.search.CatalogVersions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -8,16 +15,21 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Application configuration class for the Library application.
  * Handles core application setup and database configuration.
  */
 @Configuration
-@ComponentScan({"com.mdanyarov.weblibrary.service", "com.mdanyarov.weblibrary.dao", "com.mdanyarov.weblibrary.config", "com.mdanyarov.weblibrary.security"})
+@ComponentScan({"com.mdanyarov.weblibrary.service", "com.mdanyarov.weblibrary.dao", "com.mdanyarov.weblibrary.config", "com.mdanyarov.weblibrary.security", "com.mdanyarov.weblibrary.search", "com.mdanyarov.weblibrary.cache", "com.mdanyarov.weblibrary.order"})
 @PropertySource("classpath:application.properties")
+@EnableScheduling
 public class AppConfig {
 
     private final Environment environment;
@@ -55,4 +67,98 @@ public class AppConfig {
 
         return ConnectionPool.getInstance(url, username, password, maxPoolSize);
     }
+
+    /**
+     * Configures the book entity cache.
+     * The cache is sized by estimated bytes when cache.books.maxBytes is set, by entry count otherwise.
+     *
+     * @return Book cache keyed by book ID
+     */
+    @Bean
+    public BoundedCache<Long, Book> bookCache() {
+        Duration ttl = Duration.ofSeconds(Long.parseLong(environment.getProperty("cache.books.ttlSeconds", "600")));
+        String maxBytes = environment.getProperty("cache.books.maxBytes", "");
+
+        if (!maxBytes.isBlank()) {
+            return new BoundedCache<>("books", Long.parseLong(maxBytes.trim()),
+                    (id, book) -> estimateSize(book), ttl);
+        }
+        long maxEntries = Long.parseLong(environment.getProperty("cache.books.maxEntries", "10000"));
+        return new BoundedCache<>("books", maxEntries, ttl);
+    }
+
+    /**
+     * Configures the cache of users loaded for authentication, keyed by lower-case username.
+     * Unknown usernames are cached as empty values, so repeated attempts with them do not reach the database.
+     *
+     * @return User cache keyed by username
+     */
+    @Bean
+    public BoundedCache<String, Optional<User>> userDetailsCache() {
+        long maxEntries = Long.parseLong(environment.getProperty("cache.users.maxEntries", "5000"));
+        Duration ttl = Duration.ofSeconds(Long.parseLong(environment.getProperty("cache.users.ttlSeconds", "60")));
+        return new BoundedCache<>("users", maxEntries, ttl);
+    }
+
+    /**
+     * Configures the cache of pages rendered for anonymous visitors, bounded by the size of the HTML.
+     *
+     * @return Page cache keyed by locale and URL
+     */
+    @Bean
+    public BoundedCache<String, PageCacheFilter.CachedPage> pageCache() {
+        long maxBytes = Long.parseLong(environment.getProperty("cache.pages.maxBytes", "16777216"));
+        Duration ttl = Duration.ofSeconds(Long.parseLong(environment.getProperty("cache.pages.ttlSeconds", "600")));
+        return new BoundedCache<>("pages", maxBytes, (key, page) -> page.body().length + 2L * key.length(), ttl);
+    }
+
+    /**
+     * Configures the filter serving anonymous catalog pages from the page cache.
+     * It is registered with the servlet container in {@link WebAppInitializer}.
+     *
+     * @return PageCacheFilter instance
+     */
+    @Bean
+    public PageCacheFilter pageCacheFilter(BoundedCache<String, PageCacheFilter.CachedPage> pageCache,
+                                           CatalogVersions catalogVersions) {
+        Duration freshFor = Duration.ofSeconds(Long.parseLong(environment.getProperty("cache.pages.freshSeconds", "30")));
+        return new PageCacheFilter(pageCache, catalogVersions, freshFor);
+    }
+
+    /**
+     * Configures the cache of form submission results, keyed by user ID and idempotency key.
+     *
+     * @return Submission result cache
+     */
+    @Bean
+    public BoundedCache<String, IdempotencyKeys.Outcome> idempotencyCache() {
+        long maxEntries = Long.parseLong(environment.getProperty("orders.idempotency.maxEntries", "10000"));
+        Duration ttl = Duration.ofMinutes(Long.parseLong(environment.getProperty("orders.idempotency.retentionMinutes", "60")));
+        return new BoundedCache<>("idempotency", maxEntries, ttl);
+    }
+
+    /**
+     * Configures the registry exposing all application caches over JMX and on the admin cache page.
+     *
+     * @param caches All cache beans
+     * @return CacheRegistry instance
+     */
+    @Bean
+    public CacheRegistry cacheRegistry(List<BoundedCache<?, ?>> caches) {
+        return new CacheRegistry(caches);
+    }
+
+    /**
+     * Roughly estimates the heap size of a book: object headers and fields plus two bytes per character.
+     */
+    private static long estimateSize(Book book) {
+        long size = 160;
+        for (String text : new String[]{book.getTitle(), book.getAuthor(), book.getPublisher(),
+                book.getIsbn(), book.getDescription()}) {
+            if (text != null) {
+                size += 40 + 2L * text.length();
+            }
+        }
+        return size;
+    }
 }
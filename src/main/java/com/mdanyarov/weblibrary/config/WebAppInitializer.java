@@ -5,6 +5,7 @@ import jakarta.servlet.ServletRegistration;
 import org.springframework.web.WebApplicationInitializer;
 import org.springframework.web.context.ContextLoaderListener;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.filter.DelegatingFilterProxy;
 import org.springframework.web.servlet.DispatcherServlet;
 
 import java.lang.annotation.Annotation;
@@ -27,5 +28,9 @@ public class WebAppInitializer implements WebApplicationInitializer {
 
         registration.setLoadOnStartup(1);
         registration.addMapping("/");
+
+        // Serves anonymous catalog pages from the page cache (see AppConfig#pageCacheFilter)
+        servletContext.addFilter("pageCacheFilter", new DelegatingFilterProxy("pageCacheFilter", context))
+                .addMappingForUrlPatterns(null, false, "/books");
     }
 }
@@ -1,5 +1,6 @@
 package com.mdanyarov.weblibrary.config;
 
+import com.mdanyarov.weblibrary.security.CurrentUserArgumentResolver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
@@ -7,6 +8,7 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -17,6 +19,7 @@ import org.thymeleaf.spring6.SpringTemplateEngine;
 import org.thymeleaf.spring6.templateresolver.SpringResourceTemplateResolver;
 import org.thymeleaf.spring6.view.ThymeleafViewResolver;
 
+import java.util.List;
 import java.util.Locale;
 
 
@@ -32,11 +35,14 @@ public class WebConfig implements WebMvcConfigurer {
 
     private final ApplicationContext applicationContext;
     private final Environment environment;
+    private final CurrentUserArgumentResolver currentUserArgumentResolver;
 
     @Autowired
-    public WebConfig(ApplicationContext applicationContext, Environment environment) {
+    public WebConfig(ApplicationContext applicationContext, Environment environment,
+                     CurrentUserArgumentResolver currentUserArgumentResolver) {
         this.applicationContext = applicationContext;
         this.environment = environment;
+        this.currentUserArgumentResolver = currentUserArgumentResolver;
     }
 
     /**
@@ -105,6 +111,14 @@ public class WebConfig implements WebMvcConfigurer {
         return interceptor;
     }
 
+    /**
+     * Registers argument resolvers, e.g. for {@link com.mdanyarov.weblibrary.security.CurrentUser} parameters.
+     */
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);
+    }
+
     /**
      * Registers interceptors
      */
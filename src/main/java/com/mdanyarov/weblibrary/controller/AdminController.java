@@ -0,0 +1,71 @@
+package com.mdanyarov.weblibrary.controller;
+
+import com.mdanyarov.weblibrary.cache.CacheRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+/**
+ * Controller for administrator operations.
+ */
+@Controller
+@RequestMapping("/admin")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    private final CacheRegistry cacheRegistry;
+
+    @Autowired
+    public AdminController(CacheRegistry cacheRegistry) {
+        this.cacheRegistry = cacheRegistry;
+    }
+
+    /**
+     * Shows the application caches with their statistics.
+     */
+    @GetMapping("/caches")
+    public String showCaches(Model model) {
+        model.addAttribute("caches", cacheRegistry.getCaches());
+        return "admin/caches";
+    }
+
+    /**
+     * Clears a cache.
+     */
+    @PostMapping("/caches/{name}/clear")
+    public String clearCache(@PathVariable("name") String name, RedirectAttributes redirectAttributes) {
+        try {
+            cacheRegistry.getCache(name).clear();
+            redirectAttributes.addFlashAttribute("successMessage", "Cache cleared: " + name);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+        return "redirect:/admin/caches";
+    }
+
+    /**
+     * Changes the capacity of a cache until the next restart.
+     */
+    @PostMapping("/caches/{name}/resize")
+    public String resizeCache(@PathVariable("name") String name,
+                              @RequestParam("maximumWeight") long maximumWeight,
+                              RedirectAttributes redirectAttributes) {
+        try {
+            cacheRegistry.getCache(name).resize(maximumWeight);
+            redirectAttributes.addFlashAttribute("successMessage", "Cache resized: " + name);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error resizing cache: " + name, e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Error resizing cache. Please try again later.");
+        }
+        return "redirect:/admin/caches";
+    }
+}
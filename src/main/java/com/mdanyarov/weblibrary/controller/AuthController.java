@@ -3,6 +3,7 @@ package com.mdanyarov.weblibrary.controller;
 
 import com.mdanyarov.weblibrary.dto.UserRegistrationForm;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.security.CurrentUser;
 import com.mdanyarov.weblibrary.service.UserService;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
@@ -11,9 +12,7 @@ import jakarta.validation.constraints.Size;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -124,12 +123,8 @@ public class AuthController {
      * Shows the dashboard after successful login.
      */
     @GetMapping("/dashboard")
-    public String dashboard(Model model) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        String username = auth.getName();
-
+    public String dashboard(Model model, @CurrentUser User user) {
         try {
-            User user = userService.findByUsername(username).orElse(null);
             if (user != null) {
                 model.addAttribute("user", user);
 
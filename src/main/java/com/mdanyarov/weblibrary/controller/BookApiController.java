@@ -0,0 +1,36 @@
+package com.mdanyarov.weblibrary.controller;
+
+import com.mdanyarov.weblibrary.dto.BookSuggestion;
+import com.mdanyarov.weblibrary.search.SuggestionIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST controller for book endpoints used by client-side scripts.
+ */
+@RestController
+@RequestMapping("/api/books")
+public class BookApiController {
+
+    private final SuggestionIndex suggestionIndex;
+
+    @Autowired
+    public BookApiController(SuggestionIndex suggestionIndex) {
+        this.suggestionIndex = suggestionIndex;
+    }
+
+    /**
+     * Returns typeahead suggestions (titles and authors) for the catalog search box.
+     * Served entirely from memory.
+     */
+    @GetMapping("/suggest")
+    public List<BookSuggestion> suggest(@RequestParam("q") String query,
+                                        @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return suggestionIndex.suggest(query, limit);
+    }
+}
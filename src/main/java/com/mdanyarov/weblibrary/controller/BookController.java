@@ -1,19 +1,33 @@
 package com.mdanyarov.weblibrary.controller;
 
+import com.mdanyarov.weblibrary.dto.CatalogFilter;
+import com.mdanyarov.weblibrary.dto.FacetedPageResult;
 import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.search.CatalogVersions;
 import com.mdanyarov.weblibrary.service.BookService;
+import com.mdanyarov.weblibrary.service.GenreService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -25,58 +39,70 @@ public class BookController {
 
     private static final Logger logger = LoggerFactory.getLogger(BookController.class);
     private static final int DEFAULT_PAGE_SIZE = 12;
+    private static final Duration ANONYMOUS_MAX_AGE = Duration.ofMinutes(1);
 
     private final BookService bookService;
+    private final GenreService genreService;
+    private final CatalogVersions catalogVersions;
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, GenreService genreService, CatalogVersions catalogVersions) {
         this.bookService = bookService;
+        this.genreService = genreService;
+        this.catalogVersions = catalogVersions;
     }
 
     /**
      * Shows the book catalog page.
+     * Supports a text search combined with genre, publication year and availability facets.
      */
     @GetMapping
     public String showBookCatalog(@RequestParam(value = "search", required = false) String search,
+                                  @RequestParam(value = "genre", required = false) List<Long> genreIds,
+                                  @RequestParam(value = "yearFrom", required = false) Integer yearFrom,
+                                  @RequestParam(value = "yearTo", required = false) Integer yearTo,
+                                  @RequestParam(value = "available", defaultValue = "false") boolean availableOnly,
                                   @RequestParam(value = "page", defaultValue = "0") int page,
                                   @RequestParam(value = "size", defaultValue = "12") int size,
                                   Model model,
-                                  Authentication authentication) {
+                                  Authentication authentication,
+                                  NativeWebRequest webRequest) {
+
+        if (checkNotModified(webRequest, "catalog", catalogVersions.catalogStamp(), authentication)) {
+            return null;
+        }
 
         try {
-            List<Book> books;
-            int totalBooks;
-
-            if (search != null && !search.trim().isEmpty()) {
-                // Perform search
-                books = bookService.search(search);
-                totalBooks = books.size();
-
-                // Apply pagination to search results
-                int startIndex = page * size;
-                int endIndex = Math.min(startIndex + size, books.size());
-
-                if (startIndex < books.size()) {
-                    books = books.subList(startIndex, endIndex);
-                } else {
-                    books = List.of();
-                }
+            if (page < 0) page = 0;
+            if (size <= 0) size = DEFAULT_PAGE_SIZE;
 
+            // Facets and counts come from the in-memory facet index, only the page is loaded from the database
+            CatalogFilter filter = new CatalogFilter(search, genreIds, yearFrom, yearTo, availableOnly);
+            FacetedPageResult<Book> result = bookService.search(filter, page, size);
+            List<Book> books = result.getContent();
+            int totalBooks = (int) result.getTotalElements();
+
+            if (filter.hasQuery()) {
                 model.addAttribute("searchQuery", search);
-            } else {
-                // Get paginated results
-                books = bookService.findWithPagination(page, size);
-                totalBooks = bookService.getTotalCount();
             }
 
+            model.addAttribute("genres", genreService.findAll());
+            model.addAttribute("facets", result.getFacets());
+            model.addAttribute("selectedGenres", filter.getGenreIds());
+            model.addAttribute("yearFrom", yearFrom);
+            model.addAttribute("yearTo", yearTo);
+            model.addAttribute("availableOnly", availableOnly);
+            model.addAttribute("filterActive", filter.hasFacets());
+
             // Calculate pagination info
-            int totalPages = (int) Math.ceil((double) totalBooks / size);
+            int totalPages = result.getTotalPages();
 
             model.addAttribute("books", books);
             model.addAttribute("currentPage", page);
             model.addAttribute("pageSize", size);
             model.addAttribute("totalPages", totalPages);
             model.addAttribute("totalBooks", totalBooks);
+            model.addAttribute("totalExact", result.isTotalExact());
             model.addAttribute("hasBooks", !books.isEmpty());
 
             // Pagination flags
@@ -102,7 +128,12 @@ public class BookController {
      * Shows book details page.
      */
     @GetMapping("/{id}")
-    public String showBookDetails(@PathVariable Long id, Model model, Authentication authentication) {
+    public String showBookDetails(@PathVariable Long id, Model model, Authentication authentication,
+                                  NativeWebRequest webRequest) {
+        if (checkNotModified(webRequest, "book-" + id, catalogVersions.bookStamp(id), authentication)) {
+            return null;
+        }
+
         try {
             Optional<Book> bookOptional = bookService.findById(id);
 
@@ -298,6 +329,43 @@ public class BookController {
         }
     }
 
+    /**
+     * Sets the caching headers of a page and checks whether the client's copy is still current,
+     * in which case a 304 response has been prepared and nothing needs to be rendered.
+     * <p>
+     * The ETag covers the resource stamp, the locale and, for authenticated users, the user and
+     * session, since the page shows role-dependent controls and the session's CSRF token.
+     * Pages carrying flash messages are always rendered.
+     *
+     * @return true if the client's copy is current
+     */
+    private boolean checkNotModified(NativeWebRequest webRequest, String resource, CatalogVersions.Stamp stamp,
+                                     Authentication authentication) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (request == null || response == null) {
+            return false;
+        }
+        Map<String, ?> flashAttributes = RequestContextUtils.getInputFlashMap(request);
+        if (flashAttributes != null && !flashAttributes.isEmpty()) {
+            return false;
+        }
+
+        boolean isAuthenticated = authentication != null && authentication.isAuthenticated()
+                && !"anonymousUser".equals(authentication.getName());
+        String viewer = "anonymous";
+        CacheControl cacheControl = CacheControl.maxAge(ANONYMOUS_MAX_AGE).cachePublic();
+        if (isAuthenticated) {
+            String sessionId = request.getSession(false) != null ? request.getSession(false).getId() : "";
+            viewer = Integer.toHexString(Objects.hash(authentication.getName(), authentication.getAuthorities(), sessionId));
+            cacheControl = CacheControl.noCache().cachePrivate();
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+
+        String etag = "W/\"" + resource + "-" + stamp.tag() + "-" + LocaleContextHolder.getLocale() + "-" + viewer + "\"";
+        return webRequest.checkNotModified(etag, stamp.lastModified());
+    }
+
     /**
      * Helper method to add authentication attributes to the model.
      * This allows the template to show/hide elements based on user roles.
@@ -1,14 +1,16 @@
 package com.mdanyarov.weblibrary.controller;
 
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
 import com.mdanyarov.weblibrary.entity.Order;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.order.IdempotencyKeys;
+import com.mdanyarov.weblibrary.security.CurrentUser;
 import com.mdanyarov.weblibrary.service.OrderService;
-import com.mdanyarov.weblibrary.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -29,12 +31,20 @@ public class LibrarianController {
     private static final Logger logger = LoggerFactory.getLogger(LibrarianController.class);
 
     private final OrderService orderService;
-    private final UserService userService;
+    private final IdempotencyKeys idempotencyKeys;
 
     @Autowired
-    public LibrarianController(OrderService orderService, UserService userService) {
+    public LibrarianController(OrderService orderService, IdempotencyKeys idempotencyKeys) {
         this.orderService = orderService;
-        this.userService = userService;
+        this.idempotencyKeys = idempotencyKeys;
+    }
+
+    /**
+     * Adds a new idempotency key to every page, submitted by its order forms so resubmits are not processed twice.
+     */
+    @ModelAttribute(IdempotencyKeys.PARAMETER)
+    public String idempotencyKey() {
+        return idempotencyKeys.newKey();
     }
 
     /**
@@ -68,15 +78,16 @@ public class LibrarianController {
     }
 
     /**
-     * Shows pending orders for approval.
+     * Shows the pending orders claimed by the librarian and the number of unclaimed ones.
      */
     @GetMapping("/orders/pending")
-    public String showPendingOrders(Model model) {
+    public String showPendingOrders(@CurrentUser User librarian, Model model) {
         try {
-            List<Order> pendingOrders = orderService.findByStatus(Order.OrderStatus.PENDING);
+            List<Order> claimedOrders = librarian != null ? orderService.findClaimedOrders(librarian.getId()) : List.of();
 
-            model.addAttribute("orders", pendingOrders);
-            model.addAttribute("hasOrders", !pendingOrders.isEmpty());
+            model.addAttribute("orders", claimedOrders);
+            model.addAttribute("hasOrders", !claimedOrders.isEmpty());
+            model.addAttribute("unclaimedOrdersCount", orderService.countUnclaimedPendingOrders());
             model.addAttribute("orderStatus", "PENDING");
 
             return "librarian/orders";
@@ -88,6 +99,52 @@ public class LibrarianController {
         }
     }
 
+    /**
+     * Claims the next unclaimed pending orders for the librarian.
+     */
+    @PostMapping("/orders/pending/claim")
+    public String claimPendingOrders(@RequestParam(value = "count", defaultValue = "10") int count,
+                                     @CurrentUser User librarian,
+                                     RedirectAttributes redirectAttributes) {
+        if (librarian == null) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+            return "redirect:/librarian/orders/pending";
+        }
+        try {
+            int claimed = orderService.claimPendingOrders(librarian.getId(), count);
+            if (claimed > 0) {
+                redirectAttributes.addFlashAttribute("successMessage", claimed + " orders claimed");
+            } else {
+                redirectAttributes.addFlashAttribute("errorMessage", "There are no unclaimed pending orders.");
+            }
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error claiming pending orders for librarian: " + librarian.getId(), e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Error claiming orders. Please try again later.");
+        }
+        return "redirect:/librarian/orders/pending";
+    }
+
+    /**
+     * Releases the pending orders claimed by the librarian.
+     */
+    @PostMapping("/orders/pending/release")
+    public String releasePendingOrders(@CurrentUser User librarian, RedirectAttributes redirectAttributes) {
+        if (librarian == null) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+            return "redirect:/librarian/orders/pending";
+        }
+        try {
+            int released = orderService.releaseClaimedOrders(librarian.getId());
+            redirectAttributes.addFlashAttribute("successMessage", released + " orders released");
+        } catch (Exception e) {
+            logger.error("Error releasing pending orders for librarian: " + librarian.getId(), e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Error releasing orders. Please try again later.");
+        }
+        return "redirect:/librarian/orders/pending";
+    }
+
     /**
      * Shows all orders with filtering options.
      */
@@ -145,7 +202,7 @@ public class LibrarianController {
      * Shows order details and approval form.
      */
     @GetMapping("/orders/{orderId}")
-    public String showOrderDetails(@PathVariable("orderId") Integer orderId, Model model) {
+    public String showOrderDetails(@PathVariable("orderId") Long orderId, Model model) {
         try {
             Optional<Order> orderOptional = orderService.findById(orderId);
 
@@ -171,37 +228,36 @@ public class LibrarianController {
     @PostMapping("/orders/{orderId}/approve")
     public String approveOrder(@PathVariable("orderId") Long orderId,
                                @RequestParam("returnDate") String returnDateStr,
-                               Authentication auth,
-                               RedirectAttributes redirectAttributes) {
-        try {
-            String username = auth.getName();
-            Optional<User> librarianOptional = userService.findByUsername(username);
-
-            if (librarianOptional.isEmpty()) {
-                redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
-                return "redirect:/librarian/orders";
-            }
+                               @CurrentUser User librarian,
+                               RedirectAttributes redirectAttributes,
+                               HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders/" + orderId, () -> {
+            try {
+                if (librarian == null) {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+                    return "redirect:/librarian/orders";
+                }
 
-            User librarian = librarianOptional.get();
+                LocalDateTime returnDate = LocalDateTime.parse(returnDateStr + "T23:59:59");
 
-            LocalDateTime returnDate = LocalDateTime.parse(returnDateStr + "T23:59:59");
+                boolean approved = orderService.approveOrder(orderId, librarian, returnDate);
 
-            boolean approved = orderService.approveOrder(orderId, librarian, returnDate);
+                if (approved) {
+                    redirectAttributes.addFlashAttribute("successMessage", "Order approved successfully");
+                } else {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Failed to approve order.");
+                }
 
-            if (approved) {
-                redirectAttributes.addFlashAttribute("successMessage", "Order approved successfully");
-            } else {
-                redirectAttributes.addFlashAttribute("errorMessage", "Failed to approve order.");
+            } catch (IllegalArgumentException e) {
+                redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error approving order: " + orderId, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error approving order. Please try again later.");
             }
 
-        } catch (IllegalArgumentException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            logger.error("Error approving order: " + orderId, e);
-            redirectAttributes.addFlashAttribute("errorMessage", "Error approving order. Please try again later.");
-        }
-
-        return "redirect:/librarian/orders/" + orderId;
+            return "redirect:/librarian/orders/" + orderId;
+        });
     }
 
     /**
@@ -210,34 +266,33 @@ public class LibrarianController {
     @PostMapping("/orders/{orderId}/reject")
     public String rejectOrder(@PathVariable("orderId") Long orderId,
                               @RequestParam("notes") String notes,
-                              Authentication auth,
-                              RedirectAttributes redirectAttributes) {
-        try {
-            String username = auth.getName();
-            Optional<User> librarianOptional = userService.findByUsername(username);
-
-            if (librarianOptional.isEmpty()) {
-                redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
-                return "redirect:/librarian/orders";
-            }
+                              @CurrentUser User librarian,
+                              RedirectAttributes redirectAttributes,
+                              HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders/" + orderId, () -> {
+            try {
+                if (librarian == null) {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+                    return "redirect:/librarian/orders";
+                }
+                boolean rejected = orderService.rejectOrder(orderId, librarian, notes);
 
-            User librarian = librarianOptional.get();
-            boolean rejected = orderService.rejectOrder(orderId, librarian, notes);
+                if (rejected) {
+                    redirectAttributes.addFlashAttribute("successMessage", "Order rejected successfully");
+                } else {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Failed to reject order.");
+                }
 
-            if (rejected) {
-                redirectAttributes.addFlashAttribute("successMessage", "Order rejected successfully");
-            } else {
-                redirectAttributes.addFlashAttribute("errorMessage", "Failed to reject order.");
+            } catch (IllegalArgumentException e) {
+                redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error rejecting order: " + orderId, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error rejecting order. Please try again later.");
             }
 
-        } catch (IllegalArgumentException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            logger.error("Error rejecting order: " + orderId, e);
-            redirectAttributes.addFlashAttribute("errorMessage", "Error rejecting order. Please try again later.");
-        }
-
-        return "redirect:/librarian/orders/" + orderId;
+            return "redirect:/librarian/orders/" + orderId;
+        });
     }
 
     /**
@@ -245,22 +300,116 @@ public class LibrarianController {
      */
     @PostMapping("/orders/{orderId}/return")
     public String returnBook(@PathVariable("orderId") Long orderId,
-                             RedirectAttributes redirectAttributes) {
-        try {
-            boolean returned = orderService.returnOrder(orderId);
+                             @CurrentUser User librarian,
+                             RedirectAttributes redirectAttributes,
+                             HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders/" + orderId, () -> {
+            try {
+                boolean returned = orderService.returnOrder(orderId);
+
+                if (returned) {
+                    redirectAttributes.addFlashAttribute("successMessage", "Book returned successfully");
+                } else {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Failed to process return.");
+                }
+            } catch (IllegalArgumentException e) {
+                redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            } catch (Exception e) {
+                logger.error("Error processing return for order: " + orderId, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error processing return. Please try again later.");
+            }
 
-            if (returned) {
-                redirectAttributes.addFlashAttribute("successMessage", "Book returned successfully");
-            } else {
-                redirectAttributes.addFlashAttribute("errorMessage", "Failed to process return.");
+            return "redirect:/librarian/orders/" + orderId;
+        });
+    }
+
+    /**
+     * Approves several pending orders.
+     */
+    @PostMapping("/orders/bulk/approve")
+    public String approveOrders(@RequestParam("orderIds") List<Long> orderIds,
+                                @RequestParam("returnDate") String returnDateStr,
+                                @CurrentUser User librarian,
+                                RedirectAttributes redirectAttributes,
+                                HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders/pending", () -> {
+            if (librarian == null) {
+                redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+                return "redirect:/librarian/orders/pending";
             }
-        } catch (IllegalArgumentException e) {
-            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-        } catch (Exception e) {
-            logger.error("Error processing return for order: " + orderId, e);
-            redirectAttributes.addFlashAttribute("errorMessage", "Error processing return. Please try again later.");
-        }
+            try {
+                LocalDateTime returnDate = LocalDateTime.parse(returnDateStr + "T23:59:59");
+                addBulkResults(orderService.approveOrders(orderIds, librarian, returnDate), "approved", redirectAttributes);
+            } catch (Exception e) {
+                logger.error("Error approving orders: {}", orderIds, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error approving orders. Please try again later.");
+            }
+            return "redirect:/librarian/orders/pending";
+        });
+    }
+
+    /**
+     * Rejects several pending orders.
+     */
+    @PostMapping("/orders/bulk/reject")
+    public String rejectOrders(@RequestParam("orderIds") List<Long> orderIds,
+                               @RequestParam("notes") String notes,
+                               @CurrentUser User librarian,
+                               RedirectAttributes redirectAttributes,
+                               HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders/pending", () -> {
+            if (librarian == null) {
+                redirectAttributes.addFlashAttribute("errorMessage", "Librarian not found");
+                return "redirect:/librarian/orders/pending";
+            }
+            try {
+                addBulkResults(orderService.rejectOrders(orderIds, librarian, notes), "rejected", redirectAttributes);
+            } catch (Exception e) {
+                logger.error("Error rejecting orders: {}", orderIds, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error rejecting orders. Please try again later.");
+            }
+            return "redirect:/librarian/orders/pending";
+        });
+    }
+
+    /**
+     * Processes the return of several books.
+     */
+    @PostMapping("/orders/bulk/return")
+    public String returnBooks(@RequestParam("orderIds") List<Long> orderIds,
+                              @CurrentUser User librarian,
+                              RedirectAttributes redirectAttributes,
+                              HttpServletRequest request) {
+        return idempotencyKeys.submit(request, librarian != null ? librarian.getId() : null, redirectAttributes,
+                "redirect:/librarian/orders?status=APPROVED", () -> {
+            try {
+                addBulkResults(orderService.returnOrders(orderIds), "returned", redirectAttributes);
+            } catch (Exception e) {
+                logger.error("Error processing returns for orders: {}", orderIds, e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error processing returns. Please try again later.");
+            }
+            return "redirect:/librarian/orders?status=APPROVED";
+        });
+    }
 
-        return "redirect:/librarian/orders/" + orderId;
+    /**
+     * Adds a summary of a bulk operation and the failed orders as flash attributes.
+     */
+    private void addBulkResults(List<OrderActionResult> results, String action, RedirectAttributes redirectAttributes) {
+        List<OrderActionResult> failures = results.stream()
+                .filter(result -> !result.isSuccess())
+                .toList();
+        long succeeded = results.size() - failures.size();
+
+        if (succeeded > 0) {
+            redirectAttributes.addFlashAttribute("successMessage", succeeded + " orders " + action + " successfully");
+        }
+        if (!failures.isEmpty()) {
+            redirectAttributes.addFlashAttribute("errorMessage", failures.size() + " orders could not be " + action);
+            redirectAttributes.addFlashAttribute("failedOrders", failures);
+        }
     }
 }
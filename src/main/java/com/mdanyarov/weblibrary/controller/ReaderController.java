@@ -1,16 +1,21 @@
 package com.mdanyarov.weblibrary.controller;
 
+import com.mdanyarov.weblibrary.dto.OrderIntakeStatus;
 import com.mdanyarov.weblibrary.dto.OrderRequest;
 import com.mdanyarov.weblibrary.entity.Book;
 import com.mdanyarov.weblibrary.entity.Order;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.order.IdempotencyKeys;
+import com.mdanyarov.weblibrary.order.OrderIntake;
+import com.mdanyarov.weblibrary.security.CurrentUser;
 import com.mdanyarov.weblibrary.service.BookService;
 import com.mdanyarov.weblibrary.service.OrderService;
-import com.mdanyarov.weblibrary.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -21,6 +26,7 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller
@@ -34,26 +40,33 @@ public class ReaderController {
 
     private final OrderService orderService;
     private final BookService bookService;
-    private final UserService userService;
+    private final OrderIntake orderIntake;
+    private final IdempotencyKeys idempotencyKeys;
 
     @Autowired
-    public ReaderController(OrderService orderService, BookService bookService, UserService userService) {
+    public ReaderController(OrderService orderService, BookService bookService, OrderIntake orderIntake,
+                            IdempotencyKeys idempotencyKeys) {
         this.orderService = orderService;
         this.bookService = bookService;
-        this.userService = userService;
+        this.orderIntake = orderIntake;
+        this.idempotencyKeys = idempotencyKeys;
+    }
+
+    /**
+     * Adds a new idempotency key to every page, submitted by its request forms so resubmits are not processed twice.
+     */
+    @ModelAttribute(IdempotencyKeys.PARAMETER)
+    public String idempotencyKey() {
+        return idempotencyKeys.newKey();
     }
 
     /**
      * Shows the reader dashboard.
      */
     @GetMapping("/dashboard")
-    public String dashboard(Model model, Authentication auth) {
+    public String dashboard(Model model, @CurrentUser User user) {
         try {
-            String username = auth.getName();
-            Optional<User> userOptional = userService.findByUsername(username);
-
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
+            if (user != null) {
                 List<Order> activeOrders = orderService.findActiveByUserId(user.getId());
                 List<Order> userOrders = orderService.findByUserId(user.getId());
 
@@ -81,17 +94,14 @@ public class ReaderController {
      * Shows the user's orders.
      */
     @GetMapping("/orders")
-    public String showOrders(Model model, Authentication auth) {
+    public String showOrders(Model model, @CurrentUser User user) {
         try {
-            String username = auth.getName();
-            Optional<User> userOptional = userService.findByUsername(username);
-
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
+            if (user != null) {
                 List<Order> orders = orderService.findByUserId(user.getId());
 
                 model.addAttribute("orders", orders);
                 model.addAttribute("hasOrders",!orders.isEmpty());
+                model.addAttribute("waitlistPositions", orderService.getWaitlistPositions(user.getId()));
             }
 
             return "reader/orders";
@@ -103,10 +113,10 @@ public class ReaderController {
     }
 
     /**
-     * Shows the book request form.
+     * Shows the book request form, or the waitlist of the book if no copies are available.
      */
     @GetMapping("/request/{bookId}")
-    public String showRequestForm(@PathVariable Long bookId, Model model, Authentication auth) {
+    public String showRequestForm(@PathVariable Long bookId, Model model, @CurrentUser User user) {
         try {
             Optional<Book> bookOptional = bookService.findById(bookId);
 
@@ -116,17 +126,17 @@ public class ReaderController {
             }
 
             Book book = bookOptional.get();
-            if (book.getAvailableCopiesCount() == 0) {
-                model.addAttribute("errorMessage", "No available copies for this book.");
-                return "redirect:/books/" + bookId + "?error=no_copies";
+            if (bookService.countAvailableCopies(bookId) == 0) {
+                model.addAttribute("book", book);
+                model.addAttribute("orderRequest", new OrderRequest());
+                model.addAttribute("waitingCount", orderService.getWaitlistSize(bookId));
+                model.addAttribute("waitlistPosition",
+                        user != null ? orderService.getWaitlistPosition(user.getId(), bookId) : 0);
+                return "reader/waitlist";
             }
 
             // Check if user already has an active order for this book
-            String username = auth.getName();
-            Optional<User> userOptional = userService.findByUsername(username);
-
-            if (userOptional.isPresent()) {
-                User user = userOptional.get();
+            if (user != null) {
                 List<Order> activeOrders = orderService.findActiveByUserId(user.getId());
 
                 boolean hasActiveOrderForBook = activeOrders.stream()
@@ -150,15 +160,17 @@ public class ReaderController {
     }
 
     /**
-     * Processes a book request.
+     * Processes a book request. With the order intake enabled, the request is queued and
+     * acknowledged at once with the URL of its status.
      */
     @PostMapping("/request/{bookId}")
     public String processRequest(@PathVariable Long bookId,
                                  @Valid @ModelAttribute("orderRequest") OrderRequest orderRequest,
                                  BindingResult bindingResult,
                                  Model model,
-                                 Authentication auth,
-                                 RedirectAttributes redirectAttributes) {
+                                 @CurrentUser User user,
+                                 RedirectAttributes redirectAttributes,
+                                 HttpServletRequest request) {
 
         if (bindingResult.hasErrors()) {
             try {
@@ -172,40 +184,123 @@ public class ReaderController {
             return "reader/request-form";
         }
 
-        try {
-            String username = auth.getName();
-            Optional<User> userOptional = userService.findByUsername(username);
+        return idempotencyKeys.submit(request, user != null ? user.getId() : null, redirectAttributes,
+                "redirect:/reader/orders", () -> {
+            try {
+                if (user == null) {
+                    redirectAttributes.addFlashAttribute("errorMessage", "User not found");
+                    return "redirect:/books/" + bookId;
+                }
 
-            if (userOptional.isEmpty()) {
-                redirectAttributes.addFlashAttribute("errorMessage", "User not found");
+                if (orderIntake.isEnabled()) {
+                    OrderIntakeStatus status = orderIntake.submit(user.getId(), bookId,
+                            orderRequest.getOrderType(), orderRequest.getNotes());
+                    redirectAttributes.addFlashAttribute("successMessage",
+                            "Book request received. Your order will appear shortly.");
+                    redirectAttributes.addFlashAttribute("requestStatusUrl", "/reader/requests/" + status.getRequestId());
+                    return "redirect:/reader/orders";
+                }
+
+                Order order = orderService.createOrderForBook(
+                        user.getId(),
+                        bookId,
+                        orderRequest.getOrderType(),
+                        orderRequest.getNotes()
+                );
+
+                redirectAttributes.addFlashAttribute("successMessage",
+                        "Book request submitted successfully. Request ID: " + order.getId());
+
+                return "redirect:/reader/orders";
+
+            } catch (IllegalArgumentException e) {
+                redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+                return "redirect:/books/" + bookId;
+
+            } catch (RejectedExecutionException e) {
+                logger.warn("Book request rejected: {}", e.getMessage());
+                redirectAttributes.addFlashAttribute("errorMessage",
+                        "The library is receiving too many requests right now. Please try again in a minute.");
                 return "redirect:/books/" + bookId;
-            }
 
-            User user = userOptional.get();
+            } catch (Exception e) {
+                logger.error("Error processing book request", e);
+                redirectAttributes.addFlashAttribute("errorMessage", "Error processing request. Please try again later.");
+                return "redirect:/books/" + bookId;
+            }
+        });
+    }
 
-            // The following would require creating a BookCopyService, but for now we'll use a placeholder
-            // TODO: Implement proper book copy selection
-            Order order = orderService.createOrder(
-                    user.getId(),
-                    1L, // Placeholder - should be actual available copy ID
-                    orderRequest.getOrderType(),
-                    orderRequest.getNotes()
-            );
+    /**
+     * Returns the status of a queued book request as JSON.
+     */
+    @GetMapping("/requests/{requestId}")
+    @ResponseBody
+    public ResponseEntity<OrderIntakeStatus> requestStatus(@PathVariable String requestId, @CurrentUser User user) {
+        if (user == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.of(orderIntake.findStatus(requestId, user.getId()));
+    }
 
-            redirectAttributes.addFlashAttribute("successMessage",
-                    "Book request submitted successfully. Request ID: " + order.getId());
+    /**
+     * Adds the user to the waitlist of a book without available copies.
+     */
+    @PostMapping("/waitlist/{bookId}")
+    public String joinWaitlist(@PathVariable Long bookId,
+                               @ModelAttribute("orderRequest") OrderRequest orderRequest,
+                               @CurrentUser User user,
+                               RedirectAttributes redirectAttributes) {
+        try {
+            if (user == null) {
+                redirectAttributes.addFlashAttribute("errorMessage", "User not found");
+                return "redirect:/books/" + bookId;
+            }
 
-            return "redirect:/reader/orders";
+            int position = orderService.joinWaitlist(user.getId(), bookId, orderRequest.getOrderType(),
+                    orderRequest.getNotes());
 
+            if (position == 0) {
+                redirectAttributes.addFlashAttribute("successMessage",
+                        "A copy became available and was reserved for you.");
+            } else {
+                redirectAttributes.addFlashAttribute("successMessage",
+                        "You have joined the waitlist. Your position: " + position);
+            }
         } catch (IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
-            return "redirect:/books/" + bookId;
+        } catch (Exception e) {
+            logger.error("Error joining waitlist for book: {}", bookId, e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Error joining the waitlist. Please try again later.");
+        }
+
+        return "redirect:/reader/orders";
+    }
 
+    /**
+     * Removes the user from the waitlist of a book.
+     */
+    @PostMapping("/waitlist/{bookId}/leave")
+    public String leaveWaitlist(@PathVariable Long bookId,
+                                @CurrentUser User user,
+                                RedirectAttributes redirectAttributes) {
+        try {
+            if (user == null) {
+                redirectAttributes.addFlashAttribute("errorMessage", "User not found");
+                return "redirect:/books/" + bookId;
+            }
+
+            if (orderService.leaveWaitlist(user.getId(), bookId)) {
+                redirectAttributes.addFlashAttribute("successMessage", "You have left the waitlist.");
+            } else {
+                redirectAttributes.addFlashAttribute("errorMessage", "You are not on the waitlist for this book.");
+            }
         } catch (Exception e) {
-            logger.error("Error processing book request", e);
-            redirectAttributes.addFlashAttribute("errorMessage", "Error processing request. Please try again later.");
-            return "redirect:/books/" + bookId;
+            logger.error("Error leaving waitlist for book: {}", bookId, e);
+            redirectAttributes.addFlashAttribute("errorMessage", "Error leaving the waitlist. Please try again later.");
         }
+
+        return "redirect:/reader/orders";
     }
 
     /**
@@ -213,19 +308,14 @@ public class ReaderController {
      */
     @PostMapping("/orders/{orderId/cancel")
     public String cancelOrder(@PathVariable Long orderId,
-                              Authentication auth,
+                              @CurrentUser User user,
                               RedirectAttributes redirectAttributes) {
 
         try {
-            String username = auth.getName();
-            Optional<User> userOptional = userService.findByUsername(username);
-
-            if (userOptional.isEmpty()) {
+            if (user == null) {
                 redirectAttributes.addFlashAttribute("errorMessage", "User not found");
                 return "redirect:/reader/orders/";
             }
-
-            User user = userOptional.get();
             boolean cancelled = orderService.cancelOrder(orderId, user.getId());
 
             if (cancelled) {
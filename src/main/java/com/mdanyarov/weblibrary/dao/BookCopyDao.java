@@ -4,7 +4,9 @@ import com.mdanyarov.weblibrary.entity.BookCopy;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -12,6 +14,19 @@ import java.util.Optional;
  */
 public interface BookCopyDao extends BasicDao<BookCopy, Long> {
 
+    /**
+     * Updates a book copy if its version still matches the one it was read with,
+     * and increments the version of the given copy.
+     *
+     * @param bookCopy The book copy to update
+     * @param connection Database connection to use
+     * @return true if the update was successful, false if the copy does not exist
+     * @throws OptimisticLockException if the copy was changed since it was read
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    boolean update(BookCopy bookCopy, Connection connection) throws SQLException;
+
     /**
      * Finds book copies by book ID.
      *
@@ -42,6 +57,35 @@ public interface BookCopyDao extends BasicDao<BookCopy, Long> {
      */
     List<BookCopy> findAvailableByBookId(Long bookId, Connection connection) throws SQLException;
 
+    /**
+     * Counts the available copies of a book using the per-book availability counters.
+     *
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The number of available copies
+     * @throws SQLException if there is an error executing the query
+     */
+    int countAvailableByBookId(Long bookId, Connection connection) throws SQLException;
+
+    /**
+     * Counts the available copies of several books using the per-book availability counters.
+     *
+     * @param bookIds The book IDs
+     * @param connection Database connection to use
+     * @return A map from book ID to the number of available copies
+     * @throws SQLException if there is an error executing the query
+     */
+    Map<Long, Integer> countAvailableByBookIds(Collection<Long> bookIds, Connection connection) throws SQLException;
+
+    /**
+     * Finds the IDs of the books with at least one available copy using the per-book availability counters.
+     *
+     * @param connection Database connection to use
+     * @return The book IDs
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Long> findAvailableBookIds(Connection connection) throws SQLException;
+
     /**
      * Updates the status of a book copy.
      * @param bookCopyId The book copy ID
@@ -51,4 +95,32 @@ public interface BookCopyDao extends BasicDao<BookCopy, Long> {
      * @throws SQLException if there is an error executing the query
      */
     boolean updateStatus(Long bookCopyId, BookCopy.CopyStatus status, Connection connection) throws SQLException;
+
+    /**
+     * Updates the status of several book copies with one statement.
+     * @param bookCopyIds The book copy IDs
+     * @param status The new status
+     * @param connection Database connection to use
+     * @return The number of updated copies
+     * @throws SQLException if there is an error executing the query
+     */
+    int updateStatusBatch(Collection<Long> bookCopyIds, BookCopy.CopyStatus status, Connection connection) throws SQLException;
+
+    /**
+     * Reserves a book copy if it is available.
+     * @param bookCopyId The book copy ID
+     * @param connection Database connection to use
+     * @return true if the copy was available and is now reserved, false otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    boolean reserveIfAvailable(Long bookCopyId, Connection connection) throws SQLException;
+
+    /**
+     * Reserves any available copy of a book, skipping copies being reserved by concurrent transactions.
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The ID of the reserved copy, or null if no copy is available
+     * @throws SQLException if there is an error executing the query
+     */
+    Long reserveAvailableCopy(Long bookId, Connection connection) throws SQLException;
 }
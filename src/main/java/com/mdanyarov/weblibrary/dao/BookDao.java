@@ -72,4 +72,53 @@ public interface BookDao extends BasicDao<Book, Long> {
      * @throws SQLException if there is an error executing the query
      */
     int countAll(Connection connection) throws SQLException;
+
+    /**
+     * Finds the ISBNs of all books that have one.
+     * @param connection Database connection to use
+     * @return List of ISBNs
+     * @throws SQLException if there is an error executing the query
+     */
+    List<String> findAllIsbns(Connection connection) throws SQLException;
+
+    /**
+     * Searches books by title, author (partial match) or ISBN (exact match) with pagination.
+     * @param query The search query
+     * @param limit The maximum number of books to return
+     * @param offset The number of books to skip
+     * @param connection Database connection to use
+     * @return A list of matching books limited by pagination parameters, ordered by title
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Book> searchWithPagination(String query, int limit, int offset, Connection connection) throws SQLException;
+
+    /**
+     * Counts the books matching a search query, stopping at a limit.
+     * @param query The search query
+     * @param limit The maximum count to return
+     * @param connection Database connection to use
+     * @return The number of books matching the query, or the limit if at least that many match
+     * @throws SQLException if there is an error executing the query
+     */
+    int countSearch(String query, int limit, Connection connection) throws SQLException;
+
+    /**
+     * Finds books by their IDs.
+     * @param ids The IDs of the books to load
+     * @param connection Database connection to use
+     * @return A list of the books found, in no particular order
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Book> findByIds(List<Long> ids, Connection connection) throws SQLException;
+
+    /**
+     * Finds the IDs of the books matching a search query, using the same criteria as {@link #countSearch},
+     * stopping at a limit.
+     * @param query The search query
+     * @param limit The maximum number of IDs to return
+     * @param connection Database connection to use
+     * @return A list of matching book IDs, the first ones in title order if more than the limit match
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Long> searchIds(String query, int limit, Connection connection) throws SQLException;
 }
@@ -0,0 +1,89 @@
+package com.mdanyarov.weblibrary.dao;
+
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * DAO interface for the cache invalidation log.
+ */
+public interface CacheInvalidationDao {
+
+    /**
+     * Returns the ID of this application node, stamped on the entries it appends.
+     *
+     * @return The node ID
+     */
+    String getNodeId();
+
+    /**
+     * Appends an entry for a changed entity. Call it in the transaction making the change,
+     * so the entry becomes visible together with the change.
+     *
+     * @param entityType The kind of entity
+     * @param entityId The entity ID
+     * @param changeType The kind of change
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    void append(CacheInvalidation.EntityType entityType, Long entityId, String changeType, Connection connection)
+            throws SQLException;
+
+    /**
+     * Appends entries for several entities changed in the same way, in one batch. Call it in the
+     * transaction making the change, so the entries become visible together with the change.
+     *
+     * @param entityType The kind of entity
+     * @param entityIds The entity IDs
+     * @param changeType The kind of change
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    void appendAll(CacheInvalidation.EntityType entityType, Collection<Long> entityIds, String changeType,
+                   Connection connection) throws SQLException;
+
+    /**
+     * Finds the highest entry ID.
+     *
+     * @param connection Database connection to use
+     * @return The highest ID, or 0 if the log is empty
+     * @throws SQLException if there is an error executing the query
+     */
+    long findMaxId(Connection connection) throws SQLException;
+
+    /**
+     * Finds the entries with an ID above the given one, in ID order.
+     *
+     * @param afterId The ID to start after
+     * @param limit The maximum number of entries to return
+     * @param connection Database connection to use
+     * @return List of entries
+     * @throws SQLException if there is an error executing the query
+     */
+    List<CacheInvalidation> findAfter(long afterId, int limit, Connection connection) throws SQLException;
+
+    /**
+     * Finds the entries with the given IDs.
+     *
+     * @param ids Entry IDs
+     * @param connection Database connection to use
+     * @return List of the entries that exist, in ID order
+     * @throws SQLException if there is an error executing the query
+     */
+    List<CacheInvalidation> findByIds(Collection<Long> ids, Connection connection) throws SQLException;
+
+    /**
+     * Deletes entries created before the given time.
+     *
+     * @param before The cut-off time
+     * @param limit The maximum number of entries to delete
+     * @param connection Database connection to use
+     * @return The number of deleted entries
+     * @throws SQLException if there is an error executing the query
+     */
+    int deleteOlderThan(LocalDateTime before, int limit, Connection connection) throws SQLException;
+}
@@ -132,6 +132,7 @@ public class ConnectionPool {
 
     /**
      * Releases a connection back to the pool.
+     * A connection still inside a transaction is rolled back first, so its locks are not handed to the next borrower.
      *
      * @param connection The connection to release
      */
@@ -142,6 +143,11 @@ public class ConnectionPool {
 
         usedConnections.remove(connection);
         try {
+            if (!connection.isClosed() && !connection.getAutoCommit()) {
+                logger.warn("Connection released inside a transaction, rolling it back");
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
             if (!connection.isClosed() && isConnectionValid(connection)) {
                 connectionPool.add(connection);
             } else {
@@ -5,6 +5,7 @@ import com.mdanyarov.weblibrary.entity.Genre;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -51,4 +52,12 @@ public interface GenreDao extends BasicDao<Genre, Long> {
      * @throws SQLException if there is an error executing the query
      */
     boolean removeGenreFromBook(Long bookId, Long genreId, Connection connection) throws SQLException;
+
+    /**
+     * Finds all genre assignments.
+     * @param connection Database connection to use
+     * @return A map from genre ID to the IDs of the books in that genre
+     * @throws SQLException if there is an error executing the query
+     */
+    Map<Long, List<Long>> findBookIdsByGenre(Connection connection) throws SQLException;
 }
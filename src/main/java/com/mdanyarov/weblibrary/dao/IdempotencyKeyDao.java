@@ -0,0 +1,78 @@
+package com.mdanyarov.weblibrary.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * DAO interface for the idempotency keys of form submissions, shared by all application nodes.
+ */
+public interface IdempotencyKeyDao {
+
+    /**
+     * Records a key before its action runs.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @return true if the key was recorded, false if the user already used it
+     * @throws SQLException if there is an error executing the query
+     */
+    boolean insert(Long userId, String key, Connection connection) throws SQLException;
+
+    /**
+     * Finds the stored result of a key.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @return The result, or null if the key is unknown or its action has not finished
+     * @throws SQLException if there is an error executing the query
+     */
+    String findResult(Long userId, String key, Connection connection) throws SQLException;
+
+    /**
+     * Takes over a key whose action never stored a result, such as one left by a node that stopped
+     * while running it. The key's recording time is reset, so only one caller takes it over.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param recordedBefore Only keys recorded before this time are taken over
+     * @param connection Database connection to use
+     * @return true if the key was taken over, false if it has a result or was recorded later
+     * @throws SQLException if there is an error executing the query
+     */
+    boolean takeOver(Long userId, String key, LocalDateTime recordedBefore, Connection connection) throws SQLException;
+
+    /**
+     * Stores the result of a key's action.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param result The serialized result
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    void saveResult(Long userId, String key, String result, Connection connection) throws SQLException;
+
+    /**
+     * Deletes a key, so the submission can be retried.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    void delete(Long userId, String key, Connection connection) throws SQLException;
+
+    /**
+     * Deletes keys recorded before the given time, oldest first.
+     *
+     * @param before The time limit
+     * @param limit The maximum number of keys to delete
+     * @param connection Database connection to use
+     * @return The number of deleted keys
+     * @throws SQLException if there is an error executing the query
+     */
+    int deleteOlderThan(LocalDateTime before, int limit, Connection connection) throws SQLException;
+}
@@ -0,0 +1,40 @@
+package com.mdanyarov.weblibrary.dao;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown when an entity could not be updated because it was changed by someone else
+ * since it was read, that is, its version no longer matches.
+ * <p>
+ * It is an SQLException so that {@link TransactionManager} rolls the transaction back.
+ * Callers may read the entity again and retry, or report the conflict to the user.
+ */
+public class OptimisticLockException extends SQLException {
+
+    /** SQLSTATE class for transaction rollback: serialization failure. */
+    private static final String SQL_STATE = "40001";
+
+    private final String entityName;
+    private final Long entityId;
+    private final int expectedVersion;
+
+    public OptimisticLockException(String entityName, Long entityId, int expectedVersion) {
+        super(entityName + " " + entityId + " was changed concurrently (expected version " + expectedVersion + ")",
+                SQL_STATE);
+        this.entityName = entityName;
+        this.entityId = entityId;
+        this.expectedVersion = expectedVersion;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+}
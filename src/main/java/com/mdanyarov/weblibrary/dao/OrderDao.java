@@ -4,13 +4,30 @@ import com.mdanyarov.weblibrary.entity.Order;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * DAO interface for Order entity
  */
 public interface OrderDao extends BasicDao<Order, Long> {
 
+    /**
+     * Updates an order if its version still matches the one it was read with,
+     * and increments the version of the given order.
+     *
+     * @param order The order to update
+     * @param connection Database connection to use
+     * @return true if the update was successful, false if the order does not exist
+     * @throws OptimisticLockException if the order was changed since it was read
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    boolean update(Order order, Connection connection) throws SQLException;
+
     /**
      * Finds orders by user ID.
      *
@@ -63,10 +80,227 @@ public interface OrderDao extends BasicDao<Order, Long> {
     boolean updateStatus(Long orderId, Order.OrderStatus status, Connection connection) throws SQLException;
 
     /**
-     * Finds orders that are overdue (past return date but not returned).
+     * Finds orders flagged as overdue (past return date but not returned).
+     *
      * @param connection Database connection to use
      * @return A list of overdue orders
      * @throws SQLException if there is an error executing the query
      */
     List<Order> findOverdue(Connection connection) throws SQLException;
+
+    /**
+     * Counts orders per book, regardless of status.
+     *
+     * @param connection Database connection to use
+     * @return A map from book ID to the number of orders placed for its copies
+     * @throws SQLException if there is an error executing the query
+     */
+    Map<Long, Integer> countOrdersByBook(Connection connection) throws SQLException;
+
+    /**
+     * Flags the approved orders whose return date is before the given time as overdue.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of newly flagged orders
+     * @throws SQLException if there is an error executing the query
+     */
+    int markOverdue(LocalDateTime now, Connection connection) throws SQLException;
+
+    /**
+     * Flags the given orders as overdue if they are approved and their return date is before the given time.
+     *
+     * @param orderIds Order IDs
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of newly flagged orders
+     * @throws SQLException if there is an error executing the query
+     */
+    int markOverdueByIds(Collection<Long> orderIds, LocalDateTime now, Connection connection) throws SQLException;
+
+    /**
+     * Clears the overdue flag of orders that are no longer overdue at the given time.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of cleared orders
+     * @throws SQLException if there is an error executing the query
+     */
+    int clearStaleOverdue(LocalDateTime now, Connection connection) throws SQLException;
+
+    /**
+     * Finds the return dates of the approved, not returned orders due in a time range.
+     *
+     * @param from The inclusive start of the range
+     * @param to The exclusive end of the range
+     * @param connection Database connection to use
+     * @return A map from order ID to return date
+     * @throws SQLException if there is an error executing the query
+     */
+    Map<Long, LocalDateTime> findReturnDatesBetween(LocalDateTime from, LocalDateTime to, Connection connection)
+            throws SQLException;
+
+    /**
+     * Finds pending orders placed before the given time, oldest first, and locks them and their copies,
+     * skipping rows locked by other transactions.
+     *
+     * @param orderedBefore The order date limit
+     * @param limit The maximum number of orders
+     * @param connection Database connection to use
+     * @return Orders with their IDs, user ID, copy ID and book ID populated
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Order> lockStalePending(LocalDateTime orderedBefore, int limit, Connection connection) throws SQLException;
+
+    /**
+     * Marks pending orders as expired, skipping those that are no longer pending.
+     *
+     * @param orderIds Order IDs
+     * @param connection Database connection to use
+     * @return The IDs of the expired orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    Set<Long> expirePending(List<Long> orderIds, Connection connection) throws SQLException;
+
+    /**
+     * Finds pending orders that are not claimed by a librarian or whose claim has expired, oldest first,
+     * and locks them, skipping rows locked by other transactions.
+     *
+     * @param now The current time
+     * @param limit The maximum number of orders
+     * @param connection Database connection to use
+     * @return The order IDs
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Long> lockClaimable(LocalDateTime now, int limit, Connection connection) throws SQLException;
+
+    /**
+     * Claims pending orders for a librarian, skipping those that are no longer pending or were claimed
+     * by another librarian in the meantime.
+     *
+     * @param orderIds Order IDs
+     * @param librarianId The ID of the claiming librarian
+     * @param now The current time
+     * @param claimExpiresAt The time the claims expire
+     * @param connection Database connection to use
+     * @return The IDs of the claimed orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    Set<Long> claim(List<Long> orderIds, Long librarianId, LocalDateTime now, LocalDateTime claimExpiresAt,
+                    Connection connection) throws SQLException;
+
+    /**
+     * Extends the unexpired claims of a librarian on pending orders.
+     *
+     * @param librarianId The librarian ID
+     * @param now The current time
+     * @param claimExpiresAt The new expiry time of the claims
+     * @param connection Database connection to use
+     * @return The number of extended claims
+     * @throws SQLException if there is an error executing the query
+     */
+    int renewClaims(Long librarianId, LocalDateTime now, LocalDateTime claimExpiresAt, Connection connection)
+            throws SQLException;
+
+    /**
+     * Releases the claims of a librarian on pending orders.
+     *
+     * @param librarianId The librarian ID
+     * @param connection Database connection to use
+     * @return The number of released orders
+     * @throws SQLException if there is an error executing the query
+     */
+    int releaseClaims(Long librarianId, Connection connection) throws SQLException;
+
+    /**
+     * Finds the pending orders claimed by a librarian whose claim has not expired.
+     *
+     * @param librarianId The librarian ID
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The claimed orders, oldest first
+     * @throws SQLException if there is an error executing the query
+     */
+    List<Order> findClaimedBy(Long librarianId, LocalDateTime now, Connection connection) throws SQLException;
+
+    /**
+     * Counts the pending orders that are not claimed or whose claim has expired.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of claimable orders
+     * @throws SQLException if there is an error executing the query
+     */
+    int countClaimable(LocalDateTime now, Connection connection) throws SQLException;
+
+    /**
+     * Approves a pending order and marks its copy as issued, in one statement.
+     *
+     * @param orderId The order ID
+     * @param librarianId The ID of the approving librarian
+     * @param returnDate The expected return date
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending and is now approved, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    Long approveIfPending(Long orderId, Long librarianId, LocalDateTime returnDate, Connection connection)
+            throws SQLException;
+
+    /**
+     * Rejects a pending order and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param librarianId The ID of the rejecting librarian
+     * @param notes The reason for rejection
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending and is now rejected, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    Long rejectIfPending(Long orderId, Long librarianId, String notes, Connection connection) throws SQLException;
+
+    /**
+     * Marks an approved order as returned and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was approved and is now returned, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    Long returnIfApproved(Long orderId, Connection connection) throws SQLException;
+
+    /**
+     * Cancels a pending order of a user and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param userId The ID of the user who placed the order
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending, belonged to the user and is now cancelled, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    Long cancelIfPending(Long orderId, Long userId, Connection connection) throws SQLException;
+
+    /**
+     * Finds orders for a status transition and locks them until the transaction ends.
+     * Only the order columns are loaded; the user, the processing librarian and the book copy
+     * (with its book) are set with their IDs only.
+     *
+     * @param orderIds The order IDs
+     * @param connection Database connection to use
+     * @return A map from order ID to order, for the orders that exist
+     * @throws SQLException if there is an error executing the query
+     */
+    Map<Long, Order> findForTransition(Collection<Long> orderIds, Connection connection) throws SQLException;
+
+    /**
+     * Writes the status, dates, processing librarian and notes of orders with one prepared statement,
+     * updating each order only if it still has the expected status.
+     *
+     * @param orders The orders to write
+     * @param expectedStatus The status the orders must have in the database
+     * @param connection Database connection to use
+     * @return The IDs of the updated orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    Set<Long> updateTransitionBatch(List<Order> orders, Order.OrderStatus expectedStatus, Connection connection)
+            throws SQLException;
 }
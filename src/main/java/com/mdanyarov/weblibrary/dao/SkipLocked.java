@@ -0,0 +1,73 @@
+package com.mdanyarov.weblibrary.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+
+/**
+ * Utility class for queries that lock rows with FOR UPDATE SKIP LOCKED.
+ * SKIP LOCKED is not supported by servers before MySQL 8.0; the first query rejected with a syntax
+ * error switches all callers to their fallback queries, which must not rely on it.
+ */
+public class SkipLocked {
+
+    private static final Logger logger = LoggerFactory.getLogger(SkipLocked.class);
+
+    /** MySQL error code for SQL syntax errors, returned for SKIP LOCKED by servers before MySQL 8.0. */
+    private static final int ER_PARSE_ERROR = 1064;
+
+    private static volatile boolean supported = true;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SkipLocked(){}
+
+    /**
+     * Runs the locking query, or the fallback query if the database does not support SKIP LOCKED.
+     *
+     * @param connection The database connection
+     * @param locking The query using SKIP LOCKED
+     * @param fallback The query to use instead, typically reading without locks and leaving the re-check
+     *                 to a conditional update
+     * @param action What the queries are used for, for the log message, e.g. "claiming orders"
+     * @param <T> The return type of the queries
+     * @return The result of the query that ran
+     * @throws SQLException if there is an error executing the query
+     */
+    public static <T> T query(Connection connection, Query<T> locking, Query<T> fallback, String action)
+            throws SQLException {
+        if (supported) {
+            try {
+                return locking.execute(connection);
+            } catch (SQLSyntaxErrorException e) {
+                if (e.getErrorCode() != ER_PARSE_ERROR) {
+                    throw e;
+                }
+                logger.warn("SKIP LOCKED is not supported by the database, {} with conditional updates", action);
+                supported = false;
+            }
+        }
+        return fallback.execute(connection);
+    }
+
+    /**
+     * Functional interface for the queries.
+     *
+     * @param <T> The return type of the query
+     */
+    @FunctionalInterface
+    public interface Query<T> {
+        /**
+         * Executes the query.
+         *
+         * @param connection The database connection
+         * @return The result of the query
+         * @throws SQLException if there is an error executing the query
+         */
+        T execute(Connection connection) throws SQLException;
+    }
+}
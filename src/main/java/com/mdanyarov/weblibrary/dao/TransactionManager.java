@@ -71,12 +71,14 @@ public class TransactionManager {
 
     /**
      * Executes a transaction with the provided callback.
+     * The transaction is rolled back if the callback throws any exception, so no changes or row locks
+     * outlive a failed callback on the pooled connection.
      *
      * @param connectionPool The connection pool to get a connection from
      * @param callback The transaction callback to execute
      * @param <T> The return type of the callback
      * @return The result of the callback
-     * @throws SQLException
+     * @throws SQLException if there is an error executing the transaction
      */
     public static <T> T executeTransaction(ConnectionPool connectionPool, TransactionCallback<T> callback) throws SQLException {
         Connection connection = null;
@@ -88,7 +90,7 @@ public class TransactionManager {
 
             commitTransaction(connection);
             return result;
-        } catch (SQLException e) {
+        } catch (SQLException | RuntimeException | Error e) {
             if (connection != null) {
                 rollbackTransaction(connection);
             }
@@ -0,0 +1,69 @@
+package com.mdanyarov.weblibrary.dao;
+
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.entity.WaitlistEntry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * DAO interface for the reservation waitlist.
+ */
+public interface WaitlistDao {
+
+    /**
+     * Adds a reader to the end of the waitlist of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     * @param orderType The type of the order to place when a copy becomes available
+     * @param notes Notes for that order
+     * @param connection Database connection to use
+     * @return The created entry
+     * @throws java.sql.SQLIntegrityConstraintViolationException if the reader is already waiting for the book
+     * @throws SQLException if there is an error executing the query
+     */
+    WaitlistEntry add(Long bookId, Long userId, Order.OrderType orderType, String notes, Connection connection)
+            throws SQLException;
+
+    /**
+     * Finds the first entry of the waitlist of a book and locks it until the transaction ends.
+     *
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The first entry, or null if nobody is waiting
+     * @throws SQLException if there is an error executing the query
+     */
+    WaitlistEntry lockFirstByBookId(Long bookId, Connection connection) throws SQLException;
+
+    /**
+     * Finds all entries, in ID order.
+     *
+     * @param connection Database connection to use
+     * @return List of entries
+     * @throws SQLException if there is an error executing the query
+     */
+    List<WaitlistEntry> findAll(Connection connection) throws SQLException;
+
+    /**
+     * Removes an entry.
+     *
+     * @param id The entry ID
+     * @param connection Database connection to use
+     * @return true if the entry existed
+     * @throws SQLException if there is an error executing the query
+     */
+    boolean delete(Long id, Connection connection) throws SQLException;
+
+    /**
+     * Removes a reader from the waitlist of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     * @param connection Database connection to use
+     * @return true if the reader was waiting
+     * @throws SQLException if there is an error executing the query
+     */
+    boolean deleteByBookIdAndUserId(Long bookId, Long userId, Connection connection) throws SQLException;
+}
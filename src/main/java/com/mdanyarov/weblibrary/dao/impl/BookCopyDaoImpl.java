@@ -1,6 +1,8 @@
 package com.mdanyarov.weblibrary.dao.impl;
 
 import com.mdanyarov.weblibrary.dao.BookCopyDao;
+import com.mdanyarov.weblibrary.dao.OptimisticLockException;
+import com.mdanyarov.weblibrary.dao.SkipLocked;
 import com.mdanyarov.weblibrary.entity.Book;
 import com.mdanyarov.weblibrary.entity.BookCopy;
 import org.slf4j.Logger;
@@ -9,9 +11,8 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * JDBC Implementation of BookCopyDao
@@ -21,41 +22,83 @@ public class BookCopyDaoImpl implements BookCopyDao {
     private static final Logger logger = LoggerFactory.getLogger(BookCopyDaoImpl.class);
 
     private static final String FIND_BY_ID =
-            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.created_at, bc.updated_at, " +
+            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.version, bc.created_at, bc.updated_at, " +
                     "b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description " +
                     "FROM book_copies bc JOIN books b ON bc.book_id = b.id WHERE bc.id = ?";
 
     private static final String FIND_ALL =
-            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.created_at, bc.updated_at, " +
+            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.version, bc.created_at, bc.updated_at, " +
                     "b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description " +
                     "FROM book_copies bc JOIN books b ON bc.book_id = b.id ORDER BY bc.inventory_number";
 
     private static final String FIND_BY_BOOK_ID =
-            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.created_at, bc.updated_at, " +
+            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.version, bc.created_at, bc.updated_at, " +
                     "b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description " +
                     "FROM book_copies bc JOIN books b ON bc.book_id = b.id WHERE bc.book_id = ? ORDER BY bc.inventory_number";
 
     private static final String FIND_BY_INVENTORY_NUMBER =
-            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.created_at, bc.updated_at, " +
+            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.version, bc.created_at, bc.updated_at, " +
                     "b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description " +
                     "FROM book_copies bc JOIN books b ON bc.book_id = b.id WHERE bc.inventory_number = ?";
 
     private static final String FIND_AVAILABLE_BY_BOOK_ID =
-            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.created_at, bc.updated_at, " +
+            "SELECT bc.id, bc.book_id, bc.inventory_number, bc.status, bc.location, bc.version, bc.created_at, bc.updated_at, " +
                     "b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description " +
                     "FROM book_copies bc JOIN books b ON bc.book_id = b.id " +
                     "WHERE bc.book_id = ? AND bc.status = 'AVAILABLE' ORDER BY bc.inventory_number";
 
+    private static final String COUNT_AVAILABLE_BY_BOOK_ID =
+            "SELECT available_count FROM book_availability WHERE book_id = ?";
+
+    private static final String COUNT_AVAILABLE_BY_BOOK_IDS =
+            "SELECT book_id, available_count FROM book_availability WHERE book_id IN (%s)";
+
+    private static final String FIND_AVAILABLE_BOOK_IDS =
+            "SELECT book_id FROM book_availability WHERE available_count > 0";
+
     private static final String INSERT_BOOK_COPY =
             "INSERT INTO book_copies (book_id, inventory_number, status, location, created_at) " +
                     "VALUES (?, ?, ?, ?, ?)";
 
     private static final String UPDATE_BOOK_COPY =
-            "UPDATE book_copies SET book_id = ?, inventory_number = ?, status = ?, location = ?, updated_at = ? " +
-                    "WHERE id = ?";
+            "UPDATE book_copies SET book_id = ?, inventory_number = ?, status = ?, location = ?, updated_at = ?, " +
+                    "version = version + 1 WHERE id = ? AND version = ?";
+
+    private static final String FIND_VERSION =
+            "SELECT version FROM book_copies WHERE id = ?";
 
     private static final String UPDATE_STATUS =
-            "UPDATE book_copies SET status = ?, updated_at = ? WHERE id = ?";
+            "UPDATE book_copies SET status = ?, updated_at = ?, version = version + 1 WHERE id = ?";
+
+    private static final String UPDATE_STATUS_BY_IDS =
+            "UPDATE book_copies SET status = ?, updated_at = ?, version = version + 1 WHERE id IN (%s)";
+
+    private static final String RESERVE_IF_AVAILABLE =
+            "UPDATE book_copies SET status = 'RESERVED', updated_at = ?, version = version + 1 " +
+                    "WHERE id = ? AND status = 'AVAILABLE'";
+
+    private static final String FIND_COPY_ID_RANGE =
+            "SELECT MIN(id), MAX(id) FROM book_copies WHERE book_id = ? AND status = 'AVAILABLE'";
+
+    private static final String LOCK_AVAILABLE_FROM =
+            "SELECT id FROM book_copies WHERE book_id = ? AND status = 'AVAILABLE' AND id >= ? " +
+                    "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED";
+
+    private static final String LOCK_AVAILABLE_BEFORE =
+            "SELECT id FROM book_copies WHERE book_id = ? AND status = 'AVAILABLE' AND id < ? " +
+                    "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED";
+
+    // Fallback for servers without SKIP LOCKED: LAST_INSERT_ID(id) hands the updated row's ID back to the session
+    private static final String RESERVE_AVAILABLE_FROM =
+            "UPDATE book_copies SET status = 'RESERVED', updated_at = ?, version = version + 1, id = LAST_INSERT_ID(id) " +
+                    "WHERE book_id = ? AND status = 'AVAILABLE' AND id >= ? ORDER BY id LIMIT 1";
+
+    private static final String RESERVE_AVAILABLE_BEFORE =
+            "UPDATE book_copies SET status = 'RESERVED', updated_at = ?, version = version + 1, id = LAST_INSERT_ID(id) " +
+                    "WHERE book_id = ? AND status = 'AVAILABLE' AND id < ? ORDER BY id LIMIT 1";
+
+    private static final String LAST_INSERT_ID =
+            "SELECT LAST_INSERT_ID()";
 
     private static final String DELETE_BOOK_COPY =
             "DELETE FROM book_copies WHERE id = ?";
@@ -209,11 +252,12 @@ public class BookCopyDaoImpl implements BookCopyDao {
     }
 
     /**
-     * Updates an existing book copy.
+     * Updates an existing book copy if its version still matches, incrementing the version.
      *
      * @param bookCopy The book copy to update
      * @param connection Database connection to use
-     * @return true if the update was successful, false otherwise
+     * @return true if the update was successful, false if the copy does not exist
+     * @throws OptimisticLockException if the copy was changed since it was read
      * @throws SQLException if there is an error executing the query
      */
     @Override
@@ -225,9 +269,93 @@ public class BookCopyDaoImpl implements BookCopyDao {
             stmt.setString(4, bookCopy.getLocation());
             stmt.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setLong(6, bookCopy.getId());
+            stmt.setInt(7, bookCopy.getVersion());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                bookCopy.setVersion(bookCopy.getVersion() + 1);
+                return true;
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_VERSION)) {
+            stmt.setLong(1, bookCopy.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    throw new OptimisticLockException("BookCopy", bookCopy.getId(), bookCopy.getVersion());
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts the available copies of a book using the per-book availability counters.
+     *
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The number of available copies
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int countAvailableByBookId(Long bookId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(COUNT_AVAILABLE_BY_BOOK_ID)) {
+            stmt.setLong(1, bookId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Counts the available copies of several books using the per-book availability counters.
+     *
+     * @param bookIds The book IDs
+     * @param connection Database connection to use
+     * @return A map from book ID to the number of available copies
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Map<Long, Integer> countAvailableByBookIds(Collection<Long> bookIds, Connection connection) throws SQLException {
+        Map<Long, Integer> counts = new HashMap<>();
+        if (bookIds.isEmpty()) {
+            return counts;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(bookIds.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(COUNT_AVAILABLE_BY_BOOK_IDS, placeholders))) {
+            int index = 1;
+            for (Long bookId : bookIds) {
+                stmt.setLong(index++, bookId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong("book_id"), rs.getInt("available_count"));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Finds the IDs of the books with at least one available copy using the per-book availability counters.
+     *
+     * @param connection Database connection to use
+     * @return The book IDs
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Long> findAvailableBookIds(Connection connection) throws SQLException {
+        List<Long> bookIds = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_AVAILABLE_BOOK_IDS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                bookIds.add(rs.getLong("book_id"));
+            }
         }
+        return bookIds;
     }
 
     /**
@@ -249,6 +377,127 @@ public class BookCopyDaoImpl implements BookCopyDao {
         }
     }
 
+    /**
+     * Updates the status of several book copies with one statement.
+     * @param bookCopyIds The book copy IDs
+     * @param status The new status
+     * @param connection Database connection to use
+     * @return The number of updated copies
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int updateStatusBatch(Collection<Long> bookCopyIds, BookCopy.CopyStatus status, Connection connection)
+            throws SQLException {
+        if (bookCopyIds.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(bookCopyIds.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(UPDATE_STATUS_BY_IDS, placeholders))) {
+            stmt.setString(1, status.name());
+            stmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
+            int index = 3;
+            for (Long bookCopyId : bookCopyIds) {
+                stmt.setLong(index++, bookCopyId);
+            }
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Reserves a book copy if it is available.
+     * The status check and the update are a single statement, so two transactions can never both reserve the copy.
+     * @param bookCopyId The book copy ID
+     * @param connection Database connection to use
+     * @return true if the copy was available and is now reserved, false otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public boolean reserveIfAvailable(Long bookCopyId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(RESERVE_IF_AVAILABLE)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(2, bookCopyId);
+
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Reserves any available copy of a book.
+     * <p>
+     * The search starts at a random copy ID and wraps around, so concurrent requests for the same book
+     * start at different copies (and therefore locations) instead of queueing on the first one.
+     * Copies locked by other transactions are skipped with SKIP LOCKED; on servers that do not support
+     * it (before MySQL 8.0), a conditional UPDATE ... LIMIT 1 is used instead, which waits for locked
+     * copies but still never reserves a copy twice.
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The ID of the reserved copy, or null if no copy is available
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Long reserveAvailableCopy(Long bookId, Connection connection) throws SQLException {
+        long[] range = findAvailableIdRange(bookId, connection);
+        if (range == null) {
+            return null;
+        }
+        long pivot = ThreadLocalRandom.current().nextLong(range[0], range[1] + 1);
+
+        return SkipLocked.query(connection,
+                conn -> {
+                    Long copyId = lockAvailableCopy(LOCK_AVAILABLE_FROM, bookId, pivot, conn);
+                    if (copyId == null) {
+                        copyId = lockAvailableCopy(LOCK_AVAILABLE_BEFORE, bookId, pivot, conn);
+                    }
+                    return copyId != null && reserveIfAvailable(copyId, conn) ? copyId : null;
+                },
+                conn -> {
+                    Long copyId = reserveAvailableCopy(RESERVE_AVAILABLE_FROM, bookId, pivot, conn);
+                    return copyId != null ? copyId : reserveAvailableCopy(RESERVE_AVAILABLE_BEFORE, bookId, pivot, conn);
+                },
+                "reserving copies");
+    }
+
+    private long[] findAvailableIdRange(Long bookId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_COPY_ID_RANGE)) {
+            stmt.setLong(1, bookId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    long min = rs.getLong(1);
+                    if (!rs.wasNull()) {
+                        return new long[]{min, rs.getLong(2)};
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private Long lockAvailableCopy(String sql, Long bookId, long pivot, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, bookId);
+            stmt.setLong(2, pivot);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    private Long reserveAvailableCopy(String sql, Long bookId, long pivot, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(2, bookId);
+            stmt.setLong(3, pivot);
+            if (stmt.executeUpdate() == 0) {
+                return null;
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(LAST_INSERT_ID);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : null;
+        }
+    }
+
     /**
      * Deletes a book copy by ID.
      *
@@ -274,6 +523,7 @@ public class BookCopyDaoImpl implements BookCopyDao {
         bookCopy.setInventoryNumber(rs.getString("inventory_number"));
         bookCopy.setStatus(BookCopy.CopyStatus.valueOf(rs.getString("status")));
         bookCopy.setLocation(rs.getString("location"));
+        bookCopy.setVersion(rs.getInt("version"));
 
         Timestamp createdAt = rs.getTimestamp("created_at");
         if (createdAt != null) {
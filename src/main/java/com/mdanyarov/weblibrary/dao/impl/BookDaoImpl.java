@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -43,8 +44,8 @@ public class BookDaoImpl implements BookDao {
                     "FROM books WHERE isbn = ?";
 
     private static final String FIND_AVAILABLE =
-            "SELECT DISTINCT b.id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description, b.created_at, b.updated_at " +
-                    "FROM books b JOIN book_copies bc ON b.id = bc.book_id WHERE bc.status = 'AVAILABLE' ORDER BY b.title";
+            "SELECT b.id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description, b.created_at, b.updated_at, " +
+                    "ba.available_count FROM book_availability ba JOIN books b ON b.id = ba.book_id WHERE ba.available_count > 0 ORDER BY b.title";
 
     private static final String FIND_WITH_PAGINATION =
             "SELECT id, title, author, publisher, publication_year, isbn, description, created_at, updated_at " +
@@ -53,6 +54,26 @@ public class BookDaoImpl implements BookDao {
     private static final String COUNT_ALL =
             "SELECT COUNT(*) FROM books";
 
+    private static final String FIND_ALL_ISBNS =
+            "SELECT isbn FROM books WHERE isbn IS NOT NULL AND isbn <> ''";
+
+    private static final String SEARCH_WITH_PAGINATION =
+            "SELECT id, title, author, publisher, publication_year, isbn, description, created_at, updated_at " +
+                    "FROM books WHERE LOWER(title) LIKE LOWER(?) OR LOWER(author) LIKE LOWER(?) OR isbn = ? " +
+                    "ORDER BY title, id LIMIT ? OFFSET ?";
+
+    private static final String COUNT_SEARCH_LIMITED =
+            "SELECT COUNT(*) FROM (SELECT 1 FROM books " +
+                    "WHERE LOWER(title) LIKE LOWER(?) OR LOWER(author) LIKE LOWER(?) OR isbn = ? LIMIT ?) matches";
+
+    private static final String SEARCH_IDS =
+            "SELECT id FROM books WHERE LOWER(title) LIKE LOWER(?) OR LOWER(author) LIKE LOWER(?) OR isbn = ? " +
+                    "ORDER BY title, id LIMIT ?";
+
+    private static final String FIND_BY_IDS =
+            "SELECT id, title, author, publisher, publication_year, isbn, description, created_at, updated_at " +
+                    "FROM books WHERE id IN (%s)";
+
     private static final String INSERT_BOOK =
             "INSERT INTO books (title, author, publisher, publication_year, isbn, description, created_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
@@ -200,7 +221,9 @@ public class BookDaoImpl implements BookDao {
         try (PreparedStatement stmt = connection.prepareStatement(FIND_AVAILABLE);
              ResultSet rs = stmt.executeQuery()) {
             while (rs.next()) {
-                books.add(mapResultSetToBook(rs));
+                Book book = mapResultSetToBook(rs);
+                book.setAvailableCopiesCount(rs.getInt("available_count"));
+                books.add(book);
             }
         }
         return books;
@@ -246,6 +269,123 @@ public class BookDaoImpl implements BookDao {
         return 0;
     }
 
+    /**
+     * Finds the ISBNs of all books that have one.
+     * @param connection Database connection to use
+     * @return List of ISBNs
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<String> findAllIsbns(Connection connection) throws SQLException {
+        List<String> isbns = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_ALL_ISBNS);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                isbns.add(rs.getString(1));
+            }
+        }
+        return isbns;
+    }
+
+    /**
+     * Searches books by title, author (partial match) or ISBN (exact match) with pagination.
+     * @param query The search query
+     * @param limit The maximum number of books to return
+     * @param offset The number of books to skip
+     * @param connection Database connection to use
+     * @return A list of matching books limited by pagination parameters, ordered by title
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Book> searchWithPagination(String query, int limit, int offset, Connection connection) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(SEARCH_WITH_PAGINATION)) {
+            setSearchParameters(stmt, query);
+            stmt.setInt(4, limit);
+            stmt.setInt(5, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(mapResultSetToBook(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Counts the books matching a search query, stopping at a limit.
+     * @param query The search query
+     * @param limit The maximum count to return
+     * @param connection Database connection to use
+     * @return The number of books matching the query, or the limit if at least that many match
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int countSearch(String query, int limit, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(COUNT_SEARCH_LIMITED)) {
+            setSearchParameters(stmt, query);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Finds books by their IDs.
+     * @param ids The IDs of the books to load
+     * @param connection Database connection to use
+     * @return A list of the books found, in no particular order
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Book> findByIds(List<Long> ids, Connection connection) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return books;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(FIND_BY_IDS, placeholders))) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    books.add(mapResultSetToBook(rs));
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Finds the IDs of the books matching a search query, using the same criteria as {@link #countSearch},
+     * stopping at a limit.
+     * @param query The search query
+     * @param limit The maximum number of IDs to return
+     * @param connection Database connection to use
+     * @return A list of matching book IDs, the first ones in title order if more than the limit match
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Long> searchIds(String query, int limit, Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(SEARCH_IDS)) {
+            setSearchParameters(stmt, query);
+            stmt.setInt(4, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
     /**
      * Saves a book (creates or updates).
      *
@@ -336,6 +476,16 @@ public class BookDaoImpl implements BookDao {
         }
     }
 
+    /**
+     * Binds the title, author and ISBN parameters shared by the search queries.
+     */
+    private void setSearchParameters(PreparedStatement stmt, String query) throws SQLException {
+        String pattern = "%" + query + "%";
+        stmt.setString(1, pattern);
+        stmt.setString(2, pattern);
+        stmt.setString(3, query);
+    }
+
     /**
      * Maps a ResultSet row to a Book object.
      */
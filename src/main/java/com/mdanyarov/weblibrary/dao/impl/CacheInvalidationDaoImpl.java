@@ -0,0 +1,185 @@
+package com.mdanyarov.weblibrary.dao.impl;
+
+import com.mdanyarov.weblibrary.dao.CacheInvalidationDao;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * JDBC implementation of CacheInvalidationDao.
+ * Entries are stamped with a node ID generated when the application starts.
+ */
+@Repository
+public class CacheInvalidationDaoImpl implements CacheInvalidationDao {
+
+    private static final String INSERT_INVALIDATION =
+            "INSERT INTO cache_invalidations (entity_type, entity_id, change_type, node_id) VALUES (?, ?, ?, ?)";
+
+    private static final String FIND_MAX_ID =
+            "SELECT COALESCE(MAX(id), 0) FROM cache_invalidations";
+
+    private static final String FIND_AFTER =
+            "SELECT id, entity_type, entity_id, change_type, node_id FROM cache_invalidations " +
+                    "WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String FIND_BY_IDS =
+            "SELECT id, entity_type, entity_id, change_type, node_id FROM cache_invalidations " +
+                    "WHERE id IN (%s) ORDER BY id";
+
+    private static final String DELETE_OLDER_THAN =
+            "DELETE FROM cache_invalidations WHERE created_at < ? ORDER BY id LIMIT ?";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Override
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Appends an entry for a changed entity.
+     *
+     * @param entityType The kind of entity
+     * @param entityId The entity ID
+     * @param changeType The kind of change
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public void append(CacheInvalidation.EntityType entityType, Long entityId, String changeType, Connection connection)
+            throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_INVALIDATION)) {
+            stmt.setString(1, entityType.name());
+            stmt.setLong(2, entityId);
+            stmt.setString(3, changeType);
+            stmt.setString(4, nodeId);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Appends entries for several entities changed in the same way, in one batch.
+     *
+     * @param entityType The kind of entity
+     * @param entityIds The entity IDs
+     * @param changeType The kind of change
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public void appendAll(CacheInvalidation.EntityType entityType, Collection<Long> entityIds, String changeType,
+                          Connection connection) throws SQLException {
+        if (entityIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_INVALIDATION)) {
+            for (Long entityId : entityIds) {
+                stmt.setString(1, entityType.name());
+                stmt.setLong(2, entityId);
+                stmt.setString(3, changeType);
+                stmt.setString(4, nodeId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /**
+     * Finds the highest entry ID.
+     *
+     * @param connection Database connection to use
+     * @return The highest ID, or 0 if the log is empty
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public long findMaxId(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_MAX_ID);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Finds the entries with an ID above the given one, in ID order.
+     *
+     * @param afterId The ID to start after
+     * @param limit The maximum number of entries to return
+     * @param connection Database connection to use
+     * @return List of entries
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<CacheInvalidation> findAfter(long afterId, int limit, Connection connection) throws SQLException {
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_AFTER)) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    invalidations.add(mapResultSetToInvalidation(rs));
+                }
+            }
+        }
+        return invalidations;
+    }
+
+    /**
+     * Finds the entries with the given IDs.
+     *
+     * @param ids Entry IDs
+     * @param connection Database connection to use
+     * @return List of the entries that exist, in ID order
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<CacheInvalidation> findByIds(Collection<Long> ids, Connection connection) throws SQLException {
+        List<CacheInvalidation> invalidations = new ArrayList<>();
+        if (ids.isEmpty()) {
+            return invalidations;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(FIND_BY_IDS, placeholders))) {
+            int index = 1;
+            for (Long id : ids) {
+                stmt.setLong(index++, id);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    invalidations.add(mapResultSetToInvalidation(rs));
+                }
+            }
+        }
+        return invalidations;
+    }
+
+    /**
+     * Deletes entries created before the given time.
+     *
+     * @param before The cut-off time
+     * @param limit The maximum number of entries to delete
+     * @param connection Database connection to use
+     * @return The number of deleted entries
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int deleteOlderThan(LocalDateTime before, int limit, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(DELETE_OLDER_THAN)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(before));
+            stmt.setInt(2, limit);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private CacheInvalidation mapResultSetToInvalidation(ResultSet rs) throws SQLException {
+        return new CacheInvalidation(
+                rs.getLong("id"),
+                CacheInvalidation.EntityType.valueOf(rs.getString("entity_type")),
+                rs.getLong("entity_id"),
+                rs.getString("change_type"),
+                rs.getString("node_id"));
+    }
+}
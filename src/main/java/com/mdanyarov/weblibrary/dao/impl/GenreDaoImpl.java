@@ -4,13 +4,14 @@ import com.mdanyarov.weblibrary.dao.GenreDao;
 import com.mdanyarov.weblibrary.entity.Genre;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.parameters.P;
 import org.springframework.stereotype.Repository;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -51,6 +52,9 @@ public class GenreDaoImpl implements GenreDao {
     private static final String CHECK_BOOK_GENRE_EXISTS =
             "SELECT 1 FROM book_genres WHERE book_id = ? AND genre_id = ?";
 
+    private static final String FIND_ALL_BOOK_GENRES =
+            "SELECT genre_id, book_id FROM book_genres";
+
     /**
      * Finds a genre by ID.
      *
@@ -253,6 +257,25 @@ public class GenreDaoImpl implements GenreDao {
         }
     }
 
+    /**
+     * Finds all genre assignments.
+     * @param connection Database connection to use
+     * @return A map from genre ID to the IDs of the books in that genre
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Map<Long, List<Long>> findBookIdsByGenre(Connection connection) throws SQLException {
+        Map<Long, List<Long>> bookIdsByGenre = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_ALL_BOOK_GENRES);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                bookIdsByGenre.computeIfAbsent(rs.getLong("genre_id"), id -> new ArrayList<>())
+                        .add(rs.getLong("book_id"));
+            }
+        }
+        return bookIdsByGenre;
+    }
+
     private Genre mapResultSetToGenre(ResultSet rs) throws SQLException {
         Genre genre = new Genre();
         genre.setId(rs.getLong("id"));
@@ -0,0 +1,158 @@
+package com.mdanyarov.weblibrary.dao.impl;
+
+import com.mdanyarov.weblibrary.dao.IdempotencyKeyDao;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+
+/**
+ * JDBC implementation of IdempotencyKeyDao.
+ */
+@Repository
+public class IdempotencyKeyDaoImpl implements IdempotencyKeyDao {
+
+    private static final String INSERT_KEY =
+            "INSERT INTO idempotency_keys (user_id, idempotency_key, created_at) VALUES (?, ?, ?)";
+
+    private static final String FIND_RESULT =
+            "SELECT result FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ?";
+
+    private static final String TAKE_OVER =
+            "UPDATE idempotency_keys SET created_at = ? " +
+                    "WHERE user_id = ? AND idempotency_key = ? AND result IS NULL AND created_at < ?";
+
+    private static final String SAVE_RESULT =
+            "UPDATE idempotency_keys SET result = ? WHERE user_id = ? AND idempotency_key = ?";
+
+    private static final String DELETE_KEY =
+            "DELETE FROM idempotency_keys WHERE user_id = ? AND idempotency_key = ?";
+
+    private static final String DELETE_OLDER_THAN =
+            "DELETE FROM idempotency_keys WHERE created_at < ? ORDER BY created_at LIMIT ?";
+
+    /** MySQL error code for duplicate keys. */
+    private static final int ER_DUP_ENTRY = 1062;
+
+    /**
+     * Records a key before its action runs.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @return true if the key was recorded, false if the user already used it
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public boolean insert(Long userId, String key, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_KEY)) {
+            stmt.setLong(1, userId);
+            stmt.setString(2, key);
+            stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            if (e.getErrorCode() == ER_DUP_ENTRY) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Finds the stored result of a key.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @return The result, or null if the key is unknown or its action has not finished
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public String findResult(Long userId, String key, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_RESULT)) {
+            stmt.setLong(1, userId);
+            stmt.setString(2, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("result") : null;
+            }
+        }
+    }
+
+    /**
+     * Takes over a key whose action never stored a result, such as one left by a node that stopped
+     * while running it. The key's recording time is reset, so only one caller takes it over.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param recordedBefore Only keys recorded before this time are taken over
+     * @param connection Database connection to use
+     * @return true if the key was taken over, false if it has a result or was recorded later
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public boolean takeOver(Long userId, String key, LocalDateTime recordedBefore, Connection connection)
+            throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(TAKE_OVER)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            stmt.setLong(2, userId);
+            stmt.setString(3, key);
+            stmt.setTimestamp(4, Timestamp.valueOf(recordedBefore));
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Stores the result of a key's action.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param result The serialized result
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public void saveResult(Long userId, String key, String result, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(SAVE_RESULT)) {
+            stmt.setString(1, result);
+            stmt.setLong(2, userId);
+            stmt.setString(3, key);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes a key, so the submission can be retried.
+     *
+     * @param userId The ID of the submitting user
+     * @param key The idempotency key
+     * @param connection Database connection to use
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public void delete(Long userId, String key, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(DELETE_KEY)) {
+            stmt.setLong(1, userId);
+            stmt.setString(2, key);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes keys recorded before the given time, oldest first.
+     *
+     * @param before The time limit
+     * @param limit The maximum number of keys to delete
+     * @param connection Database connection to use
+     * @return The number of deleted keys
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int deleteOlderThan(LocalDateTime before, int limit, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(DELETE_OLDER_THAN)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(before));
+            stmt.setInt(2, limit);
+            return stmt.executeUpdate();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.mdanyarov.weblibrary.dao.impl;
 
+import com.mdanyarov.weblibrary.dao.OptimisticLockException;
 import com.mdanyarov.weblibrary.dao.OrderDao;
+import com.mdanyarov.weblibrary.dao.SkipLocked;
 import com.mdanyarov.weblibrary.entity.Book;
 import com.mdanyarov.weblibrary.entity.BookCopy;
 import com.mdanyarov.weblibrary.entity.Order;
@@ -11,8 +13,7 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.*;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * JDBC implementation of OrderDao.
@@ -23,9 +24,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_BY_ID = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -38,9 +39,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_ALL = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -53,9 +54,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_BY_USER_ID = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -69,9 +70,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_BY_BOOK_COPY_ID = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -85,9 +86,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_ACTIVE_BY_USER_ID = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -101,9 +102,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_BY_STATUS = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -117,9 +118,9 @@ public class OrderDaoImpl implements OrderDao {
 
     private static final String FIND_OVERDUE = """
             SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
-                   o.return_date, o.actual_return_date, o.notes, o.created_at, o.updated_at,
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
                    u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
-                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
                    b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
                    p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
             FROM orders o
@@ -127,7 +128,7 @@ public class OrderDaoImpl implements OrderDao {
             JOIN book_copies bc ON o.book_copy_id = bc.id
             JOIN books b ON bc.book_id = b.id
             LEFT JOIN users p ON o.processed_by = p.id
-            WHERE o.order_status = 'APPROVED' AND o.return_date < NOW() AND o.actual_return_date IS NULL
+            WHERE o.overdue = TRUE
             ORDER BY o.return_date ASC
             """;
 
@@ -135,17 +136,138 @@ public class OrderDaoImpl implements OrderDao {
             "INSERT INTO orders (user_id, book_copy_id, order_type, order_status, order_date, notes, created_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
+    // Recomputes the overdue flag of an updated row; MySQL evaluates the assignments left to right,
+    // so it has to come after the assignments of the columns it reads
+    private static final String OVERDUE_FROM_COLUMNS =
+            "overdue = (order_status = 'APPROVED' AND return_date IS NOT NULL AND return_date < NOW() " +
+                    "AND actual_return_date IS NULL)";
+
     private static final String UPDATE_ORDER =
             "UPDATE orders SET user_id = ?, book_copy_id = ?, order_type = ?, order_status = ?, " +
-                    "approval_date = ?, return_date = ?, actual_return_date = ?, processed_by = ?, notes = ?, updated_at = ? " +
-                    "WHERE id = ?";
+                    "approval_date = ?, return_date = ?, actual_return_date = ?, processed_by = ?, notes = ?, updated_at = ?, " +
+                    OVERDUE_FROM_COLUMNS + ", version = version + 1 WHERE id = ? AND version = ?";
+
+    private static final String FIND_VERSION =
+            "SELECT version FROM orders WHERE id = ?";
 
     private static final String UPDATE_STATUS =
-            "UPDATE orders SET order_status = ?, updated_at = ? WHERE id = ?";
+            "UPDATE orders SET order_status = ?, updated_at = ?, " + OVERDUE_FROM_COLUMNS + ", version = version + 1 " +
+                    "WHERE id = ?";
+
+    private static final String APPROVE_IF_PENDING =
+            "UPDATE orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "SET o.order_status = 'APPROVED', o.approval_date = ?, o.return_date = ?, o.processed_by = ?, " +
+                    "o.overdue = FALSE, o.updated_at = ?, o.version = o.version + 1, bc.status = 'ISSUED', bc.updated_at = ?, bc.version = bc.version + 1 " +
+                    "WHERE o.id = ? AND o.order_status = 'PENDING'";
+
+    private static final String REJECT_IF_PENDING =
+            "UPDATE orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "SET o.order_status = 'REJECTED', o.approval_date = ?, o.processed_by = ?, o.notes = ?, " +
+                    "o.updated_at = ?, o.version = o.version + 1, bc.status = 'AVAILABLE', bc.updated_at = ?, bc.version = bc.version + 1 " +
+                    "WHERE o.id = ? AND o.order_status = 'PENDING'";
+
+    private static final String RETURN_IF_APPROVED =
+            "UPDATE orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "SET o.order_status = 'RETURNED', o.actual_return_date = ?, o.overdue = FALSE, " +
+                    "o.updated_at = ?, o.version = o.version + 1, bc.status = 'AVAILABLE', bc.updated_at = ?, bc.version = bc.version + 1 " +
+                    "WHERE o.id = ? AND o.order_status = 'APPROVED'";
+
+    private static final String CANCEL_IF_PENDING =
+            "UPDATE orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "SET o.order_status = 'CANCELLED', o.updated_at = ?, o.version = o.version + 1, " +
+                    "bc.status = 'AVAILABLE', bc.updated_at = ?, bc.version = bc.version + 1 " +
+                    "WHERE o.id = ? AND o.user_id = ? AND o.order_status = 'PENDING'";
+
+    // Read after a transition; the updated order row stays locked until the transaction ends
+    private static final String FIND_BOOK_ID =
+            "SELECT bc.book_id FROM orders o JOIN book_copies bc ON o.book_copy_id = bc.id WHERE o.id = ?";
+
+    private static final String FIND_FOR_TRANSITION =
+            "SELECT o.id, o.user_id, o.book_copy_id, o.order_type, o.order_status, o.order_date, o.approval_date, " +
+                    "o.return_date, o.actual_return_date, o.processed_by, o.notes, o.version, bc.book_id " +
+                    "FROM orders o JOIN book_copies bc ON o.book_copy_id = bc.id WHERE o.id IN (%s) FOR UPDATE";
+
+    private static final String UPDATE_TRANSITION =
+            "UPDATE orders SET order_status = ?, approval_date = ?, return_date = ?, actual_return_date = ?, " +
+                    "processed_by = ?, notes = ?, updated_at = ?, " + OVERDUE_FROM_COLUMNS + ", version = version + 1 " +
+                    "WHERE id = ? AND order_status = ?";
+
+    private static final String MARK_OVERDUE =
+            "UPDATE orders SET overdue = TRUE WHERE order_status = 'APPROVED' AND return_date < ? " +
+                    "AND actual_return_date IS NULL AND overdue = FALSE";
+
+    private static final String MARK_OVERDUE_BY_IDS =
+            "UPDATE orders SET overdue = TRUE WHERE id IN (%s) AND order_status = 'APPROVED' AND return_date < ? " +
+                    "AND actual_return_date IS NULL AND overdue = FALSE";
+
+    private static final String CLEAR_STALE_OVERDUE =
+            "UPDATE orders SET overdue = FALSE WHERE overdue = TRUE AND (order_status <> 'APPROVED' " +
+                    "OR return_date IS NULL OR return_date >= ? OR actual_return_date IS NOT NULL)";
+
+    private static final String FIND_RETURN_DATES_BETWEEN =
+            "SELECT id, return_date FROM orders WHERE order_status = 'APPROVED' AND return_date >= ? AND return_date < ? " +
+                    "AND actual_return_date IS NULL";
+
+    private static final String LOCK_STALE_PENDING =
+            "SELECT o.id, o.user_id, o.book_copy_id, bc.book_id FROM orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "WHERE o.order_status = 'PENDING' AND o.order_date < ? ORDER BY o.order_date LIMIT ? " +
+                    "FOR UPDATE SKIP LOCKED";
+
+    // Fallback for servers without SKIP LOCKED: rows are read without locks and re-checked by EXPIRE_PENDING
+    private static final String FIND_STALE_PENDING =
+            "SELECT o.id, o.user_id, o.book_copy_id, bc.book_id FROM orders o JOIN book_copies bc ON o.book_copy_id = bc.id " +
+                    "WHERE o.order_status = 'PENDING' AND o.order_date < ? ORDER BY o.order_date LIMIT ?";
+
+    private static final String EXPIRE_PENDING =
+            "UPDATE orders SET order_status = 'EXPIRED', updated_at = ?, version = version + 1 " +
+                    "WHERE id = ? AND order_status = 'PENDING'";
+
+    private static final String CLAIMABLE = "order_status = 'PENDING' AND (claimed_by IS NULL OR claim_expires_at <= ?)";
+
+    private static final String LOCK_CLAIMABLE =
+            "SELECT id FROM orders WHERE " + CLAIMABLE + " ORDER BY order_date, id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // Fallback for servers without SKIP LOCKED: rows are read without locks and re-checked by CLAIM
+    private static final String FIND_CLAIMABLE =
+            "SELECT id FROM orders WHERE " + CLAIMABLE + " ORDER BY order_date, id LIMIT ?";
+
+    private static final String COUNT_CLAIMABLE =
+            "SELECT COUNT(*) FROM orders WHERE " + CLAIMABLE;
+
+    // Claims do not change the order itself, so they leave version alone and do not invalidate open edit forms
+    private static final String CLAIM =
+            "UPDATE orders SET claimed_by = ?, claim_expires_at = ? WHERE id = ? AND " + CLAIMABLE;
+
+    private static final String RENEW_CLAIMS =
+            "UPDATE orders SET claim_expires_at = ? " +
+                    "WHERE claimed_by = ? AND order_status = 'PENDING' AND claim_expires_at > ?";
+
+    private static final String RELEASE_CLAIMS =
+            "UPDATE orders SET claimed_by = NULL, claim_expires_at = NULL " +
+                    "WHERE claimed_by = ? AND order_status = 'PENDING'";
+
+    private static final String FIND_CLAIMED_BY = """
+            SELECT o.id, o.order_type, o.order_status, o.order_date, o.approval_date, 
+                   o.return_date, o.actual_return_date, o.notes, o.version, o.created_at, o.updated_at,
+                   u.id as user_id, u.username, u.email, u.first_name, u.last_name, u.role, u.status,
+                   bc.id as copy_id, bc.inventory_number, bc.status as copy_status, bc.location, bc.version as copy_version,
+                   b.id as book_id, b.title, b.author, b.publisher, b.publication_year, b.isbn, b.description,
+                   p.id as processed_by_id, p.username as processed_by_username, p.first_name as processed_by_first_name, p.last_name as processed_by_last_name
+            FROM orders o
+            JOIN users u ON o.user_id = u.id
+            JOIN book_copies bc ON o.book_copy_id = bc.id
+            JOIN books b ON bc.book_id = b.id
+            LEFT JOIN users p ON o.processed_by = p.id
+            WHERE o.claimed_by = ? AND o.order_status = 'PENDING' AND o.claim_expires_at > ?
+            ORDER BY o.order_date, o.id
+            """;
 
     private static final String DELETE_ORDER =
             "DELETE FROM orders WHERE id = ?";
 
+    private static final String COUNT_ORDERS_BY_BOOK =
+            "SELECT bc.book_id, COUNT(*) FROM orders o JOIN book_copies bc ON o.book_copy_id = bc.id GROUP BY bc.book_id";
+
     /**
      * Finds an order by ID.
      *
@@ -276,7 +398,9 @@ public class OrderDaoImpl implements OrderDao {
     }
 
     /**
-     * Finds orders that are overdue (past return date but not returned).
+     * Finds orders flagged as overdue (past return date but not returned).
+     * The flag is maintained by {@link #markOverdue} and {@link #markOverdueByIds}, so the query
+     * reads only the overdue orders.
      *
      * @param connection Database connection to use
      * @return A list of overdue orders
@@ -313,7 +437,7 @@ public class OrderDaoImpl implements OrderDao {
     }
 
     private Order insert(Order order, Connection connection) throws SQLException {
-        try (PreparedStatement stmt = connection.prepareStatement(INSERT_ORDER)) {
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_ORDER, Statement.RETURN_GENERATED_KEYS)) {
             stmt.setLong(1, order.getUser().getId());
             stmt.setLong(2, order.getBookCopy().getId());
             stmt.setString(3, order.getOrderType().name());
@@ -339,11 +463,12 @@ public class OrderDaoImpl implements OrderDao {
     }
 
     /**
-     * Updates an existing order.
+     * Updates an existing order if its version still matches, incrementing the version.
      *
      * @param order The order to update
      * @param connection Database connection to use
-     * @return true if the update was successful, false otherwise
+     * @return true if the update was successful, false if the order does not exist
+     * @throws OptimisticLockException if the order was changed since it was read
      * @throws SQLException if there is an error executing the query
      */
     @Override
@@ -360,9 +485,23 @@ public class OrderDaoImpl implements OrderDao {
             stmt.setString(9, order.getNotes());
             stmt.setTimestamp(10, Timestamp.valueOf(LocalDateTime.now()));
             stmt.setLong(11, order.getId());
+            stmt.setInt(12, order.getVersion());
 
-            return stmt.executeUpdate() > 0;
+            if (stmt.executeUpdate() > 0) {
+                order.setVersion(order.getVersion() + 1);
+                return true;
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_VERSION)) {
+            stmt.setLong(1, order.getId());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    throw new OptimisticLockException("Order", order.getId(), order.getVersion());
+                }
+            }
         }
+        return false;
     }
 
     /**
@@ -401,12 +540,555 @@ public class OrderDaoImpl implements OrderDao {
         }
     }
 
+    /**
+     * Counts orders per book, regardless of status.
+     *
+     * @param connection Database connection to use
+     * @return A map from book ID to the number of orders placed for its copies
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Map<Long, Integer> countOrdersByBook(Connection connection) throws SQLException {
+        Map<Long, Integer> counts = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(COUNT_ORDERS_BY_BOOK);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                counts.put(rs.getLong(1), rs.getInt(2));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Flags the approved orders whose return date is before the given time as overdue.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of newly flagged orders
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int markOverdue(LocalDateTime now, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(MARK_OVERDUE)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Flags the given orders as overdue if they are approved and their return date is before the given time.
+     *
+     * @param orderIds Order IDs
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of newly flagged orders
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int markOverdueByIds(Collection<Long> orderIds, LocalDateTime now, Connection connection)
+            throws SQLException {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(MARK_OVERDUE_BY_IDS, placeholders))) {
+            int index = 1;
+            for (Long orderId : orderIds) {
+                stmt.setLong(index++, orderId);
+            }
+            stmt.setTimestamp(index, Timestamp.valueOf(now));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Clears the overdue flag of orders that are no longer overdue at the given time.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of cleared orders
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int clearStaleOverdue(LocalDateTime now, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(CLEAR_STALE_OVERDUE)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Finds the return dates of the approved, not returned orders due in a time range.
+     *
+     * @param from The inclusive start of the range
+     * @param to The exclusive end of the range
+     * @param connection Database connection to use
+     * @return A map from order ID to return date
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Map<Long, LocalDateTime> findReturnDatesBetween(LocalDateTime from, LocalDateTime to, Connection connection)
+            throws SQLException {
+        Map<Long, LocalDateTime> returnDates = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_RETURN_DATES_BETWEEN)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(from));
+            stmt.setTimestamp(2, Timestamp.valueOf(to));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    returnDates.put(rs.getLong("id"), rs.getTimestamp("return_date").toLocalDateTime());
+                }
+            }
+        }
+        return returnDates;
+    }
+
+    /**
+     * Approves a pending order and marks its copy as issued, in one statement.
+     *
+     * @param orderId The order ID
+     * @param librarianId The ID of the approving librarian
+     * @param returnDate The expected return date
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending and is now approved, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Long approveIfPending(Long orderId, Long librarianId, LocalDateTime returnDate, Connection connection)
+            throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(APPROVE_IF_PENDING)) {
+            stmt.setTimestamp(1, now);
+            stmt.setTimestamp(2, returnDate != null ? Timestamp.valueOf(returnDate) : null);
+            stmt.setLong(3, librarianId);
+            stmt.setTimestamp(4, now);
+            stmt.setTimestamp(5, now);
+            stmt.setLong(6, orderId);
+
+            return executeTransition(stmt, orderId, connection);
+        }
+    }
+
+    /**
+     * Rejects a pending order and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param librarianId The ID of the rejecting librarian
+     * @param notes The reason for rejection
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending and is now rejected, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Long rejectIfPending(Long orderId, Long librarianId, String notes, Connection connection)
+            throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(REJECT_IF_PENDING)) {
+            stmt.setTimestamp(1, now);
+            stmt.setLong(2, librarianId);
+            stmt.setString(3, notes);
+            stmt.setTimestamp(4, now);
+            stmt.setTimestamp(5, now);
+            stmt.setLong(6, orderId);
+
+            return executeTransition(stmt, orderId, connection);
+        }
+    }
+
+    /**
+     * Marks an approved order as returned and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was approved and is now returned, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Long returnIfApproved(Long orderId, Connection connection) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(RETURN_IF_APPROVED)) {
+            stmt.setTimestamp(1, now);
+            stmt.setTimestamp(2, now);
+            stmt.setTimestamp(3, now);
+            stmt.setLong(4, orderId);
+
+            return executeTransition(stmt, orderId, connection);
+        }
+    }
+
+    /**
+     * Cancels a pending order of a user and makes its copy available, in one statement.
+     *
+     * @param orderId The order ID
+     * @param userId The ID of the user who placed the order
+     * @param connection Database connection to use
+     * @return The book ID of the order if it was pending, belonged to the user and is now cancelled, null otherwise
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Long cancelIfPending(Long orderId, Long userId, Connection connection) throws SQLException {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(CANCEL_IF_PENDING)) {
+            stmt.setTimestamp(1, now);
+            stmt.setTimestamp(2, now);
+            stmt.setLong(3, orderId);
+            stmt.setLong(4, userId);
+
+            return executeTransition(stmt, orderId, connection);
+        }
+    }
+
+    /**
+     * Runs a conditional transition and, if it matched the order, reads the book ID of the order.
+     */
+    private static Long executeTransition(PreparedStatement stmt, Long orderId, Connection connection)
+            throws SQLException {
+        if (stmt.executeUpdate() == 0) {
+            return null;
+        }
+        try (PreparedStatement select = connection.prepareStatement(FIND_BOOK_ID)) {
+            select.setLong(1, orderId);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Finds orders for a status transition and locks them until the transaction ends.
+     *
+     * @param orderIds The order IDs
+     * @param connection Database connection to use
+     * @return A map from order ID to order, for the orders that exist
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public Map<Long, Order> findForTransition(Collection<Long> orderIds, Connection connection) throws SQLException {
+        Map<Long, Order> orders = new HashMap<>();
+        if (orderIds.isEmpty()) {
+            return orders;
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(orderIds.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement(String.format(FIND_FOR_TRANSITION, placeholders))) {
+            int index = 1;
+            for (Long orderId : orderIds) {
+                stmt.setLong(index++, orderId);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order order = new Order();
+                    order.setId(rs.getLong("id"));
+                    order.setOrderType(Order.OrderType.valueOf(rs.getString("order_type")));
+                    order.setOrderStatus(Order.OrderStatus.valueOf(rs.getString("order_status")));
+                    order.setNotes(rs.getString("notes"));
+                    order.setVersion(rs.getInt("version"));
+                    order.setOrderDate(toLocalDateTime(rs.getTimestamp("order_date")));
+                    order.setApprovedDate(toLocalDateTime(rs.getTimestamp("approval_date")));
+                    order.setReturnDate(toLocalDateTime(rs.getTimestamp("return_date")));
+                    order.setActualReturnDate(toLocalDateTime(rs.getTimestamp("actual_return_date")));
+
+                    User user = new User();
+                    user.setId(rs.getLong("user_id"));
+                    order.setUser(user);
+
+                    long processedById = rs.getLong("processed_by");
+                    if (!rs.wasNull()) {
+                        User processedBy = new User();
+                        processedBy.setId(processedById);
+                        order.setProcessedBy(processedBy);
+                    }
+
+                    Book book = new Book();
+                    book.setId(rs.getLong("book_id"));
+                    BookCopy bookCopy = new BookCopy();
+                    bookCopy.setId(rs.getLong("book_copy_id"));
+                    bookCopy.setBook(book);
+                    order.setBookCopy(bookCopy);
+
+                    orders.put(order.getId(), order);
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Writes the status, dates, processing librarian and notes of orders with one prepared statement,
+     * updating each order only if it still has the expected status.
+     * The updates are not batched, since a batch may report {@link Statement#SUCCESS_NO_INFO} instead of
+     * row counts; without rewriting, Connector/J sends batched statements one at a time anyway.
+     *
+     * @param orders The orders to write
+     * @param expectedStatus The status the orders must have in the database
+     * @param connection Database connection to use
+     * @return The IDs of the updated orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    @Override
+    public Set<Long> updateTransitionBatch(List<Order> orders, Order.OrderStatus expectedStatus, Connection connection)
+            throws SQLException {
+        Set<Long> updated = new HashSet<>();
+        if (orders.isEmpty()) {
+            return updated;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(UPDATE_TRANSITION)) {
+            for (Order order : orders) {
+                stmt.setString(1, order.getOrderStatus().name());
+                stmt.setTimestamp(2, order.getApprovedDate() != null ? Timestamp.valueOf(order.getApprovedDate()) : null);
+                stmt.setTimestamp(3, order.getReturnDate() != null ? Timestamp.valueOf(order.getReturnDate()) : null);
+                stmt.setTimestamp(4, order.getActualReturnDate() != null ? Timestamp.valueOf(order.getActualReturnDate()) : null);
+                stmt.setObject(5, order.getProcessedBy() != null ? order.getProcessedBy().getId() : null);
+                stmt.setString(6, order.getNotes());
+                stmt.setTimestamp(7, now);
+                stmt.setLong(8, order.getId());
+                stmt.setString(9, expectedStatus.name());
+                if (stmt.executeUpdate() > 0) {
+                    updated.add(order.getId());
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Finds pending orders placed before the given time, oldest first, and locks them and their copies.
+     * Rows locked by other transactions are skipped with SKIP LOCKED, so live transactions are never waited
+     * for. On servers that do not support it, the orders are read without locks instead and must be expired
+     * with {@link #expirePending}, which re-checks their status.
+     *
+     * @param orderedBefore The order date limit
+     * @param limit The maximum number of orders
+     * @param connection Database connection to use
+     * @return Orders with their IDs, user ID, copy ID and book ID populated
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Order> lockStalePending(LocalDateTime orderedBefore, int limit, Connection connection)
+            throws SQLException {
+        return SkipLocked.query(connection,
+                conn -> findStalePending(LOCK_STALE_PENDING, orderedBefore, limit, conn),
+                conn -> findStalePending(FIND_STALE_PENDING, orderedBefore, limit, conn),
+                "expiring orders");
+    }
+
+    /**
+     * Marks pending orders as expired, skipping those that are no longer pending.
+     *
+     * @param orderIds Order IDs
+     * @param connection Database connection to use
+     * @return The IDs of the expired orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    @Override
+    public Set<Long> expirePending(List<Long> orderIds, Connection connection) throws SQLException {
+        Set<Long> expired = new HashSet<>();
+        if (orderIds.isEmpty()) {
+            return expired;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try (PreparedStatement stmt = connection.prepareStatement(EXPIRE_PENDING)) {
+            for (Long orderId : orderIds) {
+                stmt.setTimestamp(1, now);
+                stmt.setLong(2, orderId);
+                if (stmt.executeUpdate() > 0) {
+                    expired.add(orderId);
+                }
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Finds claimable pending orders, oldest first, and locks them, skipping rows locked by other
+     * transactions. Without SKIP LOCKED support the rows are read without locks; {@link #claim}
+     * re-checks them.
+     *
+     * @param now The current time
+     * @param limit The maximum number of orders
+     * @param connection Database connection to use
+     * @return The order IDs
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Long> lockClaimable(LocalDateTime now, int limit, Connection connection) throws SQLException {
+        return SkipLocked.query(connection,
+                conn -> findClaimable(LOCK_CLAIMABLE, now, limit, conn),
+                conn -> findClaimable(FIND_CLAIMABLE, now, limit, conn),
+                "claiming orders");
+    }
+
+    /**
+     * Claims pending orders for a librarian, skipping those that are no longer claimable.
+     *
+     * @param orderIds Order IDs
+     * @param librarianId The ID of the claiming librarian
+     * @param now The current time
+     * @param claimExpiresAt The time the claims expire
+     * @param connection Database connection to use
+     * @return The IDs of the claimed orders
+     * @throws SQLException if there is an error executing the statements
+     */
+    @Override
+    public Set<Long> claim(List<Long> orderIds, Long librarianId, LocalDateTime now, LocalDateTime claimExpiresAt,
+                           Connection connection) throws SQLException {
+        Set<Long> claimed = new HashSet<>();
+        if (orderIds.isEmpty()) {
+            return claimed;
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(CLAIM)) {
+            for (Long orderId : orderIds) {
+                stmt.setLong(1, librarianId);
+                stmt.setTimestamp(2, Timestamp.valueOf(claimExpiresAt));
+                stmt.setLong(3, orderId);
+                stmt.setTimestamp(4, Timestamp.valueOf(now));
+                if (stmt.executeUpdate() > 0) {
+                    claimed.add(orderId);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Extends the unexpired claims of a librarian on pending orders.
+     *
+     * @param librarianId The librarian ID
+     * @param now The current time
+     * @param claimExpiresAt The new expiry time of the claims
+     * @param connection Database connection to use
+     * @return The number of extended claims
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int renewClaims(Long librarianId, LocalDateTime now, LocalDateTime claimExpiresAt, Connection connection)
+            throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(RENEW_CLAIMS)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(claimExpiresAt));
+            stmt.setLong(2, librarianId);
+            stmt.setTimestamp(3, Timestamp.valueOf(now));
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Releases the claims of a librarian on pending orders.
+     *
+     * @param librarianId The librarian ID
+     * @param connection Database connection to use
+     * @return The number of released orders
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int releaseClaims(Long librarianId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(RELEASE_CLAIMS)) {
+            stmt.setLong(1, librarianId);
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Finds the pending orders claimed by a librarian whose claim has not expired.
+     *
+     * @param librarianId The librarian ID
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The claimed orders, oldest first
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<Order> findClaimedBy(Long librarianId, LocalDateTime now, Connection connection) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_CLAIMED_BY)) {
+            stmt.setLong(1, librarianId);
+            stmt.setTimestamp(2, Timestamp.valueOf(now));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    orders.add(mapResultSetToOrder(rs));
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * Counts the pending orders that are not claimed or whose claim has expired.
+     *
+     * @param now The current time
+     * @param connection Database connection to use
+     * @return The number of claimable orders
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public int countClaimable(LocalDateTime now, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(COUNT_CLAIMABLE)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    private List<Long> findClaimable(String sql, LocalDateTime now, int limit, Connection connection)
+            throws SQLException {
+        List<Long> orderIds = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(now));
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    orderIds.add(rs.getLong(1));
+                }
+            }
+        }
+        return orderIds;
+    }
+
+    private List<Order> findStalePending(String sql, LocalDateTime orderedBefore, int limit, Connection connection)
+            throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setTimestamp(1, Timestamp.valueOf(orderedBefore));
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Order order = new Order();
+                    order.setId(rs.getLong("id"));
+                    order.setOrderStatus(Order.OrderStatus.PENDING);
+
+                    User user = new User();
+                    user.setId(rs.getLong("user_id"));
+                    order.setUser(user);
+
+                    Book book = new Book();
+                    book.setId(rs.getLong("book_id"));
+                    BookCopy bookCopy = new BookCopy();
+                    bookCopy.setId(rs.getLong("book_copy_id"));
+                    bookCopy.setBook(book);
+                    order.setBookCopy(bookCopy);
+
+                    orders.add(order);
+                }
+            }
+        }
+        return orders;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
     private Order mapResultSetToOrder(ResultSet rs) throws SQLException {
         Order order = new Order();
         order.setId(rs.getLong("id"));
         order.setOrderType(Order.OrderType.valueOf(rs.getString("order_type")));
         order.setOrderStatus(Order.OrderStatus.valueOf(rs.getString("order_status")));
         order.setNotes(rs.getString("notes"));
+        order.setVersion(rs.getInt("version"));
 
         Timestamp orderDate = rs.getTimestamp("order_date");
         if (orderDate != null) {
@@ -452,6 +1134,7 @@ public class OrderDaoImpl implements OrderDao {
         bookCopy.setInventoryNumber(rs.getString("inventory_number"));
         bookCopy.setStatus(BookCopy.CopyStatus.valueOf(rs.getString("copy_status")));
         bookCopy.setLocation(rs.getString("location"));
+        bookCopy.setVersion(rs.getInt("copy_version"));
         bookCopy.setBook(book);
         order.setBookCopy(bookCopy);
 
@@ -0,0 +1,148 @@
+package com.mdanyarov.weblibrary.dao.impl;
+
+import com.mdanyarov.weblibrary.dao.WaitlistDao;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.entity.WaitlistEntry;
+import org.springframework.stereotype.Repository;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC implementation of WaitlistDao.
+ */
+@Repository
+public class WaitlistDaoImpl implements WaitlistDao {
+
+    private static final String INSERT_ENTRY =
+            "INSERT INTO waitlist_entries (book_id, user_id, order_type, notes, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String LOCK_FIRST_BY_BOOK_ID =
+            "SELECT id, book_id, user_id, order_type, notes, created_at FROM waitlist_entries " +
+                    "WHERE book_id = ? ORDER BY id LIMIT 1 FOR UPDATE";
+
+    private static final String FIND_ALL =
+            "SELECT id, book_id, user_id, order_type, notes, created_at FROM waitlist_entries ORDER BY id";
+
+    private static final String DELETE_ENTRY =
+            "DELETE FROM waitlist_entries WHERE id = ?";
+
+    private static final String DELETE_BY_BOOK_ID_AND_USER_ID =
+            "DELETE FROM waitlist_entries WHERE book_id = ? AND user_id = ?";
+
+    /**
+     * Adds a reader to the end of the waitlist of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     * @param orderType The type of the order to place when a copy becomes available
+     * @param notes Notes for that order
+     * @param connection Database connection to use
+     * @return The created entry
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public WaitlistEntry add(Long bookId, Long userId, Order.OrderType orderType, String notes, Connection connection)
+            throws SQLException {
+        LocalDateTime now = LocalDateTime.now();
+        try (PreparedStatement stmt = connection.prepareStatement(INSERT_ENTRY, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setLong(1, bookId);
+            stmt.setLong(2, userId);
+            stmt.setString(3, orderType.name());
+            stmt.setString(4, notes);
+            stmt.setTimestamp(5, Timestamp.valueOf(now));
+            stmt.executeUpdate();
+
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Creating waitlist entry failed, no ID obtained.");
+                }
+                return new WaitlistEntry(generatedKeys.getLong(1), bookId, userId, orderType, notes, now);
+            }
+        }
+    }
+
+    /**
+     * Finds the first entry of the waitlist of a book and locks it until the transaction ends.
+     *
+     * @param bookId The book ID
+     * @param connection Database connection to use
+     * @return The first entry, or null if nobody is waiting
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public WaitlistEntry lockFirstByBookId(Long bookId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(LOCK_FIRST_BY_BOOK_ID)) {
+            stmt.setLong(1, bookId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapResultSetToEntry(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Finds all entries, in ID order.
+     *
+     * @param connection Database connection to use
+     * @return List of entries
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public List<WaitlistEntry> findAll(Connection connection) throws SQLException {
+        List<WaitlistEntry> entries = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(FIND_ALL);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                entries.add(mapResultSetToEntry(rs));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes an entry.
+     *
+     * @param id The entry ID
+     * @param connection Database connection to use
+     * @return true if the entry existed
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public boolean delete(Long id, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(DELETE_ENTRY)) {
+            stmt.setLong(1, id);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Removes a reader from the waitlist of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     * @param connection Database connection to use
+     * @return true if the reader was waiting
+     * @throws SQLException if there is an error executing the query
+     */
+    @Override
+    public boolean deleteByBookIdAndUserId(Long bookId, Long userId, Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(DELETE_BY_BOOK_ID_AND_USER_ID)) {
+            stmt.setLong(1, bookId);
+            stmt.setLong(2, userId);
+            return stmt.executeUpdate() > 0;
+        }
+    }
+
+    private WaitlistEntry mapResultSetToEntry(ResultSet rs) throws SQLException {
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new WaitlistEntry(
+                rs.getLong("id"),
+                rs.getLong("book_id"),
+                rs.getLong("user_id"),
+                Order.OrderType.valueOf(rs.getString("order_type")),
+                rs.getString("notes"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+}
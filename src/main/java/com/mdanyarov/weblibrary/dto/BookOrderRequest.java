@@ -0,0 +1,36 @@
+package com.mdanyarov.weblibrary.dto;
+
+import com.mdanyarov.weblibrary.entity.Order;
+
+/**
+ * DTO for a reader's request for any available copy of a book, as queued by the order intake.
+ */
+public class BookOrderRequest {
+    private final Long userId;
+    private final Long bookId;
+    private final Order.OrderType orderType;
+    private final String notes;
+
+    public BookOrderRequest(Long userId, Long bookId, Order.OrderType orderType, String notes) {
+        this.userId = userId;
+        this.bookId = bookId;
+        this.orderType = orderType;
+        this.notes = notes;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Order.OrderType getOrderType() {
+        return orderType;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+}
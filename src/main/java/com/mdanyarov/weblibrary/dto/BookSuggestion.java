@@ -0,0 +1,47 @@
+package com.mdanyarov.weblibrary.dto;
+
+/**
+ * DTO for a single typeahead suggestion.
+ * Represents either a book title or an author name matching the typed prefix.
+ */
+public class BookSuggestion {
+    private final String text;
+    private final Type type;
+    private final Long bookId;
+    private final long score;
+
+    /**
+     * Enum representing the field a suggestion was taken from.
+     */
+    public enum Type {
+        TITLE, AUTHOR
+    }
+
+    public BookSuggestion(String text, Type type, Long bookId, long score) {
+        this.text = text;
+        this.type = type;
+        this.bookId = bookId;
+        this.score = score;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ID of the suggested book for title suggestions.
+     *
+     * @return The book ID, or null for author suggestions
+     */
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public long getScore() {
+        return score;
+    }
+}
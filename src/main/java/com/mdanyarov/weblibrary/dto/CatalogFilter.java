@@ -0,0 +1,82 @@
+package com.mdanyarov.weblibrary.dto;
+
+import java.util.List;
+
+/**
+ * DTO for the catalog filter.
+ * Combines the free-text search query with the facet selections.
+ */
+public class CatalogFilter {
+    private String query;
+    private List<Long> genreIds = List.of();
+    private Integer yearFrom;
+    private Integer yearTo;
+    private boolean availableOnly;
+
+    public CatalogFilter() {}
+
+    public CatalogFilter(String query, List<Long> genreIds, Integer yearFrom, Integer yearTo, boolean availableOnly) {
+        this.query = query;
+        this.genreIds = genreIds != null ? genreIds : List.of();
+        this.yearFrom = yearFrom;
+        this.yearTo = yearTo;
+        this.availableOnly = availableOnly;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public List<Long> getGenreIds() {
+        return genreIds;
+    }
+
+    public void setGenreIds(List<Long> genreIds) {
+        this.genreIds = genreIds != null ? genreIds : List.of();
+    }
+
+    public Integer getYearFrom() {
+        return yearFrom;
+    }
+
+    public void setYearFrom(Integer yearFrom) {
+        this.yearFrom = yearFrom;
+    }
+
+    public Integer getYearTo() {
+        return yearTo;
+    }
+
+    public void setYearTo(Integer yearTo) {
+        this.yearTo = yearTo;
+    }
+
+    public boolean isAvailableOnly() {
+        return availableOnly;
+    }
+
+    public void setAvailableOnly(boolean availableOnly) {
+        this.availableOnly = availableOnly;
+    }
+
+    public boolean hasQuery() {
+        return query != null && !query.trim().isEmpty();
+    }
+
+    public boolean hasYearRange() {
+        return yearFrom != null || yearTo != null;
+    }
+
+    /**
+     * Checks whether any facet (genre, year range or availability) is selected.
+     *
+     * @return true if at least one facet restricts the results
+     */
+    public boolean hasFacets() {
+        return !genreIds.isEmpty() || hasYearRange() || availableOnly;
+    }
+}
@@ -0,0 +1,41 @@
+package com.mdanyarov.weblibrary.dto;
+
+import java.util.Map;
+
+/**
+ * DTO for catalog facet counts.
+ * Each count is computed with every other selected facet applied, so it tells how many
+ * books would be shown after additionally selecting that value.
+ */
+public class FacetCounts {
+    private final Map<Long, Integer> genreCounts;
+    private final Map<Integer, Integer> decadeCounts;
+    private final int availableCount;
+
+    public FacetCounts(Map<Long, Integer> genreCounts, Map<Integer, Integer> decadeCounts, int availableCount) {
+        this.genreCounts = genreCounts;
+        this.decadeCounts = decadeCounts;
+        this.availableCount = availableCount;
+    }
+
+    /**
+     * Returns the number of matching books per genre ID.
+     */
+    public Map<Long, Integer> getGenreCounts() {
+        return genreCounts;
+    }
+
+    /**
+     * Returns the number of matching books per decade (keyed by the first year of the decade), in ascending order.
+     */
+    public Map<Integer, Integer> getDecadeCounts() {
+        return decadeCounts;
+    }
+
+    /**
+     * Returns the number of matching books with at least one available copy.
+     */
+    public int getAvailableCount() {
+        return availableCount;
+    }
+}
@@ -0,0 +1,22 @@
+package com.mdanyarov.weblibrary.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a page of catalog results together with the facet counts of the whole result set.
+ *
+ * @param <T> The element type
+ */
+public class FacetedPageResult<T> extends PageResult<T> {
+    private final FacetCounts facets;
+
+    public FacetedPageResult(List<T> content, int page, int size, long totalElements, boolean totalExact,
+                             FacetCounts facets) {
+        super(content, page, size, totalElements, totalExact);
+        this.facets = facets;
+    }
+
+    public FacetCounts getFacets() {
+        return facets;
+    }
+}
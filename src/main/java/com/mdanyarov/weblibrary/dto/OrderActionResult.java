@@ -0,0 +1,41 @@
+package com.mdanyarov.weblibrary.dto;
+
+/**
+ * DTO for the outcome of an action on one order of a bulk operation.
+ */
+public class OrderActionResult {
+    private final Long orderId;
+    private final boolean success;
+    private final String message;
+
+    public OrderActionResult(Long orderId, boolean success, String message) {
+        this.orderId = orderId;
+        this.success = success;
+        this.message = message;
+    }
+
+    public static OrderActionResult success(Long orderId) {
+        return new OrderActionResult(orderId, true, null);
+    }
+
+    public static OrderActionResult failure(Long orderId, String message) {
+        return new OrderActionResult(orderId, false, message);
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Returns the reason the action failed.
+     *
+     * @return The message, or null if the action succeeded
+     */
+    public String getMessage() {
+        return message;
+    }
+}
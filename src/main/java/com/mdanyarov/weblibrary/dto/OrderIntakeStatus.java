@@ -0,0 +1,57 @@
+package com.mdanyarov.weblibrary.dto;
+
+/**
+ * DTO for the progress of a book request accepted by the order intake.
+ */
+public class OrderIntakeStatus {
+    private final String requestId;
+    private final Long bookId;
+    private final State state;
+    private final Long orderId;
+    private final String message;
+
+    /**
+     * Enum representing the stages of a queued request.
+     */
+    public enum State {
+        RECEIVED, PROCESSING, COMPLETED, FAILED
+    }
+
+    public OrderIntakeStatus(String requestId, Long bookId, State state, Long orderId, String message) {
+        this.requestId = requestId;
+        this.bookId = bookId;
+        this.state = state;
+        this.orderId = orderId;
+        this.message = message;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the ID of the created order.
+     *
+     * @return The order ID, or null unless the request is completed
+     */
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * Returns the reason the request failed.
+     *
+     * @return The message, or null unless the request failed
+     */
+    public String getMessage() {
+        return message;
+    }
+}
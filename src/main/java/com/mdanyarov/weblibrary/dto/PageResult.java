@@ -0,0 +1,78 @@
+package com.mdanyarov.weblibrary.dto;
+
+import java.util.List;
+
+/**
+ * DTO for a single page of results.
+ * Holds the page content together with the total number of matching elements.
+ *
+ * @param <T> The element type
+ */
+public class PageResult<T> {
+    private final List<T> content;
+    private final int page;
+    private final int size;
+    private final long totalElements;
+    private final boolean totalExact;
+
+    public PageResult(List<T> content, int page, int size, long totalElements, boolean totalExact) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.totalExact = totalExact;
+    }
+
+    /**
+     * Creates an empty page.
+     *
+     * @param page Page number (0-based)
+     * @param size Page size
+     * @param <T> The element type
+     * @return An empty page with a zero total
+     */
+    public static <T> PageResult<T> empty(int page, int size) {
+        return new PageResult<>(List.of(), page, size, 0, true);
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getTotalElements() {
+        return totalElements;
+    }
+
+    /**
+     * Returns whether the total is an exact count or an estimate (lower bound).
+     *
+     * @return true if the total is exact, false if it is estimated
+     */
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    public int getTotalPages() {
+        return size <= 0 ? 0 : (int) Math.ceil((double) totalElements / size);
+    }
+
+    public boolean hasPrevious() {
+        return page > 0;
+    }
+
+    public boolean hasNext() {
+        return page < getTotalPages() - 1;
+    }
+
+    public boolean isEmpty() {
+        return content.isEmpty();
+    }
+}
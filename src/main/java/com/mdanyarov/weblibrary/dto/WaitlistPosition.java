@@ -0,0 +1,40 @@
+package com.mdanyarov.weblibrary.dto;
+
+import com.mdanyarov.weblibrary.entity.Book;
+
+/**
+ * DTO for the place of a reader on the waitlist of a book.
+ */
+public class WaitlistPosition {
+    private final Book book;
+    private final int position;
+    private final int waitingCount;
+
+    public WaitlistPosition(Book book, int position, int waitingCount) {
+        this.book = book;
+        this.position = position;
+        this.waitingCount = waitingCount;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    /**
+     * Returns the 1-based position of the reader on the waitlist.
+     *
+     * @return The position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of readers waiting for the book, including the reader.
+     *
+     * @return The number of waiting readers
+     */
+    public int getWaitingCount() {
+        return waitingCount;
+    }
+}
@@ -19,6 +19,7 @@ public class Book {
     private LocalDateTime updatedAt;
     private List<Genre> genres = new ArrayList<>();
     private List<BookCopy> copies = new ArrayList<>();
+    private Integer availableCopiesCount;
 
     public Book() {}
 
@@ -152,10 +153,14 @@ public class Book {
 
     /**
      * Returns the count of available copies.
+     * Uses the count set from the availability counters if there is one, otherwise counts the loaded copies.
      *
      * @return Count of available copies
      */
     public int getAvailableCopiesCount() {
+        if (availableCopiesCount != null) {
+            return availableCopiesCount;
+        }
         if (copies == null) {
             return 0;
         }
@@ -164,6 +169,10 @@ public class Book {
                 .count();
     }
 
+    public void setAvailableCopiesCount(Integer availableCopiesCount) {
+        this.availableCopiesCount = availableCopiesCount;
+    }
+
     @Override
     public String toString() {
         return "Book{" +
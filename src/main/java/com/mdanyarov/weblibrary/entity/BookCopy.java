@@ -12,6 +12,7 @@ public class BookCopy {
     private String inventoryNumber;
     private CopyStatus status;
     private String location;
+    private int version;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -72,6 +73,19 @@ public class BookCopy {
         this.location = location;
     }
 
+    /**
+     * Returns the version of the copy, incremented by every update.
+     *
+     * @return The version read from the database
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
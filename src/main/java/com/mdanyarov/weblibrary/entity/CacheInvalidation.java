@@ -0,0 +1,21 @@
+package com.mdanyarov.weblibrary.entity;
+
+/**
+ * An entry of the cache invalidation log: an entity changed by one of the application nodes.
+ *
+ * @param id Log entry ID, increasing in insertion order
+ * @param entityType The kind of entity that changed
+ * @param entityId The ID of the changed entity (the book ID for book genre assignments)
+ * @param changeType The kind of change, the name of the corresponding change event type
+ * @param nodeId The ID of the node that made the change
+ */
+public record CacheInvalidation(Long id, EntityType entityType, Long entityId, String changeType, String nodeId) {
+
+    /**
+     * Enum representing the kinds of entities held in caches. Orders are logged because their status
+     * changes drive book availability and the catalog versions.
+     */
+    public enum EntityType {
+        BOOK, BOOK_GENRES, GENRE, USER, ORDER
+    }
+}
@@ -17,6 +17,7 @@ public class Order {
     private LocalDateTime actualReturnDate;
     private User processedBy;
     private String notes;
+    private int version;
 
     /**
      * Enum representing possible order types.
@@ -29,7 +30,9 @@ public class Order {
      * Enum representing possible order statuses.
      */
     public enum OrderStatus {
-        PENDING, APPROVED, REJECTED, RETURNED, CANCELLED
+        PENDING, APPROVED, REJECTED, RETURNED, CANCELLED,
+        /** Pending for longer than the configured maximum and released by the reservation reaper. */
+        EXPIRED
     }
 
     public Order() {}
@@ -131,6 +134,19 @@ public class Order {
         this.notes = notes;
     }
 
+    /**
+     * Returns the version of the order, incremented by every update.
+     *
+     * @return The version read from the database
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * Checks if the order is overdue.
      *
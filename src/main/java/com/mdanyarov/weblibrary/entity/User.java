@@ -46,6 +46,16 @@ public class User {
         this.status = status;
     }
 
+    /**
+     * Creates a copy of the given user, so that a shared instance can be handed out without exposing it.
+     */
+    public User(User other) {
+        this(other.id, other.username, other.password, other.email,
+                other.firstName, other.lastName, other.role, other.status);
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
     public Long getId() {
         return id;
     }
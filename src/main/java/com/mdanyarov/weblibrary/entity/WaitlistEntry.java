@@ -0,0 +1,17 @@
+package com.mdanyarov.weblibrary.entity;
+
+import java.time.LocalDateTime;
+
+/**
+ * A reader waiting for a copy of a book. Entries of a book are served in ID order.
+ *
+ * @param id Entry ID, increasing in insertion order
+ * @param bookId The ID of the awaited book
+ * @param userId The ID of the waiting reader
+ * @param orderType The type of the order to place when a copy becomes available
+ * @param notes Notes for that order
+ * @param createdAt The time the reader joined the waitlist
+ */
+public record WaitlistEntry(Long id, Long bookId, Long userId, Order.OrderType orderType, String notes,
+                            LocalDateTime createdAt) {
+}
@@ -0,0 +1,21 @@
+package com.mdanyarov.weblibrary.event;
+
+import com.mdanyarov.weblibrary.entity.Book;
+
+/**
+ * Application event published after a book has been created, updated or deleted.
+ * Listeners keep in-memory structures derived from the catalog in sync.
+ *
+ * @param type The kind of change
+ * @param bookId The ID of the changed book
+ * @param book The current state of the book, or null if it was deleted
+ */
+public record BookChangedEvent(Type type, Long bookId, Book book) {
+
+    /**
+     * Enum representing possible kinds of book changes.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+}
@@ -0,0 +1,12 @@
+package com.mdanyarov.weblibrary.event;
+
+import java.util.Set;
+
+/**
+ * Application event published after the genres assigned to a book have changed.
+ *
+ * @param bookId The ID of the book
+ * @param genreIds The IDs of all genres now assigned to the book
+ */
+public record BookGenresChangedEvent(Long bookId, Set<Long> genreIds) {
+}
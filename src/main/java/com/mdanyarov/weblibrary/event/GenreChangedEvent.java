@@ -0,0 +1,17 @@
+package com.mdanyarov.weblibrary.event;
+
+/**
+ * Application event published after a genre has been created, renamed or deleted.
+ *
+ * @param type The kind of change
+ * @param genreId The ID of the changed genre
+ */
+public record GenreChangedEvent(Type type, Long genreId) {
+
+    /**
+     * Enum representing possible kinds of genre changes.
+     */
+    public enum Type {
+        CREATED, RENAMED, DELETED
+    }
+}
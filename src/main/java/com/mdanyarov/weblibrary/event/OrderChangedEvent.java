@@ -0,0 +1,18 @@
+package com.mdanyarov.weblibrary.event;
+
+import com.mdanyarov.weblibrary.entity.Order;
+
+import java.time.LocalDateTime;
+
+/**
+ * Application event published after an order has been created or changed its status.
+ *
+ * @param orderId The ID of the order
+ * @param bookId The ID of the ordered book
+ * @param bookCopyId The ID of the ordered book copy, or null if the status change did not read it
+ * @param status The new order status
+ * @param returnDate The expected return date, or null if the order has not been approved
+ */
+public record OrderChangedEvent(Long orderId, Long bookId, Long bookCopyId, Order.OrderStatus status,
+                                LocalDateTime returnDate) {
+}
@@ -0,0 +1,18 @@
+package com.mdanyarov.weblibrary.event;
+
+/**
+ * Application event published after a user account has been created or changed.
+ *
+ * @param type The kind of change
+ * @param userId The ID of the changed user
+ * @param username The current username, or null if it is not known to the publisher
+ */
+public record UserChangedEvent(Type type, Long userId, String username) {
+
+    /**
+     * Enum representing possible kinds of user changes.
+     */
+    public enum Type {
+        REGISTERED, UPDATED, PASSWORD_CHANGED, STATUS_CHANGED
+    }
+}
@@ -0,0 +1,142 @@
+package com.mdanyarov.weblibrary.order;
+
+import java.util.*;
+
+/**
+ * Hashed timing wheel of keys that expire at a deadline.
+ * <p>
+ * Time is divided into ticks of a fixed length, and each tick maps to one of wheelSize buckets.
+ * Scheduling and cancelling a key are O(1); advancing the wheel only visits the buckets of the
+ * ticks that passed, so its cost depends on the number of expiring keys rather than on the
+ * number of scheduled ones. Deadlines are accepted up to one revolution ahead (the horizon),
+ * so a bucket never holds keys from different revolutions.
+ * <p>
+ * This class is not thread-safe.
+ *
+ * @param <K> The key type
+ */
+public class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+    private final List<Set<K>> buckets;
+    private final Map<K, Long> deadlines = new HashMap<>();
+
+    /** The earliest tick whose bucket may still hold keys. */
+    private long currentTick;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param tickMillis The length of a tick in milliseconds
+     * @param wheelSize The number of buckets; the horizon is tickMillis * wheelSize
+     * @param startMillis The current time in milliseconds
+     */
+    public HashedTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick length and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new LinkedHashSet<>());
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    /**
+     * Returns the time up to which deadlines are accepted.
+     *
+     * @return The exclusive end of the horizon in milliseconds
+     */
+    public long getHorizonMillis() {
+        return (currentTick + buckets.size()) * tickMillis;
+    }
+
+    /**
+     * Schedules a key, replacing its previous deadline. A deadline in the past expires on the next advance.
+     *
+     * @param key The key
+     * @param deadlineMillis The deadline in milliseconds
+     * @return true if the key was scheduled, false if the deadline is beyond the horizon
+     */
+    public boolean schedule(K key, long deadlineMillis) {
+        cancel(key);
+        if (deadlineMillis >= getHorizonMillis()) {
+            return false;
+        }
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick);
+        bucket(tick).add(key);
+        deadlines.put(key, deadlineMillis);
+        return true;
+    }
+
+    /**
+     * Removes a key from the wheel.
+     *
+     * @param key The key
+     * @return true if the key was scheduled
+     */
+    public boolean cancel(K key) {
+        Long deadline = deadlines.remove(key);
+        if (deadline == null) {
+            return false;
+        }
+        bucket(Math.max(deadline / tickMillis, currentTick)).remove(key);
+        return true;
+    }
+
+    /**
+     * Checks if a key is scheduled.
+     *
+     * @param key The key
+     * @return true if the key is scheduled
+     */
+    public boolean contains(K key) {
+        return deadlines.containsKey(key);
+    }
+
+    /**
+     * Returns the number of scheduled keys.
+     *
+     * @return The number of keys
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * Advances the wheel and removes the keys whose deadline has passed.
+     *
+     * @param nowMillis The current time in milliseconds
+     * @return The expired keys, in deadline tick order
+     */
+    public List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        long nowTick = nowMillis / tickMillis;
+        if (nowTick < currentTick) {
+            return expired;
+        }
+
+        // Every key is within one revolution of currentTick, so one pass over the wheel expires them all
+        long ticks = Math.min(nowTick - currentTick + 1, buckets.size());
+        for (long i = 0; i < ticks; i++) {
+            Iterator<K> iterator = bucket(currentTick + i).iterator();
+            while (iterator.hasNext()) {
+                K key = iterator.next();
+                if (deadlines.get(key) <= nowMillis) {
+                    iterator.remove();
+                    deadlines.remove(key);
+                    expired.add(key);
+                }
+            }
+        }
+
+        // Only the bucket of nowTick can keep keys, those due later in the same tick
+        currentTick = nowTick;
+        return expired;
+    }
+
+    private Set<K> bucket(long tick) {
+        return buckets.get((int) Math.floorMod(tick, (long) buckets.size()));
+    }
+}
@@ -0,0 +1,332 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mdanyarov.weblibrary.cache.BoundedCache;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.IdempotencyKeyDao;
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Runs each state-changing form submission once per idempotency key, so double clicks and browser
+ * resubmits replay the first submission's result instead of running its transaction again.
+ * <p>
+ * Forms carry a key from {@link #newKey()} in the {@value #PARAMETER} parameter; API clients send it
+ * in the {@value #HEADER} header. Submissions without a key run as before.
+ * <p>
+ * Results (the redirect and its flash attributes) are kept in a bounded expiring cache. A resubmission
+ * arriving while the first one runs on this node waits for it. Keys are also recorded in the
+ * idempotency_keys table before the action runs, so a resubmission routed to another node finds the
+ * key there and waits for its result instead of running the action. A key still without a result
+ * after the wait time is treated as abandoned by a node that stopped while running it, and the next
+ * resubmission takes it over and runs the action. If the table cannot be reached, submissions are
+ * only deduplicated within this node.
+ */
+@Component
+public class IdempotencyKeys {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyKeys.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String PARAMETER = "idempotencyKey";
+
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final long POLL_MILLIS = 200;
+    private static final int PURGE_BATCH_SIZE = 10_000;
+    private static final String BUSY_MESSAGE =
+            "Your previous submission is still being processed. Please check the result in a moment.";
+
+    /**
+     * The result of a submission.
+     *
+     * @param view The view name returned by the handler, usually a redirect
+     * @param messages The flash attributes with text values, such as successMessage and errorMessage
+     * @param orderResults The flash attributes with per-order results of a bulk action, such as failedOrders
+     */
+    public record Outcome(String view, Map<String, String> messages, Map<String, List<OrderResult>> orderResults) {
+    }
+
+    /**
+     * A stored {@link OrderActionResult}.
+     *
+     * @param orderId The order ID
+     * @param success Whether the action succeeded
+     * @param message The reason the action failed, or null
+     */
+    public record OrderResult(Long orderId, boolean success, String message) {
+    }
+
+    private final IdempotencyKeyDao idempotencyKeyDao;
+    private final ConnectionPool connectionPool;
+    private final BoundedCache<String, Outcome> outcomes;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, CompletableFuture<Outcome>> running = new ConcurrentHashMap<>();
+    private final long waitMillis;
+    private final long retentionMinutes;
+
+    @Autowired
+    public IdempotencyKeys(IdempotencyKeyDao idempotencyKeyDao, ConnectionPool connectionPool,
+                           BoundedCache<String, Outcome> idempotencyCache,
+                           @Value("${orders.idempotency.waitMs:10000}") long waitMillis,
+                           @Value("${orders.idempotency.retentionMinutes:60}") long retentionMinutes) {
+        this.idempotencyKeyDao = idempotencyKeyDao;
+        this.connectionPool = connectionPool;
+        this.outcomes = idempotencyCache;
+        this.waitMillis = waitMillis;
+        this.retentionMinutes = retentionMinutes;
+    }
+
+    /**
+     * Creates a key for a form.
+     *
+     * @return A new random key
+     */
+    public String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Runs a submission unless its key was used before, in which case the first result is replayed.
+     *
+     * @param request The request, carrying the key in its header or parameters
+     * @param userId The ID of the submitting user; keys are scoped to users
+     * @param redirectAttributes The redirect attributes the action adds its messages to
+     * @param busyView The view to return if the first submission does not finish in time
+     * @param action The handler body, returning the view name
+     * @return The view name
+     */
+    public String submit(HttpServletRequest request, Long userId, RedirectAttributes redirectAttributes,
+                         String busyView, Supplier<String> action) {
+        String key = resolveKey(request);
+        if (key == null || userId == null) {
+            return action.get();
+        }
+
+        String cacheKey = userId + ":" + key;
+        Outcome outcome = outcomes.getIfPresent(cacheKey);
+        if (outcome != null) {
+            return replay(outcome, redirectAttributes);
+        }
+
+        CompletableFuture<Outcome> submission = new CompletableFuture<>();
+        CompletableFuture<Outcome> first = running.putIfAbsent(cacheKey, submission);
+        if (first != null) {
+            return replay(await(first, busyView), redirectAttributes);
+        }
+
+        try {
+            outcome = outcomes.getIfPresent(cacheKey);
+            if (outcome != null) {
+                submission.complete(outcome);
+                return replay(outcome, redirectAttributes);
+            }
+
+            Boolean recorded = record(userId, key);
+            if (Boolean.FALSE.equals(recorded) && !takeOverAbandoned(userId, key)) {
+                outcome = awaitStored(userId, key);
+                if (outcome != null) {
+                    outcomes.put(cacheKey, outcome);
+                } else {
+                    outcome = busy(busyView);
+                }
+                submission.complete(outcome);
+                return replay(outcome, redirectAttributes);
+            }
+
+            String view;
+            try {
+                view = action.get();
+            } catch (RuntimeException e) {
+                if (recorded != null) {
+                    forget(userId, key);
+                }
+                throw e;
+            }
+
+            outcome = capture(view, redirectAttributes);
+            outcomes.put(cacheKey, outcome);
+            if (recorded != null) {
+                store(userId, key, outcome);
+            }
+            submission.complete(outcome);
+            return view;
+        } catch (RuntimeException e) {
+            submission.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(cacheKey, submission);
+        }
+    }
+
+    /**
+     * Deletes the keys older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${orders.idempotency.purgeIntervalMs:600000}",
+            initialDelayString = "${orders.idempotency.purgeIntervalMs:600000}")
+    public void purge() {
+        try (Connection connection = connectionPool.getConnection()) {
+            int deleted = idempotencyKeyDao.deleteOlderThan(LocalDateTime.now().minusMinutes(retentionMinutes),
+                    PURGE_BATCH_SIZE, connection);
+            if (deleted > 0) {
+                logger.debug("Purged {} idempotency keys", deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Error purging idempotency keys: {}", e.getMessage());
+        }
+    }
+
+    private static String resolveKey(HttpServletRequest request) {
+        String key = request.getHeader(HEADER);
+        if (key == null || key.isBlank()) {
+            key = request.getParameter(PARAMETER);
+        }
+        if (key == null || key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return null;
+        }
+        return key.trim();
+    }
+
+    /**
+     * Records a key in the database.
+     *
+     * @return true if recorded, false if already recorded, null if the database could not be reached
+     */
+    private Boolean record(Long userId, String key) {
+        try (Connection connection = connectionPool.getConnection()) {
+            return idempotencyKeyDao.insert(userId, key, connection);
+        } catch (Exception e) {
+            logger.warn("Error recording idempotency key, deduplicating on this node only: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Takes over a recorded key that has had no result for longer than the wait time.
+     *
+     * @return true if this submission now owns the key and should run the action
+     */
+    private boolean takeOverAbandoned(Long userId, String key) {
+        try (Connection connection = connectionPool.getConnection()) {
+            LocalDateTime recordedBefore = LocalDateTime.now().minus(waitMillis, ChronoUnit.MILLIS);
+            if (idempotencyKeyDao.takeOver(userId, key, recordedBefore, connection)) {
+                logger.warn("Taking over idempotency key of user {} left without a result", userId);
+                return true;
+            }
+            return false;
+        } catch (Exception e) {
+            logger.warn("Error taking over idempotency key: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Polls the database for the result of a submission running on another node. The connection is
+     * returned to the pool between polls.
+     *
+     * @return The result, or null if it was not stored within the wait time
+     */
+    private Outcome awaitStored(Long userId, String key) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        try {
+            while (true) {
+                String result;
+                try (Connection connection = connectionPool.getConnection()) {
+                    result = idempotencyKeyDao.findResult(userId, key, connection);
+                }
+                if (result != null) {
+                    return objectMapper.readValue(result, Outcome.class);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    return null;
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            logger.warn("Error reading idempotency key result: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(Long userId, String key, Outcome outcome) {
+        try (Connection connection = connectionPool.getConnection()) {
+            idempotencyKeyDao.saveResult(userId, key, objectMapper.writeValueAsString(outcome), connection);
+        } catch (JsonProcessingException e) {
+            logger.error("Error serializing submission result", e);
+        } catch (Exception e) {
+            logger.warn("Error storing idempotency key result: {}", e.getMessage());
+        }
+    }
+
+    private void forget(Long userId, String key) {
+        try (Connection connection = connectionPool.getConnection()) {
+            idempotencyKeyDao.delete(userId, key, connection);
+        } catch (Exception e) {
+            logger.warn("Error deleting idempotency key: {}", e.getMessage());
+        }
+    }
+
+    private Outcome await(CompletableFuture<Outcome> first, String busyView) {
+        try {
+            return first.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return busy(busyView);
+        } catch (ExecutionException | TimeoutException e) {
+            return busy(busyView);
+        }
+    }
+
+    private static Outcome busy(String busyView) {
+        return new Outcome(busyView, Map.of("errorMessage", BUSY_MESSAGE), Map.of());
+    }
+
+    private static Outcome capture(String view, RedirectAttributes redirectAttributes) {
+        Map<String, String> messages = new LinkedHashMap<>();
+        Map<String, List<OrderResult>> orderResults = new LinkedHashMap<>();
+        redirectAttributes.getFlashAttributes().forEach((name, value) -> {
+            if (value instanceof String text) {
+                messages.put(name, text);
+            } else if (value instanceof List<?> list && list.stream().allMatch(OrderActionResult.class::isInstance)) {
+                orderResults.put(name, list.stream()
+                        .map(OrderActionResult.class::cast)
+                        .map(result -> new OrderResult(result.getOrderId(), result.isSuccess(), result.getMessage()))
+                        .toList());
+            } else {
+                logger.warn("Flash attribute {} of type {} is not replayed on resubmission",
+                        name, value != null ? value.getClass().getName() : null);
+            }
+        });
+        return new Outcome(view, messages, orderResults);
+    }
+
+    private static String replay(Outcome outcome, RedirectAttributes redirectAttributes) {
+        outcome.messages().forEach(redirectAttributes::addFlashAttribute);
+        if (outcome.orderResults() != null) {
+            outcome.orderResults().forEach((name, results) -> redirectAttributes.addFlashAttribute(name, results.stream()
+                    .map(result -> new OrderActionResult(result.orderId(), result.success(), result.message()))
+                    .toList()));
+        }
+        return outcome.view();
+    }
+}
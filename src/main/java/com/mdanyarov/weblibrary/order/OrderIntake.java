@@ -0,0 +1,294 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.dto.BookOrderRequest;
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
+import com.mdanyarov.weblibrary.dto.OrderIntakeStatus;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.service.BookService;
+import com.mdanyarov.weblibrary.service.OrderService;
+import com.mdanyarov.weblibrary.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Accepts book requests on the request thread and creates their orders in the background.
+ * <p>
+ * Requests are put in a bounded queue and answered at once with a request ID whose progress can be
+ * looked up. A fixed number of workers take the queued requests in groups of up to batchSize and
+ * create each group's orders in one transaction, so a peak of requests holds at most one connection
+ * per worker instead of one per request thread. When the queue is full, new requests are rejected
+ * immediately rather than waiting. The user and the book are checked before a request is queued, so
+ * requests that cannot succeed are refused on submission instead of failing in the background.
+ * <p>
+ * The intake is disabled by default; book requests are then processed on the request thread.
+ * <p>
+ * The statuses of finished requests are kept for the configured retention time.
+ */
+@Component
+public class OrderIntake {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntake.class);
+
+    private static final long POLL_MILLIS = 500;
+    private static final long SHUTDOWN_MILLIS = 10_000;
+
+    private final OrderService orderService;
+    private final UserService userService;
+    private final BookService bookService;
+    private final boolean enabled;
+    private final int workerCount;
+    private final int batchSize;
+    private final long retentionMillis;
+    private final BlockingQueue<Ticket> queue;
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    /** User and book IDs of the requests not finished yet, so a reader cannot queue the same book twice. */
+    private final Set<List<Long>> openRequests = ConcurrentHashMap.newKeySet();
+    private ExecutorService workers;
+    private volatile boolean running;
+
+    @Autowired
+    public OrderIntake(OrderService orderService, UserService userService, BookService bookService,
+                       @Value("${orders.intake.enabled:false}") boolean enabled,
+                       @Value("${orders.intake.queueCapacity:500}") int queueCapacity,
+                       @Value("${orders.intake.workers:4}") int workerCount,
+                       @Value("${orders.intake.batchSize:20}") int batchSize,
+                       @Value("${orders.intake.retentionMs:600000}") long retentionMillis) {
+        this.orderService = orderService;
+        this.userService = userService;
+        this.bookService = bookService;
+        this.enabled = enabled;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.retentionMillis = retentionMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Checks if book requests go through the queue instead of being processed on the request thread.
+     *
+     * @return true if the intake is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a request for any available copy of a book.
+     *
+     * @param userId User ID requesting the book
+     * @param bookId Book ID
+     * @param orderType Order type (HOME or READING_ROOM)
+     * @param notes Optional notes
+     * @return The status of the queued request
+     * @throws IllegalArgumentException if the request is invalid or the user already has it queued
+     * @throws RejectedExecutionException if the queue is full or the intake is not running
+     * @throws Exception if there is an error checking the user or the book
+     */
+    public OrderIntakeStatus submit(Long userId, Long bookId, Order.OrderType orderType, String notes)
+            throws Exception {
+        if (userId == null || bookId == null || orderType == null) {
+            throw new IllegalArgumentException("User, book and order type are required");
+        }
+        if (!running) {
+            throw new RejectedExecutionException("Order intake is not running");
+        }
+        User user = userService.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found: " + userId));
+        if (user.getStatus() != User.UserStatus.ACTIVE) {
+            throw new IllegalArgumentException("User is not active: " + userId);
+        }
+        if (bookService.findById(bookId).isEmpty()) {
+            throw new IllegalArgumentException("Book not found: " + bookId);
+        }
+        List<Long> key = List.of(userId, bookId);
+        if (!openRequests.add(key)) {
+            throw new IllegalArgumentException("Your request for this book is already being processed.");
+        }
+
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), new BookOrderRequest(userId, bookId, orderType, notes));
+        tickets.put(ticket.id, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.remove(ticket.id);
+            openRequests.remove(key);
+            throw new RejectedExecutionException("Order intake queue is full");
+        }
+        return ticket.toStatus();
+    }
+
+    /**
+     * Finds the status of a request.
+     *
+     * @param requestId The request ID
+     * @param userId The ID of the user who made the request
+     * @return Optional containing the status, empty if the request is unknown, expired or made by another user
+     */
+    public Optional<OrderIntakeStatus> findStatus(String requestId, Long userId) {
+        Ticket ticket = tickets.get(requestId);
+        if (ticket == null || !ticket.request.getUserId().equals(userId)) {
+            return Optional.empty();
+        }
+        return Optional.of(ticket.toStatus());
+    }
+
+    /**
+     * Returns the number of requests waiting in the queue.
+     *
+     * @return The queue length
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Starts the workers once the context is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "order-intake");
+            thread.setDaemon(true);
+            return thread;
+        };
+        workers = Executors.newFixedThreadPool(workerCount, threadFactory);
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::work);
+        }
+        logger.info("Order intake started with {} workers", workerCount);
+    }
+
+    /**
+     * Stops taking requests when the context is closed, lets the workers finish the queued ones
+     * and fails those still queued after the shutdown timeout.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_MILLIS, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        List<Ticket> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(ticket -> ticket.fail("The library is shutting down. Please submit your request again."));
+        if (!abandoned.isEmpty()) {
+            logger.warn("Order intake stopped with {} requests unprocessed", abandoned.size());
+        }
+    }
+
+    /**
+     * Removes the statuses of requests finished longer than the retention time ago.
+     */
+    @Scheduled(fixedDelayString = "${orders.intake.retentionMs:600000}",
+            initialDelayString = "${orders.intake.retentionMs:600000}")
+    public void purge() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        tickets.values().removeIf(ticket -> !ticket.isOpen() && ticket.finishedAt < cutoff);
+    }
+
+    private void work() {
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Ticket first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unexpected error in order intake worker", e);
+                batch.forEach(ticket -> ticket.fail("Error processing request. Please try again later."));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<Ticket> batch) {
+        batch.forEach(ticket -> ticket.state = OrderIntakeStatus.State.PROCESSING);
+        try {
+            List<OrderActionResult> results = orderService.createOrdersForBooks(
+                    batch.stream().map(ticket -> ticket.request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                OrderActionResult result = results.get(i);
+                if (result.isSuccess()) {
+                    batch.get(i).complete(result.getOrderId());
+                } else {
+                    batch.get(i).fail(result.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error creating a group of {} queued orders", batch.size(), e);
+            batch.forEach(ticket -> ticket.fail("Error processing request. Please try again later."));
+        }
+    }
+
+    /**
+     * A queued request and its progress.
+     */
+    private class Ticket {
+        private final String id;
+        private final BookOrderRequest request;
+        private volatile OrderIntakeStatus.State state = OrderIntakeStatus.State.RECEIVED;
+        private volatile Long orderId;
+        private volatile String message;
+        private volatile long finishedAt;
+
+        private Ticket(String id, BookOrderRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+
+        private boolean isOpen() {
+            return state == OrderIntakeStatus.State.RECEIVED || state == OrderIntakeStatus.State.PROCESSING;
+        }
+
+        private void complete(Long orderId) {
+            this.orderId = orderId;
+            finish(OrderIntakeStatus.State.COMPLETED);
+        }
+
+        private void fail(String message) {
+            this.message = message;
+            finish(OrderIntakeStatus.State.FAILED);
+        }
+
+        private void finish(OrderIntakeStatus.State state) {
+            finishedAt = System.currentTimeMillis();
+            this.state = state;
+            openRequests.remove(List.of(request.getUserId(), request.getBookId()));
+        }
+
+        private OrderIntakeStatus toStatus() {
+            return new OrderIntakeStatus(id, request.getBookId(), state, orderId, message);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.OrderDao;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the overdue flag of orders, so overdue lookups read an indexed flag instead of
+ * comparing every open order's return date with the current time.
+ * <p>
+ * The approved orders due within the wheel's horizon are kept in a {@link HashedTimingWheel}
+ * keyed on their return date, and are flagged in the database as their return dates pass.
+ * Approvals and returns made on this node update the wheel through order change events.
+ * <p>
+ * A periodic reconciliation flags and clears the orders the wheel missed (e.g. orders changed by
+ * other nodes or outside the application) and loads the orders that entered the horizon. The
+ * flag is only set by statements that check the order is still approved and past due, so a stale
+ * wheel entry is harmless.
+ */
+@Component
+public class OverdueScanner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverdueScanner.class);
+
+    private final OrderDao orderDao;
+    private final ConnectionPool connectionPool;
+    private final HashedTimingWheel<Long> wheel;
+
+    @Autowired
+    public OverdueScanner(OrderDao orderDao, ConnectionPool connectionPool,
+                          @Value("${orders.overdue.tickMs:60000}") long tickMillis,
+                          @Value("${orders.overdue.wheelSize:1440}") int wheelSize) {
+        this.orderDao = orderDao;
+        this.connectionPool = connectionPool;
+        this.wheel = new HashedTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    }
+
+    /**
+     * Reconciles the overdue flags with the return dates once the context is ready and then periodically,
+     * and schedules the orders due within the horizon.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(fixedDelayString = "${orders.overdue.reconcileIntervalMs:3600000}",
+            initialDelayString = "${orders.overdue.reconcileIntervalMs:3600000}")
+    public void reconcile() {
+        long nowMillis = System.currentTimeMillis();
+        LocalDateTime now = toLocalDateTime(nowMillis);
+        try (Connection connection = connectionPool.getConnection()) {
+            int marked = orderDao.markOverdue(now, connection);
+            int cleared = orderDao.clearStaleOverdue(now, connection);
+            if (marked > 0 || cleared > 0) {
+                logger.info("Overdue reconciliation flagged {} and cleared {} orders", marked, cleared);
+            }
+
+            LocalDateTime horizon;
+            synchronized (this) {
+                horizon = toLocalDateTime(wheel.getHorizonMillis());
+            }
+            Map<Long, LocalDateTime> returnDates = orderDao.findReturnDatesBetween(now, horizon, connection);
+            synchronized (this) {
+                returnDates.forEach((orderId, returnDate) -> wheel.schedule(orderId, toMillis(returnDate)));
+                logger.debug("{} orders due before {} scheduled", wheel.size(), horizon);
+            }
+        } catch (Exception e) {
+            logger.error("Error reconciling overdue orders", e);
+        }
+    }
+
+    /**
+     * Advances the wheel and flags the orders whose return date has passed.
+     */
+    @Scheduled(fixedDelayString = "${orders.overdue.tickMs:60000}",
+            initialDelayString = "${orders.overdue.tickMs:60000}")
+    public void tick() {
+        long nowMillis = System.currentTimeMillis();
+        List<Long> expired;
+        synchronized (this) {
+            expired = wheel.advance(nowMillis);
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = connectionPool.getConnection()) {
+            int marked = orderDao.markOverdueByIds(expired, toLocalDateTime(nowMillis), connection);
+            logger.info("{} orders became overdue", marked);
+        } catch (Exception e) {
+            logger.warn("Error flagging overdue orders, retrying on the next tick: {}", e.getMessage());
+            synchronized (this) {
+                expired.forEach(orderId -> wheel.schedule(orderId, nowMillis));
+            }
+        }
+    }
+
+    /**
+     * Schedules approved orders and removes returned ones.
+     */
+    @EventListener
+    public synchronized void onOrderChanged(OrderChangedEvent event) {
+        if (event.status() == Order.OrderStatus.APPROVED && event.returnDate() != null) {
+            wheel.schedule(event.orderId(), toMillis(event.returnDate()));
+        } else {
+            wheel.cancel(event.orderId());
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
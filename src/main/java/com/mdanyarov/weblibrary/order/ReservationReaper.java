@@ -0,0 +1,169 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Expires pending orders that were not processed within the configured time and releases their
+ * reserved copies back to circulation.
+ * <p>
+ * Each run expires up to batchSize orders per transaction, for at most maxBatchesPerRun batches, so
+ * a backlog is worked off over several runs instead of in one long transaction. Orders and copies
+ * locked by running transactions are skipped and retried on the next run.
+ * <p>
+ * The counters are exposed as a {@link ReservationReaperMXBean} under
+ * {@code com.mdanyarov.weblibrary:type=ReservationReaper}.
+ */
+@Component
+public class ReservationReaper implements ReservationReaperMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReservationReaper.class);
+
+    private static final String OBJECT_NAME = "com.mdanyarov.weblibrary:type=ReservationReaper";
+
+    private final OrderService orderService;
+    private final long maxPendingMinutes;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final AtomicLong reclaimedCopyCount = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile long lastRunReclaimedCount;
+    private volatile long lastRunStartMillis;
+    private volatile long lastRunDurationMillis;
+    private ObjectName registeredName;
+
+    @Autowired
+    public ReservationReaper(OrderService orderService,
+                             @Value("${orders.reaper.maxPendingMinutes:4320}") long maxPendingMinutes,
+                             @Value("${orders.reaper.batchSize:100}") int batchSize,
+                             @Value("${orders.reaper.maxBatchesPerRun:50}") int maxBatchesPerRun) {
+        this.orderService = orderService;
+        this.maxPendingMinutes = maxPendingMinutes;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * Expires the pending orders older than the maximum pending time.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${orders.reaper.intervalMs:300000}",
+            initialDelayString = "${orders.reaper.intervalMs:300000}")
+    public synchronized void reap() {
+        long start = System.currentTimeMillis();
+        LocalDateTime orderedBefore = LocalDateTime.now().minusMinutes(maxPendingMinutes);
+        long reclaimed = 0;
+        try {
+            for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+                int expired = orderService.expireStalePendingOrders(orderedBefore, batchSize);
+                reclaimed += expired;
+                reclaimedCopyCount.addAndGet(expired);
+                if (expired < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            logger.error("Error expiring stale pending orders", e);
+        } finally {
+            runCount.incrementAndGet();
+            lastRunReclaimedCount = reclaimed;
+            lastRunStartMillis = start;
+            lastRunDurationMillis = System.currentTimeMillis() - start;
+        }
+
+        if (reclaimed > 0) {
+            logger.info("Reservation reaper released {} copies in {} ms", reclaimed, lastRunDurationMillis);
+        }
+    }
+
+    @Override
+    public long getReclaimedCopyCount() {
+        return reclaimedCopyCount.get();
+    }
+
+    @Override
+    public long getLastRunReclaimedCount() {
+        return lastRunReclaimedCount;
+    }
+
+    @Override
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    @Override
+    public long getLastRunStartMillis() {
+        return lastRunStartMillis;
+    }
+
+    @Override
+    public long getLastRunDurationMillis() {
+        return lastRunDurationMillis;
+    }
+
+    @Override
+    public long getMaxPendingMinutes() {
+        return maxPendingMinutes;
+    }
+
+    /**
+     * Registers the reaper with the platform MBean server once the context has started.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void registerMBean() {
+        if (registeredName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName)) {
+                // Left behind by a previous deployment of the application in the same JVM
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(this, objectName);
+            registeredName = objectName;
+        } catch (JMException e) {
+            logger.warn("Error registering reservation reaper with JMX: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters the reaper when the context is closed, so redeployments do not leak it.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+        } catch (JMException e) {
+            logger.debug("Error unregistering {}: {}", registeredName, e.getMessage());
+        }
+        registeredName = null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.mdanyarov.weblibrary.order;
+
+/**
+ * Management interface of the reservation reaper, exposed over JMX.
+ */
+public interface ReservationReaperMXBean {
+
+    /**
+     * Returns the number of copies released since the application started.
+     */
+    long getReclaimedCopyCount();
+
+    /**
+     * Returns the number of copies released by the last run.
+     */
+    long getLastRunReclaimedCount();
+
+    long getRunCount();
+
+    long getFailureCount();
+
+    /**
+     * Returns the start time of the last run in epoch milliseconds, or 0 if it has not run yet.
+     */
+    long getLastRunStartMillis();
+
+    long getLastRunDurationMillis();
+
+    long getMaxPendingMinutes();
+
+    /**
+     * Expires the stale pending orders now instead of waiting for the next scheduled run.
+     */
+    void reap();
+}
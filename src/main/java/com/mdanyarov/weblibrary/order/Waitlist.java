@@ -0,0 +1,273 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.WaitlistDao;
+import com.mdanyarov.weblibrary.entity.WaitlistEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * In-memory mirror of the waitlist_entries table: one FIFO queue of waiting readers per book.
+ * <p>
+ * Queue sizes are O(1) and queue positions O(log n) in the length of the book's queue, and the books
+ * each reader waits for are indexed, so readers can check their places without a query. Which reader
+ * is served next is always decided by the database ({@link WaitlistDao#lockFirstByBookId}); this mirror is only read for display.
+ * <p>
+ * The mirror is updated by the changes made on this node and periodically reloaded to pick up
+ * those of other nodes. The changes made on this node while a reload reads the table are replayed
+ * on the loaded queues, so they are neither lost nor block the reload.
+ */
+@Component
+public class Waitlist {
+
+    private static final Logger logger = LoggerFactory.getLogger(Waitlist.class);
+
+    private final WaitlistDao waitlistDao;
+    private final ConnectionPool connectionPool;
+
+    private Queues queues = new Queues();
+    /** Changes made on this node since the running reload started, or null if no reload is running. */
+    private List<Consumer<Queues>> changesDuringReload;
+
+    @Autowired
+    public Waitlist(WaitlistDao waitlistDao, ConnectionPool connectionPool) {
+        this.waitlistDao = waitlistDao;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Returns the position of a reader in the waitlist of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     * @return The 1-based position, or 0 if the reader is not waiting for the book
+     */
+    public synchronized int getPosition(Long bookId, Long userId) {
+        BookQueue queue = queues.byBook.get(bookId);
+        return queue != null ? queue.position(userId) : 0;
+    }
+
+    /**
+     * Returns the positions of a reader in the waitlists of all books the reader waits for.
+     *
+     * @param userId The user ID
+     * @return The 1-based positions by book ID, in book ID order
+     */
+    public synchronized SortedMap<Long, Integer> getPositions(Long userId) {
+        SortedMap<Long, Integer> positions = new TreeMap<>();
+        for (Long bookId : queues.booksByUser.getOrDefault(userId, Set.of())) {
+            positions.put(bookId, getPosition(bookId, userId));
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the number of readers waiting for a book.
+     *
+     * @param bookId The book ID
+     * @return The number of waiting readers
+     */
+    public synchronized int size(Long bookId) {
+        BookQueue queue = queues.byBook.get(bookId);
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Adds an entry created on this node to its book's queue.
+     *
+     * @param entry The entry
+     */
+    public synchronized void add(WaitlistEntry entry) {
+        apply(target -> target.add(entry));
+    }
+
+    /**
+     * Removes a reader from the queue of a book.
+     *
+     * @param bookId The book ID
+     * @param userId The user ID
+     */
+    public synchronized void remove(Long bookId, Long userId) {
+        apply(target -> target.remove(bookId, userId));
+    }
+
+    /**
+     * Reloads the queues from the database once the context is ready and then periodically.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(fixedDelayString = "${orders.waitlist.reloadIntervalMs:60000}",
+            initialDelayString = "${orders.waitlist.reloadIntervalMs:60000}")
+    public void reload() {
+        synchronized (this) {
+            if (changesDuringReload != null) {
+                logger.debug("Waitlist reload already running");
+                return;
+            }
+            changesDuringReload = new ArrayList<>();
+        }
+
+        Queues loaded = new Queues();
+        try (Connection connection = connectionPool.getConnection()) {
+            for (WaitlistEntry entry : waitlistDao.findAll(connection)) {
+                loaded.add(entry);
+            }
+        } catch (Exception e) {
+            logger.error("Error loading waitlist", e);
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            // A change made while loading may or may not be in the loaded rows; replaying it is harmless either way
+            changesDuringReload.forEach(change -> change.accept(loaded));
+            logger.debug("Waitlist reloaded, {} local changes replayed", changesDuringReload.size());
+            changesDuringReload = null;
+            queues = loaded;
+        }
+    }
+
+    private void apply(Consumer<Queues> change) {
+        change.accept(queues);
+        if (changesDuringReload != null) {
+            changesDuringReload.add(change);
+        }
+    }
+
+    /**
+     * The queues of all books, with the books each reader waits for.
+     */
+    private static final class Queues {
+        private final Map<Long, BookQueue> byBook = new HashMap<>();
+        private final Map<Long, Set<Long>> booksByUser = new HashMap<>();
+
+        void add(WaitlistEntry entry) {
+            if (byBook.computeIfAbsent(entry.bookId(), id -> new BookQueue()).add(entry)) {
+                booksByUser.computeIfAbsent(entry.userId(), id -> new HashSet<>()).add(entry.bookId());
+            }
+        }
+
+        void remove(Long bookId, Long userId) {
+            BookQueue queue = byBook.get(bookId);
+            if (queue == null || !queue.remove(userId)) {
+                return;
+            }
+            if (queue.size() == 0) {
+                byBook.remove(bookId);
+            }
+            Set<Long> bookIds = booksByUser.get(userId);
+            bookIds.remove(bookId);
+            if (bookIds.isEmpty()) {
+                booksByUser.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Queue of one book. Entries occupy slots in ID order and removed entries leave empty slots;
+     * a Fenwick tree over the slots counts the entries before a slot, and the slot of each reader
+     * is indexed by user ID. The slots are compacted once most of them are empty.
+     */
+    private static final class BookQueue {
+        private final List<WaitlistEntry> slots = new ArrayList<>();
+        private final Map<Long, Integer> slotsByUserId = new HashMap<>();
+        /** 1-based Fenwick tree of slot occupancy, sized to the slot capacity. */
+        private int[] tree = new int[9];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int position(Long userId) {
+            Integer slot = slotsByUserId.get(userId);
+            if (slot == null) {
+                return 0;
+            }
+            int position = 0;
+            for (int i = slot + 1; i > 0; i -= i & -i) {
+                position += tree[i];
+            }
+            return position;
+        }
+
+        boolean add(WaitlistEntry entry) {
+            if (slotsByUserId.containsKey(entry.userId())) {
+                return false;
+            }
+            WaitlistEntry last = slots.isEmpty() ? null : slots.get(slots.size() - 1);
+            if (last != null && last.id() > entry.id()) {
+                // Loaded entries of other nodes can be newer than an entry added here; keep ID order
+                List<WaitlistEntry> entries = entries();
+                entries.add(entry);
+                entries.sort(Comparator.comparing(WaitlistEntry::id));
+                rebuild(entries);
+                return true;
+            }
+            if (slots.size() + 1 >= tree.length) {
+                List<WaitlistEntry> entries = entries();
+                entries.add(entry);
+                rebuild(entries);
+                return true;
+            }
+            slots.add(entry);
+            slotsByUserId.put(entry.userId(), slots.size() - 1);
+            update(slots.size() - 1, 1);
+            size++;
+            return true;
+        }
+
+        boolean remove(Long userId) {
+            Integer slot = slotsByUserId.remove(userId);
+            if (slot == null) {
+                return false;
+            }
+            slots.set(slot, null);
+            update(slot, -1);
+            size--;
+            if (size * 2 < slots.size() && slots.size() > 8) {
+                rebuild(entries());
+            }
+            return true;
+        }
+
+        private void update(int slot, int delta) {
+            for (int i = slot + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+
+        private List<WaitlistEntry> entries() {
+            List<WaitlistEntry> entries = new ArrayList<>(size + 1);
+            for (WaitlistEntry entry : slots) {
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+            return entries;
+        }
+
+        private void rebuild(List<WaitlistEntry> entries) {
+            slots.clear();
+            slotsByUserId.clear();
+            tree = new int[Math.max(8, entries.size() * 2) + 1];
+            size = 0;
+            for (WaitlistEntry entry : entries) {
+                slots.add(entry);
+                slotsByUserId.put(entry.userId(), slots.size() - 1);
+                update(slots.size() - 1, 1);
+                size++;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * In-memory count of the books in the catalog.
+ * <p>
+ * The count is adjusted when books are created or deleted and periodically reconciled with
+ * the database, which corrects any drift (e.g. from rows changed outside the application).
+ * A reconciliation is discarded if the catalog changed while the database was being counted,
+ * since the count may or may not include that change.
+ */
+@Component
+public class CatalogCounts {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogCounts.class);
+
+    private final BookDao bookDao;
+    private final ConnectionPool connectionPool;
+
+    /** The number of books, or -1 while unknown. */
+    private long bookCount = -1;
+    private long changes;
+
+    @Autowired
+    public CatalogCounts(BookDao bookDao, ConnectionPool connectionPool) {
+        this.bookDao = bookDao;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Returns the number of books, counting them in the database only if the count is not known yet.
+     *
+     * @return The number of books
+     * @throws SQLException if the books have to be counted and counting fails
+     */
+    public long getBookCount() throws SQLException {
+        synchronized (this) {
+            if (bookCount >= 0) {
+                return bookCount;
+            }
+        }
+        return countBooks();
+    }
+
+    /**
+     * Recounts the books in the database once the context is ready and then periodically.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Scheduled(fixedDelayString = "${catalog.counts.reconcileIntervalMs:300000}",
+            initialDelayString = "${catalog.counts.reconcileIntervalMs:300000}")
+    public void reconcile() {
+        try {
+            countBooks();
+        } catch (Exception e) {
+            logger.error("Error reconciling catalog counts", e);
+        }
+    }
+
+    /**
+     * Adjusts the count after a book has been created or deleted.
+     */
+    @EventListener
+    public synchronized void onBookChanged(BookChangedEvent event) {
+        changes++;
+        if (bookCount < 0) {
+            return;
+        }
+        switch (event.type()) {
+            case CREATED -> bookCount++;
+            case DELETED -> bookCount = Math.max(0, bookCount - 1);
+            default -> { }
+        }
+    }
+
+    private long countBooks() throws SQLException {
+        long changesBefore;
+        synchronized (this) {
+            changesBefore = changes;
+        }
+
+        long counted;
+        try (Connection connection = connectionPool.getConnection()) {
+            counted = bookDao.countAll(connection);
+        }
+
+        synchronized (this) {
+            if (changes != changesBefore) {
+                logger.debug("Catalog changed while counting books, keeping count {}", bookCount);
+                return bookCount >= 0 ? bookCount : counted;
+            }
+            if (bookCount >= 0 && bookCount != counted) {
+                logger.info("Book count corrected from {} to {}", bookCount, counted);
+            }
+            bookCount = counted;
+            return counted;
+        }
+    }
+}
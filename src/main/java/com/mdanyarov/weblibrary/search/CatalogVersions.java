@@ -0,0 +1,96 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.BookGenresChangedEvent;
+import com.mdanyarov.weblibrary.event.GenreChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modification stamps of the catalog and of individual books, used for HTTP conditional requests.
+ * <p>
+ * Every change to a book (its data, genres or copy availability) gives the book a new stamp
+ * and also changes the catalog-wide stamp. Books without changes of their own share a common base
+ * stamp, so only changed books are tracked. Stamps include the startup time, so validators issued before
+ * a restart never match.
+ */
+@Component
+public class CatalogVersions {
+
+    /**
+     * A version together with the time it was assigned.
+     *
+     * @param tag Opaque version string, unique per change
+     * @param lastModified The time of the change in epoch milliseconds
+     */
+    public record Stamp(String tag, long lastModified) {
+    }
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<Long, Stamp> bookStamps = new ConcurrentHashMap<>();
+    private long version;
+    private volatile Stamp baseStamp = new Stamp(startedAt + ".0", startedAt);
+    private volatile Stamp catalogStamp = baseStamp;
+
+    /**
+     * Returns the stamp of the whole catalog (book list, genres and availability).
+     *
+     * @return The current catalog stamp
+     */
+    public Stamp catalogStamp() {
+        return catalogStamp;
+    }
+
+    /**
+     * Returns the stamp of a single book.
+     *
+     * @param bookId The book ID
+     * @return The current stamp of the book
+     */
+    public Stamp bookStamp(Long bookId) {
+        Stamp stamp = bookStamps.get(bookId);
+        return stamp != null ? stamp : baseStamp;
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        bookChanged(event.bookId());
+    }
+
+    @EventListener
+    public void onBookGenresChanged(BookGenresChangedEvent event) {
+        bookChanged(event.bookId());
+    }
+
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.bookId() != null) {
+            bookChanged(event.bookId());
+        } else {
+            nextStamp();
+        }
+    }
+
+    @EventListener
+    public void onGenreChanged(GenreChangedEvent event) {
+        // Genre names appear on book pages too, so every book page changes
+        synchronized (this) {
+            baseStamp = nextStamp();
+            bookStamps.clear();
+        }
+    }
+
+    private synchronized void bookChanged(Long bookId) {
+        bookStamps.put(bookId, nextStamp());
+    }
+
+    private synchronized Stamp nextStamp() {
+        Stamp stamp = new Stamp(startedAt + "." + (++version), System.currentTimeMillis());
+        catalogStamp = stamp;
+        return stamp;
+    }
+}
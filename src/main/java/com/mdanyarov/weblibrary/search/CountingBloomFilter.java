@@ -0,0 +1,116 @@
+package com.mdanyarov.weblibrary.search;
+
+/**
+ * Counting Bloom filter of strings.
+ * <p>
+ * Each string sets k of m small counters, chosen by double hashing a 64-bit hash of the string.
+ * A string is possibly contained if all its counters are non-zero, so the filter has no false
+ * negatives (as long as only added strings are removed) and a false positive rate that grows with
+ * the number of strings. Counters saturate at 255 and then are never decremented again.
+ * <p>
+ * Not thread-safe; callers synchronize.
+ */
+public class CountingBloomFilter {
+
+    private static final int MAX_COUNT = 0xFF;
+
+    private final byte[] counters;
+    private final int hashCount;
+    private final long capacity;
+    private long size;
+
+    /**
+     * Creates a filter sized for the expected number of strings and false positive rate.
+     *
+     * @param capacity The expected number of strings
+     * @param falsePositiveRate The false positive rate at that number of strings (0 &lt; rate &lt; 1)
+     */
+    public CountingBloomFilter(long capacity, double falsePositiveRate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.counters = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(64, bits))];
+        this.hashCount = Math.max(1, (int) Math.round((double) counters.length / capacity * Math.log(2)));
+        this.capacity = capacity;
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & 0xFF;
+            if (count < MAX_COUNT) {
+                counters[index] = (byte) (count + 1);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes a string that was added before. Removing a string that was never added can cause
+     * false negatives for other strings.
+     */
+    public void remove(String value) {
+        if (!mightContain(value)) {
+            return;
+        }
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            int index = index(hash, i);
+            int count = counters[index] & 0xFF;
+            if (count < MAX_COUNT) {
+                counters[index] = (byte) (count - 1);
+            }
+        }
+        size = Math.max(0, size - 1);
+    }
+
+    /**
+     * Returns false if the string was definitely not added, true if it possibly was.
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            if (counters[index(hash, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of strings added and not removed.
+     */
+    public long size() {
+        return size;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    private int index(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return Math.floorMod(h1 + i * h2, counters.length);
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, followed by a final mix to spread the high bits.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,456 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookCopyDao;
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.GenreDao;
+import com.mdanyarov.weblibrary.dto.CatalogFilter;
+import com.mdanyarov.weblibrary.dto.FacetCounts;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.BookGenresChangedEvent;
+import com.mdanyarov.weblibrary.event.GenreChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory facet engine for the catalog.
+ * <p>
+ * Keeps a {@link RoaringBitmap} of book IDs per genre, per publication year and for books with
+ * an available copy. A filter is evaluated by intersecting the selected bitmaps (genres and years
+ * are unioned within their facet), and facet counts are intersection cardinalities, so neither
+ * needs a join per request. Year bitmaps are per year so that any range is exact; counts are
+ * reported per decade.
+ * <p>
+ * The index is built at startup and kept current from book, genre assignment and order events.
+ * Availability of a book is re-read from its book_availability counter whenever the book or one
+ * of its orders changes. Copy edits, such as copies marked damaged or lost, publish no event, so the
+ * whole availability bitmap is also reloaded from the counters periodically.
+ */
+@Component
+public class FacetIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FacetIndex.class);
+
+    /** Results covering at least 1/8 of the catalog are paged by walking the catalog in title order. */
+    private static final int DENSE_RESULT_RATIO = 8;
+
+    private static final Comparator<IndexedBook> TITLE_ORDER = Comparator
+            .comparing((IndexedBook b) -> b.sortKey)
+            .thenComparingInt(b -> b.id);
+
+    private final BookDao bookDao;
+    private final BookCopyDao bookCopyDao;
+    private final GenreDao genreDao;
+    private final ConnectionPool connectionPool;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final RoaringBitmap allBooks = new RoaringBitmap();
+    private final RoaringBitmap availableBooks = new RoaringBitmap();
+    private final Map<Long, RoaringBitmap> booksByGenre = new HashMap<>();
+    private final TreeMap<Integer, RoaringBitmap> booksByYear = new TreeMap<>();
+    private final Map<Integer, IndexedBook> books = new HashMap<>();
+    private final TreeSet<IndexedBook> booksByTitle = new TreeSet<>(TITLE_ORDER);
+
+    /**
+     * Result of a facet query: one page of book IDs in title order, the total and the facet counts.
+     */
+    public record Result(List<Long> bookIds, int total, FacetCounts counts) {
+    }
+
+    @Autowired
+    public FacetIndex(BookDao bookDao, BookCopyDao bookCopyDao, GenreDao genreDao, ConnectionPool connectionPool) {
+        this.bookDao = bookDao;
+        this.bookCopyDao = bookCopyDao;
+        this.genreDao = genreDao;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Builds the index from the database once the application context is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuild() {
+        try (Connection connection = connectionPool.getConnection()) {
+            List<Book> catalog = bookDao.findAll(connection);
+            List<Long> available = bookCopyDao.findAvailableBookIds(connection);
+            Map<Long, List<Long>> genreAssignments = genreDao.findBookIdsByGenre(connection);
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                for (Book book : catalog) {
+                    putBook(book);
+                }
+                for (Long bookId : available) {
+                    int docId = toDocId(bookId);
+                    if (books.containsKey(docId)) {
+                        availableBooks.add(docId);
+                    }
+                }
+                for (Map.Entry<Long, List<Long>> entry : genreAssignments.entrySet()) {
+                    for (Long bookId : entry.getValue()) {
+                        IndexedBook indexed = books.get(toDocId(bookId));
+                        if (indexed != null) {
+                            indexed.genreIds.add(entry.getKey());
+                            booksByGenre.computeIfAbsent(entry.getKey(), id -> new RoaringBitmap()).add(indexed.id);
+                        }
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Facet index built: {} books, {} genres, {} years", catalog.size(),
+                    booksByGenre.size(), booksByYear.size());
+        } catch (Exception e) {
+            logger.error("Error building facet index", e);
+        }
+    }
+
+    /**
+     * Keeps titles, publication years and availability in sync with catalog changes.
+     */
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        boolean removed = event.type() == BookChangedEvent.Type.DELETED || event.book() == null;
+        lock.writeLock().lock();
+        try {
+            if (removed) {
+                removeBook(toDocId(event.bookId()));
+            } else {
+                putBook(event.book());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!removed) {
+            refreshAvailability(event.bookId());
+        }
+    }
+
+    /**
+     * Replaces the genre memberships of a book.
+     */
+    @EventListener
+    public void onBookGenresChanged(BookGenresChangedEvent event) {
+        int docId = toDocId(event.bookId());
+        lock.writeLock().lock();
+        try {
+            IndexedBook indexed = books.get(docId);
+            if (indexed == null) {
+                return;
+            }
+            for (Long genreId : indexed.genreIds) {
+                removeFrom(booksByGenre, genreId, docId);
+            }
+            indexed.genreIds.clear();
+            indexed.genreIds.addAll(event.genreIds());
+            for (Long genreId : indexed.genreIds) {
+                booksByGenre.computeIfAbsent(genreId, id -> new RoaringBitmap()).add(docId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops deleted genres; their book assignments are removed by the database cascade.
+     */
+    @EventListener
+    public void onGenreChanged(GenreChangedEvent event) {
+        if (event.type() == GenreChangedEvent.Type.DELETED) {
+            removeGenre(event.genreId());
+        }
+    }
+
+    /**
+     * Re-reads the availability of the ordered book, since order transitions change copy statuses.
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.bookId() == null) {
+            return;
+        }
+        refreshAvailability(event.bookId());
+    }
+
+    /**
+     * Re-reads from the database whether a book has an available copy.
+     *
+     * @param bookId The book ID
+     */
+    public void refreshAvailability(Long bookId) {
+        try (Connection connection = connectionPool.getConnection()) {
+            boolean available = bookCopyDao.countAvailableByBookId(bookId, connection) > 0;
+            int docId = toDocId(bookId);
+
+            lock.writeLock().lock();
+            try {
+                if (available && books.containsKey(docId)) {
+                    availableBooks.add(docId);
+                } else {
+                    availableBooks.remove(docId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            logger.error("Error refreshing availability of book {} in facet index", bookId, e);
+        }
+    }
+
+    /**
+     * Reloads the availability of all books from their book_availability counters, picking up copy
+     * changes that publish no event.
+     */
+    @Scheduled(fixedDelayString = "${search.facets.availabilityReloadMs:60000}",
+            initialDelayString = "${search.facets.availabilityReloadMs:60000}")
+    public void reloadAvailability() {
+        try (Connection connection = connectionPool.getConnection()) {
+            List<Long> available = bookCopyDao.findAvailableBookIds(connection);
+
+            lock.writeLock().lock();
+            try {
+                availableBooks.clear();
+                for (Long bookId : available) {
+                    int docId = toDocId(bookId);
+                    if (books.containsKey(docId)) {
+                        availableBooks.add(docId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (Exception e) {
+            logger.error("Error reloading availability in facet index", e);
+        }
+    }
+
+    /**
+     * Applies the facets of the filter and returns one page of matching books with facet counts.
+     *
+     * @param filter The selected facets (the text query is ignored here)
+     * @param restrictTo IDs of books matching the text query, or null if there is no query
+     * @param offset The number of books to skip
+     * @param limit The maximum number of book IDs to return
+     * @return The page of book IDs ordered by title, the total and the facet counts
+     */
+    public Result search(CatalogFilter filter, Collection<Long> restrictTo, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap base = allBooks;
+            if (restrictTo != null) {
+                RoaringBitmap matches = new RoaringBitmap();
+                for (Long bookId : restrictTo) {
+                    matches.add(toDocId(bookId));
+                }
+                base = RoaringBitmap.and(base, matches);
+            }
+
+            RoaringBitmap genres = filter.getGenreIds().isEmpty() ? null : unionOfGenres(filter.getGenreIds());
+            RoaringBitmap years = filter.hasYearRange() ? unionOfYears(filter.getYearFrom(), filter.getYearTo()) : null;
+            RoaringBitmap available = filter.isAvailableOnly() ? availableBooks : null;
+
+            // Each facet is counted against the result of all the other facets
+            RoaringBitmap withoutGenres = intersect(base, years, available);
+            RoaringBitmap withoutYears = intersect(base, genres, available);
+            RoaringBitmap withoutAvailability = intersect(base, genres, years);
+            RoaringBitmap result = intersect(withoutAvailability, available);
+
+            Map<Long, Integer> genreCounts = new HashMap<>();
+            for (Map.Entry<Long, RoaringBitmap> entry : booksByGenre.entrySet()) {
+                genreCounts.put(entry.getKey(), RoaringBitmap.andCardinality(withoutGenres, entry.getValue()));
+            }
+            Map<Integer, Integer> decadeCounts = new TreeMap<>();
+            for (Map.Entry<Integer, RoaringBitmap> entry : booksByYear.entrySet()) {
+                int count = RoaringBitmap.andCardinality(withoutYears, entry.getValue());
+                if (count > 0 && entry.getKey() > 0) {
+                    decadeCounts.merge(entry.getKey() / 10 * 10, count, Integer::sum);
+                }
+            }
+            int availableCount = RoaringBitmap.andCardinality(withoutAvailability, availableBooks);
+
+            return new Result(page(result, offset, limit), result.getCardinality(),
+                    new FacetCounts(genreCounts, decadeCounts, availableCount));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops a genre from the index, e.g. after it has been deleted.
+     *
+     * @param genreId The genre ID
+     */
+    public void removeGenre(Long genreId) {
+        lock.writeLock().lock();
+        try {
+            booksByGenre.remove(genreId);
+            for (IndexedBook indexed : books.values()) {
+                indexed.genreIds.remove(genreId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Selects the page of books with the smallest (title, id) keys without sorting the whole result.
+     * A dense result is found by walking the catalog in title order, which stops after about
+     * (offset + limit) * catalog size / result size books; a sparse result goes through a bounded heap.
+     */
+    private List<Long> page(RoaringBitmap result, int offset, int limit) {
+        int wanted = offset + limit;
+        int cardinality = result.getCardinality();
+        if (limit <= 0 || offset >= cardinality) {
+            return List.of();
+        }
+
+        if ((long) cardinality * DENSE_RESULT_RATIO >= books.size()) {
+            List<Long> ids = new ArrayList<>(limit);
+            int seen = 0;
+            for (IndexedBook indexed : booksByTitle) {
+                if (result.contains(indexed.id)) {
+                    if (seen++ >= offset) {
+                        ids.add((long) indexed.id);
+                        if (ids.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+            }
+            return ids;
+        }
+
+        PriorityQueue<IndexedBook> heap = new PriorityQueue<>(wanted + 1, TITLE_ORDER.reversed());
+        result.forEach(docId -> {
+            IndexedBook indexed = books.get(docId);
+            if (heap.size() < wanted) {
+                heap.add(indexed);
+            } else if (TITLE_ORDER.compare(indexed, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(indexed);
+            }
+        });
+
+        List<IndexedBook> first = new ArrayList<>(heap);
+        first.sort(TITLE_ORDER);
+        List<Long> ids = new ArrayList<>(limit);
+        for (int i = offset; i < first.size(); i++) {
+            ids.add((long) first.get(i).id);
+        }
+        return ids;
+    }
+
+    private RoaringBitmap unionOfGenres(List<Long> genreIds) {
+        RoaringBitmap union = new RoaringBitmap();
+        for (Long genreId : genreIds) {
+            RoaringBitmap bitmap = booksByGenre.get(genreId);
+            if (bitmap != null) {
+                union = RoaringBitmap.or(union, bitmap);
+            }
+        }
+        return union;
+    }
+
+    private RoaringBitmap unionOfYears(Integer from, Integer to) {
+        int lower = from != null ? from : Integer.MIN_VALUE;
+        int upper = to != null ? to : Integer.MAX_VALUE;
+        RoaringBitmap union = new RoaringBitmap();
+        if (lower > upper) {
+            return union;
+        }
+        for (RoaringBitmap bitmap : booksByYear.subMap(lower, true, upper, true).values()) {
+            union = RoaringBitmap.or(union, bitmap);
+        }
+        return union;
+    }
+
+    private static RoaringBitmap intersect(RoaringBitmap base, RoaringBitmap... filters) {
+        RoaringBitmap result = base;
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                result = RoaringBitmap.and(result, filter);
+            }
+        }
+        return result;
+    }
+
+    private void putBook(Book book) {
+        int docId = toDocId(book.getId());
+        IndexedBook indexed = books.get(docId);
+        if (indexed == null) {
+            indexed = new IndexedBook(docId);
+            books.put(docId, indexed);
+            allBooks.add(docId);
+        } else {
+            removeFrom(booksByYear, indexed.year, docId);
+            booksByTitle.remove(indexed);
+        }
+        indexed.sortKey = book.getTitle() != null ? book.getTitle().toLowerCase(Locale.ROOT) : "";
+        indexed.year = book.getPublicationYear();
+        booksByTitle.add(indexed);
+        booksByYear.computeIfAbsent(indexed.year, year -> new RoaringBitmap()).add(docId);
+    }
+
+    private void removeBook(int docId) {
+        IndexedBook indexed = books.remove(docId);
+        if (indexed == null) {
+            return;
+        }
+        booksByTitle.remove(indexed);
+        allBooks.remove(docId);
+        availableBooks.remove(docId);
+        removeFrom(booksByYear, indexed.year, docId);
+        for (Long genreId : indexed.genreIds) {
+            removeFrom(booksByGenre, genreId, docId);
+        }
+    }
+
+    private void clear() {
+        books.clear();
+        booksByTitle.clear();
+        booksByGenre.clear();
+        booksByYear.clear();
+        allBooks.clear();
+        availableBooks.clear();
+    }
+
+    private static <K> void removeFrom(Map<K, RoaringBitmap> bitmaps, K key, int docId) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(docId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Converts a book ID to the int used as a bitmap position.
+     */
+    private static int toDocId(Long bookId) {
+        return Math.toIntExact(bookId);
+    }
+
+    private static final class IndexedBook {
+        private final int id;
+        private String sortKey;
+        private int year;
+        private final Set<Long> genreIds = new HashSet<>();
+
+        private IndexedBook(int id) {
+            this.id = id;
+        }
+    }
+}
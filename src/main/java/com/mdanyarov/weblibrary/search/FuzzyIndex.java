@@ -0,0 +1,346 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory typo-tolerant index over book title and author tokens.
+ * <p>
+ * Tokens are folded to Latin (see {@link TextNormalizer#foldToLatin(String)}) and stored in
+ * BK-trees, so a lookup only visits the branches that can lie within the allowed edit distance of
+ * the query token. The distance is bounded by the token length (one edit up to five characters,
+ * two above), and the first character must match exactly, since typos rarely hit it; each field
+ * therefore keeps one BK-tree per first character. Both bounds keep lookups cheap and avoid
+ * matching unrelated short words. Books matching every query token are returned, best matches first.
+ * <p>
+ * Removed tokens are left in the tree as tombstones and skipped during lookups; the trees are
+ * rebuilt once tombstones outnumber live tokens.
+ */
+@Component
+public class FuzzyIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(FuzzyIndex.class);
+
+    /** Tokens shorter than this are neither indexed nor matched. */
+    private static final int MIN_TOKEN_LENGTH = 3;
+
+    /** Tokens up to this length allow a single edit, longer tokens allow two. */
+    private static final int SHORT_TOKEN_LENGTH = 5;
+
+    /**
+     * Indexed fields.
+     */
+    public enum Field {
+        TITLE, AUTHOR
+    }
+
+    private final BookDao bookDao;
+    private final ConnectionPool connectionPool;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Field, TokenTree> trees = new EnumMap<>(Field.class);
+    private final Map<Long, Map<Field, Set<String>>> bookTokens = new HashMap<>();
+
+    @Autowired
+    public FuzzyIndex(BookDao bookDao, ConnectionPool connectionPool) {
+        this.bookDao = bookDao;
+        this.connectionPool = connectionPool;
+        for (Field field : Field.values()) {
+            trees.put(field, new TokenTree());
+        }
+    }
+
+    /**
+     * Builds the index from the database once the application context is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuild() {
+        try (Connection connection = connectionPool.getConnection()) {
+            List<Book> allBooks = bookDao.findAll(connection);
+
+            lock.writeLock().lock();
+            try {
+                bookTokens.clear();
+                for (Field field : Field.values()) {
+                    trees.put(field, new TokenTree());
+                }
+                for (Book book : allBooks) {
+                    addBook(book);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Fuzzy index built: {} books, {} title tokens, {} author tokens", allBooks.size(),
+                    trees.get(Field.TITLE).liveTokens, trees.get(Field.AUTHOR).liveTokens);
+        } catch (Exception e) {
+            logger.error("Error building fuzzy index", e);
+        }
+    }
+
+    /**
+     * Keeps the index in sync with catalog changes.
+     */
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            removeBook(event.bookId());
+            if (event.type() != BookChangedEvent.Type.DELETED && event.book() != null) {
+                addBook(event.book());
+            }
+            for (Field field : Field.values()) {
+                TokenTree tree = trees.get(field);
+                if (tree.deadTokens > tree.liveTokens) {
+                    trees.put(field, tree.compact());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds books whose title or author approximately matches every token of the query.
+     *
+     * @param query The search query
+     * @param fields The fields to match against
+     * @param limit Maximum number of book IDs to return
+     * @return IDs of matching books, closest matches first
+     */
+    public List<Long> search(String query, Set<Field> fields, int limit) {
+        List<String> queryTokens = new ArrayList<>();
+        for (String token : TextNormalizer.foldToLatin(query).split(" ")) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                queryTokens.add(token);
+            }
+        }
+        if (queryTokens.isEmpty() || fields.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Total distance per book; a book stays a candidate only while it matches every token
+            Map<Long, Integer> candidates = null;
+            for (String token : queryTokens) {
+                Map<Long, Integer> matches = new HashMap<>();
+                int maxDistance = token.length() <= SHORT_TOKEN_LENGTH ? 1 : 2;
+                for (Field field : fields) {
+                    trees.get(field).search(token, maxDistance, matches);
+                }
+                if (candidates == null) {
+                    candidates = matches;
+                } else {
+                    candidates.keySet().retainAll(matches.keySet());
+                    candidates.replaceAll((bookId, distance) -> distance + matches.get(bookId));
+                }
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return candidates.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addBook(Book book) {
+        Map<Field, Set<String>> tokens = new EnumMap<>(Field.class);
+        tokens.put(Field.TITLE, tokensOf(book.getTitle()));
+        tokens.put(Field.AUTHOR, tokensOf(book.getAuthor()));
+        for (Map.Entry<Field, Set<String>> entry : tokens.entrySet()) {
+            TokenTree tree = trees.get(entry.getKey());
+            for (String token : entry.getValue()) {
+                tree.add(token, book.getId());
+            }
+        }
+        bookTokens.put(book.getId(), tokens);
+    }
+
+    private void removeBook(Long bookId) {
+        Map<Field, Set<String>> tokens = bookTokens.remove(bookId);
+        if (tokens == null) {
+            return;
+        }
+        for (Map.Entry<Field, Set<String>> entry : tokens.entrySet()) {
+            TokenTree tree = trees.get(entry.getKey());
+            for (String token : entry.getValue()) {
+                tree.remove(token, bookId);
+            }
+        }
+    }
+
+    private static Set<String> tokensOf(String text) {
+        Set<String> tokens = new HashSet<>();
+        for (String token : TextNormalizer.foldToLatin(text).split(" ")) {
+            if (token.length() >= MIN_TOKEN_LENGTH) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Levenshtein distance between two strings, giving up once it is known to exceed the bound.
+     *
+     * @return The distance, or {@code bound + 1} if it is larger than the bound
+     */
+    static int boundedDistance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > bound) {
+                return bound + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], bound + 1);
+    }
+
+    /**
+     * BK-trees of distinct tokens, one per first character. Each node holds the IDs of the books
+     * containing its token; a node without books is a tombstone.
+     */
+    private static final class TokenTree {
+        private final Map<Character, Node> roots = new HashMap<>();
+        private final Map<String, Node> nodes = new HashMap<>();
+        private int liveTokens;
+        private int deadTokens;
+
+        void add(String token, Long bookId) {
+            Node node = nodes.get(token);
+            if (node == null) {
+                node = new Node(token);
+                nodes.put(token, node);
+                insert(node);
+            }
+            if (node.bookIds.isEmpty()) {
+                if (node.tombstoned) {
+                    node.tombstoned = false;
+                    deadTokens--;
+                }
+                liveTokens++;
+            }
+            node.bookIds.add(bookId);
+        }
+
+        void remove(String token, Long bookId) {
+            Node node = nodes.get(token);
+            if (node != null && node.bookIds.remove(bookId) && node.bookIds.isEmpty()) {
+                node.tombstoned = true;
+                liveTokens--;
+                deadTokens++;
+            }
+        }
+
+        /**
+         * Collects the books of every live token within the distance, keeping the smallest distance per book.
+         */
+        void search(String token, int maxDistance, Map<Long, Integer> matches) {
+            Node root = roots.get(token.charAt(0));
+            if (root == null) {
+                return;
+            }
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                // Children are keyed by their distance to this node. A child can only be in range
+                // if the distance is at most maxDistance + its key, so anything above that bound
+                // needs no exact value
+                int distance = boundedDistance(token, node.token, maxDistance + node.maxChildKey);
+                if (distance <= maxDistance) {
+                    for (Long bookId : node.bookIds) {
+                        matches.merge(bookId, distance, Math::min);
+                    }
+                }
+                if (node.children != null) {
+                    for (int d = Math.max(1, distance - maxDistance); d <= distance + maxDistance; d++) {
+                        Node child = node.children.get(d);
+                        if (child != null) {
+                            pending.push(child);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns a new tree containing only the live tokens.
+         */
+        TokenTree compact() {
+            TokenTree compacted = new TokenTree();
+            for (Node node : nodes.values()) {
+                for (Long bookId : node.bookIds) {
+                    compacted.add(node.token, bookId);
+                }
+            }
+            return compacted;
+        }
+
+        private void insert(Node node) {
+            Node current = roots.putIfAbsent(node.token.charAt(0), node);
+            if (current == null) {
+                return;
+            }
+            while (true) {
+                int distance = boundedDistance(node.token, current.token, Integer.MAX_VALUE - 1);
+                if (current.children == null) {
+                    current.children = new HashMap<>();
+                }
+                Node child = current.children.get(distance);
+                if (child == null) {
+                    current.children.put(distance, node);
+                    current.maxChildKey = Math.max(current.maxChildKey, distance);
+                    return;
+                }
+                current = child;
+            }
+        }
+    }
+
+    private static final class Node {
+        private final String token;
+        private final Set<Long> bookIds = new HashSet<>(2);
+        private Map<Integer, Node> children;
+        private int maxChildKey;
+        private boolean tombstoned;
+
+        private Node(String token) {
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counting Bloom filter of the ISBNs in the catalog, used to skip the database lookup when
+ * checking that a new ISBN is unique.
+ * <p>
+ * The filter is built at startup and kept up to date by {@link com.mdanyarov.weblibrary.service.BookService}:
+ * ISBNs are added inside the transaction that writes them and removed after the transaction that
+ * drops them has been committed, so the filter only errs towards false positives. It is rebuilt
+ * when it holds more ISBNs than it was sized for. ISBNs are matched case-insensitively, like the
+ * database column. The UNIQUE constraint on books.isbn remains the actual guarantee.
+ */
+@Component
+public class IsbnIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IsbnIndex.class);
+
+    private static final int MIN_CAPACITY = 10_000;
+
+    private final BookDao bookDao;
+    private final ConnectionPool connectionPool;
+    private final double falsePositiveRate;
+
+    /** The filter, or null until it has been built. */
+    private CountingBloomFilter filter;
+    /** ISBNs added while a rebuild is reading the database, or null if no rebuild is running. */
+    private List<String> addedDuringRebuild;
+
+    @Autowired
+    public IsbnIndex(BookDao bookDao, ConnectionPool connectionPool,
+                     @Value("${isbn.filter.falsePositiveRate:0.01}") double falsePositiveRate) {
+        this.bookDao = bookDao;
+        this.connectionPool = connectionPool;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Returns false if no book has the ISBN, true if one possibly has.
+     * Always true until the filter has been built.
+     *
+     * @param isbn The ISBN
+     * @return Whether the ISBN has to be looked up in the database
+     */
+    public synchronized boolean mightExist(String isbn) {
+        return filter == null || filter.mightContain(normalize(isbn));
+    }
+
+    /**
+     * Adds the ISBN of a book that is being created or updated.
+     *
+     * @param isbn The ISBN, or null
+     */
+    public synchronized void add(String isbn) {
+        if (isbn == null || isbn.isBlank()) {
+            return;
+        }
+        String normalized = normalize(isbn);
+        if (filter != null) {
+            filter.add(normalized);
+        }
+        if (addedDuringRebuild != null) {
+            addedDuringRebuild.add(normalized);
+        }
+    }
+
+    /**
+     * Removes the ISBN of a book that has been deleted or given another ISBN.
+     * Removals during a rebuild are dropped; the ISBN then stays a false positive until the next rebuild.
+     *
+     * @param isbn The ISBN, or null
+     */
+    public synchronized void remove(String isbn) {
+        if (isbn == null || isbn.isBlank() || filter == null) {
+            return;
+        }
+        filter.remove(normalize(isbn));
+    }
+
+    /**
+     * Builds the filter once the context is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void build() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.error("Error building ISBN filter, ISBNs will be checked in the database", e);
+        }
+    }
+
+    /**
+     * Rebuilds the filter if it holds more ISBNs than it was sized for.
+     */
+    @Scheduled(fixedDelayString = "${isbn.filter.checkIntervalMs:600000}",
+            initialDelayString = "${isbn.filter.checkIntervalMs:600000}")
+    public void rebuildIfFull() {
+        synchronized (this) {
+            if (filter != null && filter.size() <= filter.getCapacity()) {
+                return;
+            }
+        }
+        build();
+    }
+
+    private void rebuild() throws Exception {
+        synchronized (this) {
+            if (addedDuringRebuild != null) {
+                return;
+            }
+            addedDuringRebuild = new ArrayList<>();
+        }
+
+        try {
+            List<String> isbns;
+            try (Connection connection = connectionPool.getConnection()) {
+                isbns = bookDao.findAllIsbns(connection);
+            }
+
+            CountingBloomFilter rebuilt = new CountingBloomFilter(Math.max(MIN_CAPACITY, 2L * isbns.size()), falsePositiveRate);
+            for (String isbn : isbns) {
+                rebuilt.add(normalize(isbn));
+            }
+
+            synchronized (this) {
+                for (String isbn : addedDuringRebuild) {
+                    rebuilt.add(isbn);
+                }
+                filter = rebuilt;
+            }
+            logger.info("ISBN filter built with {} ISBNs", isbns.size());
+        } finally {
+            synchronized (this) {
+                addedDuringRebuild = null;
+            }
+        }
+    }
+
+    private static String normalize(String isbn) {
+        return isbn.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,540 @@
+package com.mdanyarov.weblibrary.search;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of non-negative ints in the style of Roaring bitmaps.
+ * <p>
+ * Values are split by their high 16 bits into chunks. Each chunk stores its low 16 bits either as
+ * a sorted array (up to {@value #ARRAY_LIMIT} values, 2 bytes per value) or as a plain 8 KB bitmap
+ * once it becomes denser than that, so both sparse and dense sets stay compact and intersections
+ * work chunk by chunk. Instances are not thread-safe.
+ */
+public final class RoaringBitmap {
+
+    /** Largest number of values kept in an array chunk before switching to a bitmap chunk. */
+    static final int ARRAY_LIMIT = 4096;
+
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int chunkCount;
+
+    /**
+     * Creates a bitmap containing the given values.
+     *
+     * @param values The values to add
+     * @return A new bitmap
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a value to the bitmap.
+     *
+     * @param value A non-negative value
+     */
+    public void add(int value) {
+        checkValue(value);
+        char high = (char) (value >>> 16);
+        int index = findChunk(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, high, new ArrayChunk());
+        }
+        chunks[index] = chunks[index].add((char) value);
+    }
+
+    /**
+     * Removes a value from the bitmap.
+     *
+     * @param value The value to remove
+     */
+    public void remove(int value) {
+        if (value < 0) {
+            return;
+        }
+        int index = findChunk((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+        Chunk chunk = chunks[index].remove((char) value);
+        if (chunk.cardinality() == 0) {
+            removeChunk(index);
+        } else {
+            chunks[index] = chunk;
+        }
+    }
+
+    /**
+     * Checks whether the bitmap contains a value.
+     *
+     * @param value The value to look for
+     * @return true if the value is present
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = findChunk((char) (value >>> 16));
+        return index >= 0 && chunks[index].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values in the bitmap.
+     *
+     * @return The cardinality
+     */
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            cardinality += chunks[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    /**
+     * Removes all values from the bitmap.
+     */
+    public void clear() {
+        Arrays.fill(chunks, 0, chunkCount, null);
+        chunkCount = 0;
+    }
+
+    /**
+     * Calls the consumer for every value in ascending order.
+     *
+     * @param consumer The consumer to call
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Returns an independent copy of the bitmap.
+     *
+     * @return The copy
+     */
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, chunkCount));
+        copy.chunks = new Chunk[copy.keys.length];
+        for (int i = 0; i < chunkCount; i++) {
+            copy.chunks[i] = chunks[i].copy();
+        }
+        copy.chunkCount = chunkCount;
+        return copy;
+    }
+
+    /**
+     * Computes the intersection of two bitmaps.
+     *
+     * @return A new bitmap with the values present in both
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = a.chunks[i].and(b.chunks[j]);
+                if (chunk.cardinality() > 0) {
+                    result.insertChunk(result.chunkCount, a.keys[i], chunk);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the values present in both bitmaps without materializing the intersection.
+     *
+     * @return The cardinality of the intersection
+     */
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                cardinality += a.chunks[i].andCardinality(b.chunks[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Computes the union of two bitmaps.
+     *
+     * @return A new bitmap with the values present in either
+     */
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunkCount || j < b.chunkCount) {
+            if (j == b.chunkCount || (i < a.chunkCount && a.keys[i] < b.keys[j])) {
+                result.insertChunk(result.chunkCount, a.keys[i], a.chunks[i].copy());
+                i++;
+            } else if (i == a.chunkCount || a.keys[i] > b.keys[j]) {
+                result.insertChunk(result.chunkCount, b.keys[j], b.chunks[j].copy());
+                j++;
+            } else {
+                result.insertChunk(result.chunkCount, a.keys[i], a.chunks[i].or(b.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must be non-negative: " + value);
+        }
+    }
+
+    private int findChunk(char high) {
+        return Arrays.binarySearch(keys, 0, chunkCount, high);
+    }
+
+    private void insertChunk(int index, char high, Chunk chunk) {
+        if (chunkCount == keys.length) {
+            keys = Arrays.copyOf(keys, chunkCount * 2);
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        keys[index] = high;
+        chunks[index] = chunk;
+        chunkCount++;
+    }
+
+    private void removeChunk(int index) {
+        System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+        System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+    }
+
+    /**
+     * Set of low 16-bit values of one chunk. Mutating operations return the chunk to keep,
+     * which may be of the other representation.
+     */
+    private interface Chunk {
+        Chunk add(char value);
+
+        Chunk remove(char value);
+
+        boolean contains(char value);
+
+        int cardinality();
+
+        Chunk and(Chunk other);
+
+        int andCardinality(Chunk other);
+
+        Chunk or(Chunk other);
+
+        void forEach(int base, IntConsumer consumer);
+
+        Chunk copy();
+    }
+
+    /**
+     * Sparse chunk: a sorted array of values.
+     */
+    private static final class ArrayChunk implements Chunk {
+        private char[] values;
+        private int cardinality;
+
+        ArrayChunk() {
+            this(new char[4], 0);
+        }
+
+        ArrayChunk(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Chunk add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+            if (other instanceof ArrayChunk array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayChunk(result, count);
+        }
+
+        @Override
+        public int andCardinality(Chunk other) {
+            int count = 0;
+            if (other instanceof ArrayChunk array) {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            if (other instanceof BitmapChunk bitmap) {
+                return bitmap.or(this);
+            }
+            ArrayChunk array = (ArrayChunk) other;
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j == array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i];
+                    i++;
+                    j++;
+                }
+            }
+            ArrayChunk union = new ArrayChunk(result, count);
+            return count > ARRAY_LIMIT ? union.toBitmap() : union;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        public Chunk copy() {
+            return new ArrayChunk(Arrays.copyOf(values, Math.max(4, cardinality)), cardinality);
+        }
+
+        private BitmapChunk toBitmap() {
+            BitmapChunk bitmap = new BitmapChunk(new long[BitmapChunk.WORDS], 0);
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * Dense chunk: one bit per possible value.
+     */
+    private static final class BitmapChunk implements Chunk {
+        static final int WORDS = 1024;
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapChunk(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        public Chunk add(char value) {
+            long mask = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & mask) == 0) {
+                words[index] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Chunk remove(char value) {
+            long mask = 1L << value;
+            int index = value >>> 6;
+            if ((words[index] & mask) != 0) {
+                words[index] &= ~mask;
+                cardinality--;
+            }
+            return cardinality <= ARRAY_LIMIT ? toArray() : this;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.and(this);
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            long[] result = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                result[i] = words[i] & bitmap.words[i];
+                count += Long.bitCount(result[i]);
+            }
+            BitmapChunk intersection = new BitmapChunk(result, count);
+            return count <= ARRAY_LIMIT ? intersection.toArray() : intersection;
+        }
+
+        @Override
+        public int andCardinality(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.andCardinality(this);
+            }
+            BitmapChunk bitmap = (BitmapChunk) other;
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                count += Long.bitCount(words[i] & bitmap.words[i]);
+            }
+            return count;
+        }
+
+        @Override
+        public Chunk or(Chunk other) {
+            BitmapChunk union = (BitmapChunk) copy();
+            if (other instanceof ArrayChunk array) {
+                for (int i = 0; i < array.cardinality; i++) {
+                    union.add(array.values[i]);
+                }
+            } else {
+                BitmapChunk bitmap = (BitmapChunk) other;
+                int count = 0;
+                for (int i = 0; i < WORDS; i++) {
+                    union.words[i] |= bitmap.words[i];
+                    count += Long.bitCount(union.words[i]);
+                }
+                union.cardinality = count;
+            }
+            return union;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        public Chunk copy() {
+            return new BitmapChunk(words.clone(), cardinality);
+        }
+
+        private ArrayChunk toArray() {
+            char[] values = new char[Math.max(4, cardinality)];
+            int[] count = {0};
+            forEach(0, value -> values[count[0]++] = (char) value);
+            return new ArrayChunk(values, cardinality);
+        }
+    }
+}
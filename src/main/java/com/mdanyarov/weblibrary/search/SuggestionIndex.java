@@ -0,0 +1,458 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.OrderDao;
+import com.mdanyarov.weblibrary.dto.BookSuggestion;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory typeahead index over book titles and authors.
+ * <p>
+ * Suggestions are stored in a radix tree (a trie with path compression) keyed by the normalized
+ * text and by every word-start suffix of it, so "gat" matches "The Great Gatsby". Each node keeps
+ * the precomputed top-k suggestions of its subtree ranked by popularity (number of orders), which
+ * makes a lookup a single walk down the tree followed by a copy of at most k entries.
+ * The index is built at startup and updated incrementally from book and order change events.
+ */
+@Component
+public class SuggestionIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestionIndex.class);
+
+    /** Number of suggestions precomputed per node. */
+    public static final int TOP_K = 10;
+
+    /** Maximum number of word-start suffixes indexed per title or author. */
+    private static final int MAX_KEYS_PER_ENTRY = 8;
+
+    private static final Comparator<Entry> RANKING = Comparator
+            .comparingLong((Entry e) -> e.score).reversed()
+            .thenComparing(e -> e.text)
+            .thenComparing(e -> e.type);
+
+    private final BookDao bookDao;
+    private final OrderDao orderDao;
+    private final ConnectionPool connectionPool;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node("");
+    private final Map<Long, IndexedBook> books = new HashMap<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    @Autowired
+    public SuggestionIndex(BookDao bookDao, OrderDao orderDao, ConnectionPool connectionPool) {
+        this.bookDao = bookDao;
+        this.orderDao = orderDao;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Builds the index from the database once the application context is ready.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    public void rebuild() {
+        try (Connection connection = connectionPool.getConnection()) {
+            List<Book> allBooks = bookDao.findAll(connection);
+            Map<Long, Integer> orderCounts = orderDao.countOrdersByBook(connection);
+
+            lock.writeLock().lock();
+            try {
+                root.children.clear();
+                root.terminals = null;
+                root.top = List.of();
+                books.clear();
+                entries.clear();
+                for (Book book : allBooks) {
+                    addBook(book, 1 + orderCounts.getOrDefault(book.getId(), 0));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.info("Suggestion index built: {} books, {} suggestions", allBooks.size(), entries.size());
+        } catch (Exception e) {
+            logger.error("Error building suggestion index", e);
+        }
+    }
+
+    /**
+     * Returns the most popular titles and authors starting with the given prefix.
+     *
+     * @param prefix The typed prefix
+     * @param limit Maximum number of suggestions (capped at {@link #TOP_K})
+     * @return List of suggestions ordered by popularity
+     */
+    public List<BookSuggestion> suggest(String prefix, int limit) {
+        String key = TextNormalizer.normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Entry> top = findTop(key);
+            int count = Math.min(Math.min(limit, TOP_K), top.size());
+            List<BookSuggestion> suggestions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = top.get(i);
+                Long bookId = entry.type == BookSuggestion.Type.TITLE ? entry.bookIds.first() : null;
+                suggestions.add(new BookSuggestion(entry.text, entry.type, bookId, entry.score));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Keeps the index in sync with catalog changes.
+     */
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            IndexedBook previous = books.get(event.bookId());
+            long weight = previous != null ? previous.weight : 1;
+            removeBook(event.bookId());
+            if (event.type() != BookChangedEvent.Type.DELETED && event.book() != null) {
+                addBook(event.book(), weight);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Raises the popularity of a book whenever it is ordered.
+     */
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.status() != Order.OrderStatus.PENDING || event.bookId() == null) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            IndexedBook indexed = books.get(event.bookId());
+            if (indexed != null) {
+                indexed.weight++;
+                for (Entry entry : indexed.entries()) {
+                    entry.score++;
+                    refresh(entry);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of distinct suggestions currently indexed.
+     *
+     * @return The number of suggestions
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addBook(Book book, long weight) {
+        Entry titleEntry = attach(BookSuggestion.Type.TITLE, book.getTitle(), book.getId(), weight);
+        Entry authorEntry = attach(BookSuggestion.Type.AUTHOR, book.getAuthor(), book.getId(), weight);
+        books.put(book.getId(), new IndexedBook(titleEntry, authorEntry, weight));
+    }
+
+    private void removeBook(Long bookId) {
+        IndexedBook indexed = books.remove(bookId);
+        if (indexed == null) {
+            return;
+        }
+        for (Entry entry : indexed.entries()) {
+            entry.bookIds.remove(bookId);
+            entry.score -= indexed.weight;
+            if (entry.bookIds.isEmpty()) {
+                entries.remove(entry.mapKey());
+                for (String key : entry.keys) {
+                    removeKey(key, entry);
+                }
+            } else {
+                refresh(entry);
+            }
+        }
+    }
+
+    private Entry attach(BookSuggestion.Type type, String text, Long bookId, long weight) {
+        String normalized = TextNormalizer.normalize(text);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+
+        String mapKey = type.name() + ':' + normalized;
+        Entry entry = entries.get(mapKey);
+        if (entry == null) {
+            entry = new Entry(type, text.trim(), normalized);
+            entry.bookIds.add(bookId);
+            entry.score = weight;
+            entries.put(mapKey, entry);
+            for (String key : entry.keys) {
+                insertKey(key, entry);
+            }
+        } else {
+            entry.bookIds.add(bookId);
+            entry.score += weight;
+            refresh(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Recomputes the top-k lists along every path leading to the entry after its score changed.
+     */
+    private void refresh(Entry entry) {
+        for (String key : entry.keys) {
+            List<Node> path = findPath(key);
+            if (path != null) {
+                recompute(path);
+            }
+        }
+    }
+
+    private void insertKey(String key, Entry entry) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null) {
+                child = new Node(key.substring(i));
+                node.children.put(key.charAt(i), child);
+                i = key.length();
+            } else {
+                int common = commonPrefixLength(child.label, key, i);
+                if (common < child.label.length()) {
+                    // Split the edge so that the shared part of the label becomes its own node
+                    Node middle = new Node(child.label.substring(0, common));
+                    child.label = child.label.substring(common);
+                    middle.children.put(child.label.charAt(0), child);
+                    middle.top = child.top;
+                    node.children.put(key.charAt(i), middle);
+                    child = middle;
+                }
+                i += common;
+            }
+            node = child;
+            path.add(node);
+        }
+
+        if (node.terminals == null) {
+            node.terminals = new HashSet<>();
+        }
+        node.terminals.add(entry);
+        recompute(path);
+    }
+
+    private void removeKey(String key, Entry entry) {
+        List<Node> path = findPath(key);
+        if (path == null) {
+            return;
+        }
+
+        Node node = path.get(path.size() - 1);
+        if (node.terminals != null) {
+            node.terminals.remove(entry);
+            if (node.terminals.isEmpty()) {
+                node.terminals = null;
+            }
+        }
+
+        // Prune empty nodes and merge single-child chains bottom-up to keep the tree compressed
+        for (int i = path.size() - 1; i > 0; i--) {
+            Node current = path.get(i);
+            Node parent = path.get(i - 1);
+            if (current.terminals != null) {
+                continue;
+            }
+            if (current.children.isEmpty()) {
+                parent.children.remove(current.label.charAt(0));
+            } else if (current.children.size() == 1) {
+                Node onlyChild = current.children.values().iterator().next();
+                onlyChild.label = current.label + onlyChild.label;
+                parent.children.put(onlyChild.label.charAt(0), onlyChild);
+            }
+        }
+        recompute(path);
+    }
+
+    /**
+     * Finds the nodes on the path to the node whose accumulated label equals the key.
+     *
+     * @return The path including the root, or null if the key is not present
+     */
+    private List<Node> findPath(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int i = 0;
+        while (i < key.length()) {
+            Node child = node.children.get(key.charAt(i));
+            if (child == null || !key.startsWith(child.label, i)) {
+                return null;
+            }
+            i += child.label.length();
+            node = child;
+            path.add(node);
+        }
+        return path;
+    }
+
+    /**
+     * Finds the precomputed top list of the subtree covering every key that starts with the prefix.
+     */
+    private List<Entry> findTop(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            Node child = node.children.get(prefix.charAt(i));
+            if (child == null) {
+                return List.of();
+            }
+            int remaining = prefix.length() - i;
+            if (remaining <= child.label.length()) {
+                return child.label.startsWith(prefix.substring(i)) ? child.top : List.of();
+            }
+            if (!prefix.startsWith(child.label, i)) {
+                return List.of();
+            }
+            i += child.label.length();
+            node = child;
+        }
+        return node.top;
+    }
+
+    private void recompute(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            List<Entry> candidates = new ArrayList<>();
+            if (node.terminals != null) {
+                candidates.addAll(node.terminals);
+            }
+            for (Node child : node.children.values()) {
+                candidates.addAll(child.top);
+            }
+            candidates.sort(RANKING);
+
+            List<Entry> top = new ArrayList<>(Math.min(TOP_K, candidates.size()));
+            Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Entry candidate : candidates) {
+                if (top.size() == TOP_K) {
+                    break;
+                }
+                if (seen.add(candidate)) {
+                    top.add(candidate);
+                }
+            }
+            node.top = List.copyOf(top);
+        }
+    }
+
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static List<String> keysFor(String normalized) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(normalized);
+        int index = normalized.indexOf(' ');
+        while (index >= 0 && keys.size() < MAX_KEYS_PER_ENTRY) {
+            keys.add(normalized.substring(index + 1));
+            index = normalized.indexOf(' ', index + 1);
+        }
+        return List.copyOf(keys);
+    }
+
+    /**
+     * Radix tree node. The label is the part of the key on the edge leading to this node.
+     */
+    private static final class Node {
+        private String label;
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private Set<Entry> terminals;
+        private List<Entry> top = List.of();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * A distinct suggestion (title or author) shared by one or more books.
+     */
+    private static final class Entry {
+        private final BookSuggestion.Type type;
+        private final String text;
+        private final String normalized;
+        private final List<String> keys;
+        private final TreeSet<Long> bookIds = new TreeSet<>();
+        private long score;
+
+        private Entry(BookSuggestion.Type type, String text, String normalized) {
+            this.type = type;
+            this.text = text;
+            this.normalized = normalized;
+            this.keys = keysFor(normalized);
+        }
+
+        private String mapKey() {
+            return type.name() + ':' + normalized;
+        }
+    }
+
+    /**
+     * The suggestions a book contributes to, together with its popularity weight.
+     */
+    private static final class IndexedBook {
+        private final Entry titleEntry;
+        private final Entry authorEntry;
+        private long weight;
+
+        private IndexedBook(Entry titleEntry, Entry authorEntry, long weight) {
+            this.titleEntry = titleEntry;
+            this.authorEntry = authorEntry;
+            this.weight = weight;
+        }
+
+        private List<Entry> entries() {
+            List<Entry> result = new ArrayList<>(2);
+            if (titleEntry != null) {
+                result.add(titleEntry);
+            }
+            if (authorEntry != null) {
+                result.add(authorEntry);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.mdanyarov.weblibrary.security;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a controller method parameter of type {@link com.mdanyarov.weblibrary.entity.User}
+ * that should receive the authenticated user, or null for anonymous requests.
+ *
+ * @see CurrentUserArgumentResolver
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,115 @@
+package com.mdanyarov.weblibrary.security;
+
+import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Resolves {@link CurrentUser} parameters without a database lookup per request.
+ * <p>
+ * The user is taken from the session, where a snapshot (without the password hash) is kept along
+ * with the user's updated_at. On each request the snapshot is compared against the updated_at of
+ * the user in the authentication user cache of {@link CustomUserDetailsService}, and rebuilt from
+ * that user when they differ. The cache entry is evicted on every local or polled change and
+ * expires after cache.users.ttlSeconds, so a change is seen at once on this node and within the
+ * TTL even after a restart or a missed invalidation; the database is read at most once per TTL.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String SESSION_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".SNAPSHOT";
+
+    private final CustomUserDetailsService userDetailsService;
+    private final UserService userService;
+
+    @Autowired
+    public CurrentUserArgumentResolver(CustomUserDetailsService userDetailsService, @Lazy UserService userService) {
+        this.userDetailsService = userDetailsService;
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && User.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) throws Exception {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+
+        User user = findUser(authentication);
+        if (user == null) {
+            return null;
+        }
+
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        HttpSession session = request != null ? request.getSession(false) : null;
+        if (session != null && session.getAttribute(SESSION_ATTRIBUTE) instanceof Snapshot snapshot
+                && snapshot.isCurrent(user)) {
+            return new User(snapshot.user());
+        }
+
+        User snapshotUser = new User(user);
+        snapshotUser.setPassword(null);
+        if (session != null) {
+            session.setAttribute(SESSION_ATTRIBUTE, new Snapshot(snapshotUser, user.getUpdatedAt()));
+        }
+        return new User(snapshotUser);
+    }
+
+    /**
+     * Finds the authenticated user in the user cache. A user renamed since login is no longer
+     * cached under the login name and is loaded by the ID of the principal instead.
+     */
+    private User findUser(Authentication authentication) throws Exception {
+        Optional<User> cached = userDetailsService.findUser(authentication.getName());
+        if (!(authentication.getPrincipal() instanceof CustomUserDetailsService.CustomUserPrincipal principal)) {
+            return cached.orElse(null);
+        }
+
+        Long userId = principal.user().getId();
+        if (cached.isPresent() && cached.get().getId().equals(userId)) {
+            return cached.get();
+        }
+        return userService.findById(userId).orElse(null);
+    }
+
+    /**
+     * Session-scoped copy of the current user and the updated_at it was built from.
+     */
+    private record Snapshot(User user, LocalDateTime updatedAt) {
+
+        /**
+         * Checks the snapshot against the current user. updated_at has one-second precision, so the
+         * role and status are compared too; a second change within that second cannot keep them stale.
+         */
+        boolean isCurrent(User current) {
+            return user.getId().equals(current.getId())
+                    && Objects.equals(updatedAt, current.getUpdatedAt())
+                    && user.getRole() == current.getRole()
+                    && user.getStatus() == current.getStatus();
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.mdanyarov.weblibrary.security;
 
+import com.mdanyarov.weblibrary.cache.BoundedCache;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.event.UserChangedEvent;
 import com.mdanyarov.weblibrary.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,19 +16,26 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Locale;
 import java.util.Optional;
 
 /**
  * Custom UserDetailsService for Spring Security integration.
+ * <p>
+ * Loaded users are cached for a short time, and so are unknown usernames, so neither repeat
+ * logins nor repeated guesses of missing accounts reach the database. Entries are evicted as
+ * soon as a user is registered or changed.
  */
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserService userService;
+    private final BoundedCache<String, Optional<User>> userCache;
 
     @Autowired
-    public CustomUserDetailsService(@Lazy UserService userService) {
+    public CustomUserDetailsService(@Lazy UserService userService, BoundedCache<String, Optional<User>> userCache) {
         this.userService = userService;
+        this.userCache = userCache;
     }
 
     /**
@@ -38,13 +48,14 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         try {
-            Optional<User> userOptional = userService.findByUsername(username);
+            Optional<User> userOptional = findUser(username);
 
             if (userOptional.isEmpty()) {
                 throw new UsernameNotFoundException("User not found " + username);
             }
 
-            User user = userOptional.get();
+            // The cached user is shared; the principal gets its own copy
+            User user = new User(userOptional.get());
 
             if (user.getStatus() == User.UserStatus.BLOCKED) {
                 throw new UsernameNotFoundException("User account is blocked: " + username);
@@ -56,6 +67,32 @@ public class CustomUserDetailsService implements UserDetailsService {
         }
     }
 
+    /**
+     * Finds a user by username through the user cache.
+     *
+     * @param username The username
+     * @return The cached user, shared with other callers and not to be modified, or empty if there is no such user
+     * @throws Exception if there is an error loading the user
+     */
+    public Optional<User> findUser(String username) throws Exception {
+        return userCache.get(cacheKey(username), key -> userService.findByUsername(username));
+    }
+
+    /**
+     * Evicts the changed user, and a cached miss for its username, so the change applies to the next login.
+     */
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        userCache.invalidateIf((username, user) -> user.isPresent() && user.get().getId().equals(event.userId()));
+        if (event.username() != null) {
+            userCache.invalidate(cacheKey(event.username()));
+        }
+    }
+
+    private static String cacheKey(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+
     /**
      * Custom UserDetails implementation
      */
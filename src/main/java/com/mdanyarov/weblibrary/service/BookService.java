@@ -1,5 +1,8 @@
 package com.mdanyarov.weblibrary.service;
 
+import com.mdanyarov.weblibrary.dto.CatalogFilter;
+import com.mdanyarov.weblibrary.dto.FacetedPageResult;
+import com.mdanyarov.weblibrary.dto.PageResult;
 import com.mdanyarov.weblibrary.entity.Book;
 
 import java.util.List;
@@ -71,6 +74,15 @@ public interface BookService {
      */
     List<Book> findAvailable() throws Exception;
 
+    /**
+     * Counts the available copies of a book.
+     *
+     * @param bookId Book ID
+     * @return Number of available copies
+     * @throws Exception if there is an error counting copies
+     */
+    int countAvailableCopies(Long bookId) throws Exception;
+
     /**
      * Finds books with pagination.
      *
@@ -98,6 +110,29 @@ public interface BookService {
      */
     List<Book> search(String query) throws Exception;
 
+    /**
+     * Searches books using multiple criteria with pagination.
+     * Only the requested page is loaded from the database.
+     *
+     * @param query Search query (title, author, or ISBN)
+     * @param page Page number (0-based)
+     * @param size Page size
+     * @return The requested page of matching books together with the total match count
+     * @throws Exception if there is an error searching books
+     */
+    PageResult<Book> search(String query, int page, int size) throws Exception;
+
+    /**
+     * Searches the catalog with a text query and facet filters (genres, publication years, availability).
+     *
+     * @param filter The text query and the selected facets
+     * @param page Page number (0-based)
+     * @param size Page size
+     * @return The requested page of matching books with the total and the facet counts
+     * @throws Exception if there is an error searching books
+     */
+    FacetedPageResult<Book> search(CatalogFilter filter, int page, int size) throws Exception;
+
     /**
      * Creates a new book.
      *
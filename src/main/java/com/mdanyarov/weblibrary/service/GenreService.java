@@ -0,0 +1,100 @@
+package com.mdanyarov.weblibrary.service;
+
+import com.mdanyarov.weblibrary.entity.Genre;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service interface for genre operations.
+ */
+public interface GenreService {
+
+    /**
+     * Reloads all genres from the database, e.g. after another application node changed them.
+     */
+    void reload();
+
+    /**
+     * Finds all genres.
+     *
+     * @return List of all genres ordered by name
+     * @throws Exception if there is an error finding genres
+     */
+    List<Genre> findAll() throws Exception;
+
+    /**
+     * Finds a genre by ID.
+     *
+     * @param id Genre ID
+     * @return Optional containing the genre if found, empty otherwise
+     * @throws Exception if there is an error finding the genre
+     */
+    Optional<Genre> findById(Long id) throws Exception;
+
+    /**
+     * Finds a genre by name, ignoring case.
+     *
+     * @param name Genre name
+     * @return Optional containing the genre if found, empty otherwise
+     * @throws Exception if there is an error finding the genre
+     */
+    Optional<Genre> findByName(String name) throws Exception;
+
+    /**
+     * Creates a new genre.
+     *
+     * @param name Genre name
+     * @return The created genre
+     * @throws Exception if there is an error creating the genre
+     */
+    Genre createGenre(String name) throws Exception;
+
+    /**
+     * Renames a genre.
+     *
+     * @param id Genre ID
+     * @param name New genre name
+     * @return true if the genre was renamed, false otherwise
+     * @throws Exception if there is an error renaming the genre
+     */
+    boolean renameGenre(Long id, String name) throws Exception;
+
+    /**
+     * Deletes a genre and its book assignments.
+     *
+     * @param id Genre ID
+     * @return true if the genre was deleted, false otherwise
+     * @throws Exception if there is an error deleting the genre
+     */
+    boolean deleteGenre(Long id) throws Exception;
+
+    /**
+     * Finds the genres of a book.
+     *
+     * @param bookId Book ID
+     * @return List of genres assigned to the book
+     * @throws Exception if there is an error finding genres
+     */
+    List<Genre> findByBookId(Long bookId) throws Exception;
+
+    /**
+     * Assigns a genre to a book.
+     *
+     * @param bookId Book ID
+     * @param genreId Genre ID
+     * @return true if the genre is assigned to the book afterwards, false otherwise
+     * @throws Exception if there is an error assigning the genre
+     */
+    boolean addGenreToBook(Long bookId, Long genreId) throws Exception;
+
+    /**
+     * Removes a genre from a book.
+     *
+     * @param bookId Book ID
+     * @param genreId Genre ID
+     * @return true if the genre was removed, false if it was not assigned
+     * @throws Exception if there is an error removing the genre
+     */
+    boolean removeGenreFromBook(Long bookId, Long genreId) throws Exception;
+}
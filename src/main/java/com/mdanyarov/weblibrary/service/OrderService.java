@@ -1,8 +1,12 @@
 package com.mdanyarov.weblibrary.service;
 
+import com.mdanyarov.weblibrary.dto.BookOrderRequest;
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
+import com.mdanyarov.weblibrary.dto.WaitlistPosition;
 import com.mdanyarov.weblibrary.entity.Order;
 import com.mdanyarov.weblibrary.entity.User;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -62,6 +66,43 @@ public interface OrderService {
      */
     List<Order> findOverdue() throws Exception;
 
+    /**
+     * Claims the oldest unclaimed pending orders for a librarian, so other librarians do not work on them
+     * until the claim expires. The unexpired claims of the librarian are extended as well.
+     *
+     * @param librarianId Librarian ID
+     * @param count The number of orders to claim
+     * @return The number of newly claimed orders
+     * @throws Exception if there is an error claiming the orders
+     */
+    int claimPendingOrders(Long librarianId, int count) throws Exception;
+
+    /**
+     * Releases the claims of a librarian on pending orders, making them available to other librarians.
+     *
+     * @param librarianId Librarian ID
+     * @return The number of released orders
+     * @throws Exception if there is an error releasing the orders
+     */
+    int releaseClaimedOrders(Long librarianId) throws Exception;
+
+    /**
+     * Finds the pending orders claimed by a librarian.
+     *
+     * @param librarianId Librarian ID
+     * @return List of claimed orders, oldest first
+     * @throws Exception if there is an error finding orders
+     */
+    List<Order> findClaimedOrders(Long librarianId) throws Exception;
+
+    /**
+     * Counts the pending orders not claimed by any librarian.
+     *
+     * @return The number of unclaimed pending orders
+     * @throws Exception if there is an error counting orders
+     */
+    int countUnclaimedPendingOrders() throws Exception;
+
     /**
      * Creates a new book order.
      *
@@ -74,6 +115,28 @@ public interface OrderService {
      */
     Order createOrder(Long userId, Long bookCopyId, Order.OrderType orderType, String notes) throws Exception;
 
+    /**
+     * Creates a new order for any available copy of a book.
+     *
+     * @param userId User ID requesting the book
+     * @param bookId Book ID
+     * @param orderType Order type (HOME or READING_ROOM)
+     * @param notes Optional notes
+     * @return The created order
+     * @throws Exception if there is an error creating the order
+     */
+    Order createOrderForBook(Long userId, Long bookId, Order.OrderType orderType, String notes) throws Exception;
+
+    /**
+     * Creates orders for several book requests in one transaction. A request that cannot be
+     * fulfilled fails on its own without affecting the others.
+     *
+     * @param requests The requests
+     * @return The outcome of each request, in request order, with the created order's ID on success
+     * @throws Exception if there is an error creating the orders, in which case none are created
+     */
+    List<OrderActionResult> createOrdersForBooks(List<BookOrderRequest> requests) throws Exception;
+
     /**
      * Approves an order.
      *
@@ -83,7 +146,7 @@ public interface OrderService {
      * @return true if the approval was successful, false otherwise
      * @throws Exception if there is an error approving the order
      */
-    boolean approveOrder(Long orderId, User librarian, java.time.LocalDateTime returnDate) throws Exception;
+    boolean approveOrder(Long orderId, User librarian, LocalDateTime returnDate) throws Exception;
 
     /**
      * Rejects an order.
@@ -116,10 +179,99 @@ public interface OrderService {
     boolean cancelOrder(Long orderId, Long userId) throws Exception;
 
     /**
-     * Updates an order.
+     * Expires pending orders placed before the given time and releases their copies.
+     * Orders locked by running transactions are skipped.
+     *
+     * @param orderedBefore The order date limit
+     * @param limit The maximum number of orders to expire
+     * @return The number of expired orders, each of which released one copy
+     * @throws Exception if there is an error expiring the orders
+     */
+    int expireStalePendingOrders(LocalDateTime orderedBefore, int limit) throws Exception;
+
+    /**
+     * Adds a reader to the waitlist of a book that has no available copies. When a copy becomes
+     * available, it is reserved for the first reader on the waitlist with a pending order.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @param orderType Type of the order to place (HOME or READING_ROOM)
+     * @param notes Optional notes for the order
+     * @return The 1-based position of the reader on the waitlist
+     * @throws Exception if there is an error adding the reader
+     */
+    int joinWaitlist(Long userId, Long bookId, Order.OrderType orderType, String notes) throws Exception;
+
+    /**
+     * Removes a reader from the waitlist of a book.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @return true if the reader was on the waitlist, false otherwise
+     * @throws Exception if there is an error removing the reader
+     */
+    boolean leaveWaitlist(Long userId, Long bookId) throws Exception;
+
+    /**
+     * Returns the position of a reader on the waitlist of a book.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @return The 1-based position, or 0 if the reader is not on the waitlist
+     */
+    int getWaitlistPosition(Long userId, Long bookId);
+
+    /**
+     * Returns the number of readers on the waitlist of a book.
+     *
+     * @param bookId Book ID
+     * @return The number of waiting readers
+     */
+    int getWaitlistSize(Long bookId);
+
+    /**
+     * Returns the places of a reader on the waitlists of all books the reader waits for.
+     *
+     * @param userId User ID
+     * @return The places, in book ID order
+     * @throws Exception if there is an error loading the books
+     */
+    List<WaitlistPosition> getWaitlistPositions(Long userId) throws Exception;
+
+    /**
+     * Approves several pending orders.
+     *
+     * @param orderIds Order IDs
+     * @param librarian Librarian approving the orders
+     * @param returnDate Expected return date
+     * @return The result for each order, in the order of the IDs
+     */
+    List<OrderActionResult> approveOrders(List<Long> orderIds, User librarian, LocalDateTime returnDate);
+
+    /**
+     * Rejects several pending orders.
+     *
+     * @param orderIds Order IDs
+     * @param librarian Librarian rejecting the orders
+     * @param notes Reason for rejection
+     * @return The result for each order, in the order of the IDs
+     */
+    List<OrderActionResult> rejectOrders(List<Long> orderIds, User librarian, String notes);
+
+    /**
+     * Marks several approved orders as returned.
+     *
+     * @param orderIds Order IDs
+     * @return The result for each order, in the order of the IDs
+     */
+    List<OrderActionResult> returnOrders(List<Long> orderIds);
+
+    /**
+     * Updates an order. The update is rejected if the order was changed since it was read.
      *
-     * @param order Order with updated information
+     * @param order Order with updated information, carrying the version it was read with
      * @return true if the update was successful, false otherwise
+     * @throws IllegalArgumentException if the order was changed by someone else in the meantime
      * @throws Exception if there is an error updating the order
      */
     boolean updateOrder(Order order) throws Exception;
@@ -1,18 +1,36 @@
 package com.mdanyarov.weblibrary.service.impl;
 
+import com.mdanyarov.weblibrary.cache.BoundedCache;
+import com.mdanyarov.weblibrary.dao.BookCopyDao;
 import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.CacheInvalidationDao;
 import com.mdanyarov.weblibrary.dao.ConnectionPool;
 import com.mdanyarov.weblibrary.dao.TransactionManager;
+import com.mdanyarov.weblibrary.dto.CatalogFilter;
+import com.mdanyarov.weblibrary.dto.FacetCounts;
+import com.mdanyarov.weblibrary.dto.FacetedPageResult;
+import com.mdanyarov.weblibrary.dto.PageResult;
 import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.search.CatalogCounts;
+import com.mdanyarov.weblibrary.search.FacetIndex;
+import com.mdanyarov.weblibrary.search.FuzzyIndex;
+import com.mdanyarov.weblibrary.search.IsbnIndex;
 import com.mdanyarov.weblibrary.service.BookService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.sql.Connection;
-import java.util.List;
-import java.util.Optional;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -24,16 +42,45 @@ public class BookServiceImpl implements BookService {
     private static final Logger logger = LoggerFactory.getLogger(BookServiceImpl.class);
 
     private final BookDao bookDao;
+    private final BookCopyDao bookCopyDao;
+    private final CacheInvalidationDao cacheInvalidationDao;
     private final ConnectionPool connectionPool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final FuzzyIndex fuzzyIndex;
+    private final FacetIndex facetIndex;
+    private final BoundedCache<Long, Book> bookCache;
+    private final CatalogCounts catalogCounts;
+    private final IsbnIndex isbnIndex;
+    private final int fuzzyMinResults;
+    private final int fuzzyMaxResults;
+    private final int searchCountLimit;
 
     @Autowired
-    public BookServiceImpl(BookDao bookDao, ConnectionPool connectionPool) {
+    public BookServiceImpl(BookDao bookDao, BookCopyDao bookCopyDao, CacheInvalidationDao cacheInvalidationDao,
+                           ConnectionPool connectionPool, ApplicationEventPublisher eventPublisher,
+                           FuzzyIndex fuzzyIndex, FacetIndex facetIndex, BoundedCache<Long, Book> bookCache,
+                           CatalogCounts catalogCounts, IsbnIndex isbnIndex,
+                           @Value("${search.fuzzy.minResults:3}") int fuzzyMinResults,
+                           @Value("${search.fuzzy.maxResults:50}") int fuzzyMaxResults,
+                           @Value("${search.count.limit:1000}") int searchCountLimit) {
         this.bookDao = bookDao;
+        this.bookCopyDao = bookCopyDao;
+        this.cacheInvalidationDao = cacheInvalidationDao;
         this.connectionPool = connectionPool;
+        this.eventPublisher = eventPublisher;
+        this.fuzzyIndex = fuzzyIndex;
+        this.facetIndex = facetIndex;
+        this.bookCache = bookCache;
+        this.catalogCounts = catalogCounts;
+        this.isbnIndex = isbnIndex;
+        this.fuzzyMinResults = fuzzyMinResults;
+        this.fuzzyMaxResults = fuzzyMaxResults;
+        this.searchCountLimit = searchCountLimit;
     }
 
     /**
      * Finds a book by ID.
+     * Reads through the book cache; the returned book may be shared and must not be modified.
      *
      * @param id Book ID
      * @return Optional containing the book if found, empty otherwise
@@ -43,10 +90,12 @@ public class BookServiceImpl implements BookService {
     public Optional<Book> findById(Long id) throws Exception {
         logger.debug("Finding book by ID: {}", id);
 
-        try (Connection connection = connectionPool.getConnection()) {
-            Book book = bookDao.findById(id, connection);
-            return Optional.ofNullable(book);
-        }
+        Book book = bookCache.get(id, bookId -> {
+            try (Connection connection = connectionPool.getConnection()) {
+                return bookDao.findById(bookId, connection);
+            }
+        });
+        return Optional.ofNullable(book);
     }
 
     /**
@@ -66,6 +115,7 @@ public class BookServiceImpl implements BookService {
 
     /**
      * Searches books by title.
+     * Falls back to typo-tolerant matching when the exact search finds only a few books.
      *
      * @param title Title to search for (partial match)
      * @return List of matching books
@@ -80,12 +130,15 @@ public class BookServiceImpl implements BookService {
         }
 
         try (Connection connection = connectionPool.getConnection()) {
-            return bookDao.findByTitle(title.trim(), connection);
+            List<Book> books = bookDao.findByTitle(title.trim(), connection);
+            return withFuzzyMatches(books, title, EnumSet.of(FuzzyIndex.Field.TITLE), connection);
         }
     }
 
     /**
      * Searches books by author.
+     * Falls back to typo-tolerant matching when the exact search finds only a few books,
+     * so "Dostoyevsky" or "Достоевский" still find "Dostoevsky".
      *
      * @param author Author to search for (partial match)
      * @return List of matching books
@@ -100,7 +153,8 @@ public class BookServiceImpl implements BookService {
         }
 
         try (Connection connection = connectionPool.getConnection()) {
-            return bookDao.findByAuthor(author.trim(), connection);
+            List<Book> books = bookDao.findByAuthor(author.trim(), connection);
+            return withFuzzyMatches(books, author, EnumSet.of(FuzzyIndex.Field.AUTHOR), connection);
         }
     }
 
@@ -179,17 +233,14 @@ public class BookServiceImpl implements BookService {
 
     /**
      * Gets the total count of books.
+     * The count is maintained in memory (see {@link CatalogCounts}), so this does not query the database.
      *
      * @return Total number of books
      * @throws Exception if there is an error counting books
      */
     @Override
     public int getTotalCount() throws Exception {
-        logger.debug("Getting total book count");
-
-        try (Connection connection = connectionPool.getConnection()) {
-            return bookDao.countAll(connection);
-        }
+        return Math.toIntExact(catalogCounts.getBookCount());
     }
 
     /**
@@ -224,6 +275,193 @@ public class BookServiceImpl implements BookService {
         }
     }
 
+    /**
+     * Searches books using multiple criteria with pagination.
+     * Only the requested page is loaded from the database. Matches are only counted up to
+     * search.count.limit, so the total of a broad query is a lower bound (see {@link PageResult#isTotalExact()}).
+     * When the exact search finds only a few books, typo-tolerant matches are appended and the
+     * (small) combined list is paged in memory.
+     *
+     * @param query Search query (title, author, or ISBN)
+     * @param page Page number (0-based)
+     * @param size Page size
+     * @return The requested page of matching books together with the total match count
+     * @throws Exception if there is an error searching books
+     */
+    @Override
+    public PageResult<Book> search(String query, int page, int size) throws Exception {
+        logger.debug("Searching books with query: {}, page={}, size={}", query, page, size);
+
+        if (page < 0) page = 0;
+        if (size <= 0) size = 10;
+
+        if (query == null || query.trim().isEmpty()) {
+            List<Book> books = findWithPagination(page, size);
+            return new PageResult<>(books, page, size, getTotalCount(), true);
+        }
+
+        String trimmedQuery = query.trim();
+        int offset = page * size;
+
+        try (Connection connection = connectionPool.getConnection()) {
+            int total = bookDao.countSearch(trimmedQuery, searchCountLimit, connection);
+            boolean totalExact = total < searchCountLimit;
+            if (total < fuzzyMinResults) {
+                List<Book> exact = total > 0
+                        ? bookDao.searchWithPagination(trimmedQuery, total, 0, connection)
+                        : List.of();
+                List<Book> books = withFuzzyMatches(exact, trimmedQuery, EnumSet.allOf(FuzzyIndex.Field.class), connection);
+                List<Book> pageContent = offset >= books.size()
+                        ? List.of()
+                        : books.subList(offset, Math.min(offset + size, books.size()));
+                return new PageResult<>(pageContent, page, size, books.size(), true);
+            }
+            if (totalExact && offset >= total) {
+                return new PageResult<>(List.of(), page, size, total, true);
+            }
+
+            List<Book> books = bookDao.searchWithPagination(trimmedQuery, size, offset, connection);
+            long knownTotal = totalExact ? total : Math.max(total, offset + books.size());
+            return new PageResult<>(books, page, size, knownTotal, totalExact);
+        }
+    }
+
+    /**
+     * Searches the catalog with a text query and facet filters (genres, publication years, availability).
+     * The text query selects candidate IDs in the database; facets, counts and paging are evaluated
+     * by the in-memory facet index, and only the books on the requested page are loaded.
+     * At most search.count.limit text matches are taken, the first ones in title order, so the
+     * total and the facet counts of a broad query are lower bounds (see {@link PageResult#isTotalExact()}).
+     *
+     * @param filter The text query and the selected facets
+     * @param page Page number (0-based)
+     * @param size Page size
+     * @return The requested page of matching books with the total and the facet counts
+     * @throws Exception if there is an error searching books
+     */
+    @Override
+    public FacetedPageResult<Book> search(CatalogFilter filter, int page, int size) throws Exception {
+        logger.debug("Searching catalog: query={}, genres={}, years={}-{}, availableOnly={}, page={}, size={}",
+                filter.getQuery(), filter.getGenreIds(), filter.getYearFrom(), filter.getYearTo(),
+                filter.isAvailableOnly(), page, size);
+
+        if (page < 0) page = 0;
+        if (size <= 0) size = 10;
+
+        if (!filter.hasQuery() && !filter.hasFacets()) {
+            // Plain browsing: the page comes from the database, the index only provides the counts
+            FacetCounts counts = facetIndex.search(filter, null, 0, 0).counts();
+            try (Connection connection = connectionPool.getConnection()) {
+                List<Book> books = bookDao.findWithPagination(size, page * size, connection);
+                setAvailableCopiesCounts(books, connection);
+                return new FacetedPageResult<>(books, page, size, getTotalCount(), true, counts);
+            }
+        }
+
+        try (Connection connection = connectionPool.getConnection()) {
+            Collection<Long> textMatches = null;
+            boolean totalExact = true;
+            if (filter.hasQuery()) {
+                List<Long> exactIds = bookDao.searchIds(filter.getQuery().trim(), searchCountLimit, connection);
+                totalExact = exactIds.size() < searchCountLimit;
+                textMatches = withFuzzyMatchIds(exactIds, filter.getQuery().trim());
+            }
+            FacetIndex.Result result = facetIndex.search(filter, textMatches, page * size, size);
+            List<Book> books = findByIdsInOrder(result.bookIds(), connection);
+            setAvailableCopiesCounts(books, connection);
+            return new FacetedPageResult<>(books, page, size, result.total(), totalExact, result.counts());
+        }
+    }
+
+    /**
+     * Counts the available copies of a book.
+     * Reads the per-book availability counter, so no copies are loaded.
+     *
+     * @param bookId Book ID
+     * @return Number of available copies
+     * @throws Exception if there is an error counting copies
+     */
+    @Override
+    public int countAvailableCopies(Long bookId) throws Exception {
+        try (Connection connection = connectionPool.getConnection()) {
+            return bookCopyDao.countAvailableByBookId(bookId, connection);
+        }
+    }
+
+    /**
+     * Sets the available copy counts of freshly loaded books from the per-book availability counters.
+     */
+    private void setAvailableCopiesCounts(List<Book> books, Connection connection) throws SQLException {
+        Map<Long, Integer> counts = bookCopyDao.countAvailableByBookIds(books.stream().map(Book::getId).toList(), connection);
+        for (Book book : books) {
+            book.setAvailableCopiesCount(counts.getOrDefault(book.getId(), 0));
+        }
+    }
+
+    /**
+     * Adds typo-tolerant matches to the IDs found by the exact search when it found only a few books.
+     */
+    private Collection<Long> withFuzzyMatchIds(List<Long> exactIds, String query) {
+        Set<Long> ids = new LinkedHashSet<>(exactIds);
+        if (ids.size() < fuzzyMinResults) {
+            ids.addAll(fuzzyIndex.search(query, EnumSet.allOf(FuzzyIndex.Field.class), fuzzyMaxResults));
+        }
+        return ids;
+    }
+
+    /**
+     * Loads books by ID, keeping the order of the given IDs and skipping books that no longer exist.
+     */
+    private List<Book> findByIdsInOrder(List<Long> ids, Connection connection) throws SQLException {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Book> found = bookDao.findByIds(ids, connection).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> books = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Book book = found.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Appends approximate matches from the fuzzy index when the exact results are fewer than the threshold.
+     *
+     * @param exact Books found by the exact search
+     * @param query The original query
+     * @param fields Fields to match approximately
+     * @param connection Database connection to load the matched books with
+     * @return The exact results followed by the closest approximate matches
+     * @throws SQLException if there is an error loading the matched books
+     */
+    private List<Book> withFuzzyMatches(List<Book> exact, String query, Set<FuzzyIndex.Field> fields,
+                                        Connection connection) throws SQLException {
+        if (exact.size() >= fuzzyMinResults) {
+            return exact;
+        }
+
+        Set<Long> exactIds = exact.stream().map(Book::getId).collect(Collectors.toSet());
+        List<Long> fuzzyIds = fuzzyIndex.search(query, fields, fuzzyMaxResults + exact.size()).stream()
+                .filter(id -> !exactIds.contains(id))
+                .limit(Math.max(0, fuzzyMaxResults - exact.size()))
+                .toList();
+        if (fuzzyIds.isEmpty()) {
+            return exact;
+        }
+
+        logger.debug("Exact search for '{}' found {} books, adding {} approximate matches",
+                query, exact.size(), fuzzyIds.size());
+
+        // Keep the closest matches first, in the order returned by the index
+        List<Book> books = new ArrayList<>(exact);
+        books.addAll(findByIdsInOrder(fuzzyIds, connection));
+        return books;
+    }
+
     /**
      * Creates a new book.
      *
@@ -235,7 +473,7 @@ public class BookServiceImpl implements BookService {
     public Book createBook(Book book) throws Exception {
         logger.info("Creating new book: {}", book.getTitle());
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        Book createdBook = TransactionManager.executeTransaction(connectionPool, connection -> {
 
             if (book.getTitle() == null || book.getTitle().trim().isEmpty()) {
                 throw new IllegalArgumentException("Book title is required");
@@ -244,18 +482,34 @@ public class BookServiceImpl implements BookService {
                 throw new IllegalArgumentException("Book author is required");
             }
 
-            // Check if ISBN already exists (if provided)
-            if (book.getIsbn() != null && !book.getIsbn().trim().isEmpty()) {
+            // Check if ISBN already exists (if provided), skipping the lookup for ISBNs the filter rules out
+            boolean hasIsbn = book.getIsbn() != null && !book.getIsbn().trim().isEmpty();
+            if (hasIsbn && isbnIndex.mightExist(book.getIsbn())) {
                 List<Book> existingBooks = bookDao.findByIsbn(book.getIsbn(), connection);
                 if (!existingBooks.isEmpty()) {
                     throw new IllegalArgumentException("Book with ISBN " + book.getIsbn() + " already exists");
                 }
             }
 
-            Book savedBook = bookDao.save(book, connection);
+            Book savedBook;
+            try {
+                savedBook = bookDao.save(book, connection);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Inserted concurrently, or missed by the filter while it was rebuilt
+                if (hasIsbn) {
+                    throw new IllegalArgumentException("Book with ISBN " + book.getIsbn() + " already exists");
+                }
+                throw e;
+            }
+            isbnIndex.add(savedBook.getIsbn());
+            cacheInvalidationDao.append(CacheInvalidation.EntityType.BOOK, savedBook.getId(),
+                    BookChangedEvent.Type.CREATED.name(), connection);
             logger.info("Book created successfully with ID: {}", savedBook.getId());
             return savedBook;
         });
+
+        eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.CREATED, createdBook.getId(), createdBook));
+        return createdBook;
     }
 
     /**
@@ -269,7 +523,7 @@ public class BookServiceImpl implements BookService {
     public boolean updateBook(Book book) throws Exception {
         logger.info("Updating book: {}", book.getId());
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        Book previous = TransactionManager.executeTransaction(connectionPool, connection -> {
 
             if (book.getId() == null) {
                 throw new IllegalArgumentException("Book ID is required for update");
@@ -289,10 +543,23 @@ public class BookServiceImpl implements BookService {
 
             boolean result = bookDao.update(book, connection);
             if (result) {
+                isbnIndex.add(book.getIsbn());
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.BOOK, book.getId(),
+                        BookChangedEvent.Type.UPDATED.name(), connection);
                 logger.info("Book updated successfully: {}", book.getId());
             }
-            return result;
+            return result ? existingBook : null;
         });
+
+        bookCache.invalidate(book.getId());
+        boolean updated = previous != null;
+        if (updated) {
+            if (!sameIsbn(previous.getIsbn(), book.getIsbn())) {
+                isbnIndex.remove(previous.getIsbn());
+            }
+            eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.UPDATED, book.getId(), book));
+        }
+        return updated;
     }
 
     /**
@@ -306,7 +573,7 @@ public class BookServiceImpl implements BookService {
     public boolean deleteBook(Long id) throws Exception {
         logger.info("Deleting book: {}", id);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        Book deletedBook = TransactionManager.executeTransaction(connectionPool, connection -> {
             // Check if the book exists
             Book existingBook = bookDao.findById(id, connection);
             if (existingBook == null) {
@@ -317,9 +584,23 @@ public class BookServiceImpl implements BookService {
 
             boolean result = bookDao.delete(id, connection);
             if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.BOOK, id,
+                        BookChangedEvent.Type.DELETED.name(), connection);
                 logger.info("Book deleted successfully: {}", id);
             }
-            return result;
+            return result ? existingBook : null;
         });
+
+        bookCache.invalidate(id);
+        boolean deleted = deletedBook != null;
+        if (deleted) {
+            isbnIndex.remove(deletedBook.getIsbn());
+            eventPublisher.publishEvent(new BookChangedEvent(BookChangedEvent.Type.DELETED, id, null));
+        }
+        return deleted;
+    }
+
+    private static boolean sameIsbn(String first, String second) {
+        return first == null ? second == null : second != null && first.trim().equalsIgnoreCase(second.trim());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,361 @@
+package com.mdanyarov.weblibrary.service.impl;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.CacheInvalidationDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.GenreDao;
+import com.mdanyarov.weblibrary.dao.TransactionManager;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
+import com.mdanyarov.weblibrary.entity.Genre;
+import com.mdanyarov.weblibrary.event.BookGenresChangedEvent;
+import com.mdanyarov.weblibrary.event.GenreChangedEvent;
+import com.mdanyarov.weblibrary.service.GenreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of GenreService.
+ * <p>
+ * Genres are reference data that rarely change, so they are loaded once into an immutable
+ * snapshot and read from it without touching the database. Creating, renaming or deleting a
+ * genre builds a new snapshot after the transaction has been committed and swaps it in atomically,
+ * so readers always see a consistent list.
+ */
+@Service
+public class GenreServiceImpl implements GenreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GenreServiceImpl.class);
+
+    private final GenreDao genreDao;
+    private final BookDao bookDao;
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final ConnectionPool connectionPool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicReference<GenreSnapshot> snapshot = new AtomicReference<>();
+
+    @Autowired
+    public GenreServiceImpl(GenreDao genreDao, BookDao bookDao, CacheInvalidationDao cacheInvalidationDao,
+                            ConnectionPool connectionPool, ApplicationEventPublisher eventPublisher) {
+        this.genreDao = genreDao;
+        this.bookDao = bookDao;
+        this.cacheInvalidationDao = cacheInvalidationDao;
+        this.connectionPool = connectionPool;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Loads the genre snapshot once the application context is ready.
+     */
+    @Override
+    @EventListener(ContextRefreshedEvent.class)
+    public void reload() {
+        try (Connection connection = connectionPool.getConnection()) {
+            GenreSnapshot loaded = new GenreSnapshot(genreDao.findAll(connection));
+            snapshot.set(loaded);
+            logger.info("Genre snapshot loaded: {} genres", loaded.ordered.size());
+        } catch (Exception e) {
+            logger.error("Error loading genres", e);
+        }
+    }
+
+    /**
+     * Finds all genres.
+     *
+     * @return List of all genres ordered by name
+     * @throws Exception if there is an error finding genres
+     */
+    @Override
+    public List<Genre> findAll() throws Exception {
+        return currentSnapshot().ordered.stream()
+                .map(GenreServiceImpl::copyOf)
+                .toList();
+    }
+
+    /**
+     * Finds a genre by ID.
+     *
+     * @param id Genre ID
+     * @return Optional containing the genre if found, empty otherwise
+     * @throws Exception if there is an error finding the genre
+     */
+    @Override
+    public Optional<Genre> findById(Long id) throws Exception {
+        return Optional.ofNullable(currentSnapshot().byId.get(id)).map(GenreServiceImpl::copyOf);
+    }
+
+    /**
+     * Finds a genre by name, ignoring case.
+     *
+     * @param name Genre name
+     * @return Optional containing the genre if found, empty otherwise
+     * @throws Exception if there is an error finding the genre
+     */
+    @Override
+    public Optional<Genre> findByName(String name) throws Exception {
+        if (name == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(currentSnapshot().byName.get(nameKey(name))).map(GenreServiceImpl::copyOf);
+    }
+
+    /**
+     * Creates a new genre.
+     *
+     * @param name Genre name
+     * @return The created genre
+     * @throws Exception if there is an error creating the genre
+     */
+    @Override
+    public Genre createGenre(String name) throws Exception {
+        String genreName = requireName(name);
+        logger.info("Creating genre: {}", genreName);
+
+        Genre created = TransactionManager.executeTransaction(connectionPool, connection -> {
+            if (genreDao.findByName(genreName, connection).isPresent()) {
+                throw new IllegalArgumentException("Genre already exists: " + genreName);
+            }
+            Genre genre = new Genre();
+            genre.setName(genreName);
+            Genre saved = genreDao.save(genre, connection);
+            cacheInvalidationDao.append(CacheInvalidation.EntityType.GENRE, saved.getId(),
+                    GenreChangedEvent.Type.CREATED.name(), connection);
+            return saved;
+        });
+
+        Genre stored = copyOf(created);
+        updateSnapshot(genres -> {
+            genres.add(stored);
+            return genres;
+        });
+        eventPublisher.publishEvent(new GenreChangedEvent(GenreChangedEvent.Type.CREATED, created.getId()));
+        return created;
+    }
+
+    /**
+     * Renames a genre.
+     *
+     * @param id Genre ID
+     * @param name New genre name
+     * @return true if the genre was renamed, false otherwise
+     * @throws Exception if there is an error renaming the genre
+     */
+    @Override
+    public boolean renameGenre(Long id, String name) throws Exception {
+        String genreName = requireName(name);
+        logger.info("Renaming genre {} to {}", id, genreName);
+
+        boolean renamed = TransactionManager.executeTransaction(connectionPool, connection -> {
+            if (genreDao.findById(id, connection) == null) {
+                throw new IllegalArgumentException("Genre not found with ID: " + id);
+            }
+            Optional<Genre> sameName = genreDao.findByName(genreName, connection);
+            if (sameName.isPresent() && !sameName.get().getId().equals(id)) {
+                throw new IllegalArgumentException("Genre already exists: " + genreName);
+            }
+            boolean result = genreDao.update(new Genre(id, genreName), connection);
+            if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.GENRE, id,
+                        GenreChangedEvent.Type.RENAMED.name(), connection);
+            }
+            return result;
+        });
+
+        if (renamed) {
+            Genre stored = new Genre(id, genreName);
+            updateSnapshot(genres -> {
+                genres.removeIf(genre -> genre.getId().equals(id));
+                genres.add(stored);
+                return genres;
+            });
+            eventPublisher.publishEvent(new GenreChangedEvent(GenreChangedEvent.Type.RENAMED, id));
+        }
+        return renamed;
+    }
+
+    /**
+     * Deletes a genre and its book assignments.
+     *
+     * @param id Genre ID
+     * @return true if the genre was deleted, false otherwise
+     * @throws Exception if there is an error deleting the genre
+     */
+    @Override
+    public boolean deleteGenre(Long id) throws Exception {
+        logger.info("Deleting genre: {}", id);
+
+        boolean deleted = TransactionManager.executeTransaction(connectionPool, connection -> {
+            boolean result = genreDao.delete(id, connection);
+            if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.GENRE, id,
+                        GenreChangedEvent.Type.DELETED.name(), connection);
+            }
+            return result;
+        });
+
+        if (deleted) {
+            updateSnapshot(genres -> {
+                genres.removeIf(genre -> genre.getId().equals(id));
+                return genres;
+            });
+            eventPublisher.publishEvent(new GenreChangedEvent(GenreChangedEvent.Type.DELETED, id));
+        }
+        return deleted;
+    }
+
+    /**
+     * Finds the genres of a book.
+     *
+     * @param bookId Book ID
+     * @return List of genres assigned to the book
+     * @throws Exception if there is an error finding genres
+     */
+    @Override
+    public List<Genre> findByBookId(Long bookId) throws Exception {
+        try (Connection connection = connectionPool.getConnection()) {
+            return genreDao.findByBookId(bookId, connection);
+        }
+    }
+
+    /**
+     * Assigns a genre to a book.
+     *
+     * @param bookId Book ID
+     * @param genreId Genre ID
+     * @return true if the genre is assigned to the book afterwards, false otherwise
+     * @throws Exception if there is an error assigning the genre
+     */
+    @Override
+    public boolean addGenreToBook(Long bookId, Long genreId) throws Exception {
+        logger.info("Adding genre {} to book {}", genreId, bookId);
+
+        Set<Long> genreIds = TransactionManager.executeTransaction(connectionPool, connection -> {
+            if (bookDao.findById(bookId, connection) == null) {
+                throw new IllegalArgumentException("Book not found with ID: " + bookId);
+            }
+            if (!currentSnapshot().byId.containsKey(genreId)) {
+                throw new IllegalArgumentException("Genre not found with ID: " + genreId);
+            }
+
+            if (!genreDao.addGenreToBook(bookId, genreId, connection)) {
+                return null;
+            }
+            cacheInvalidationDao.append(CacheInvalidation.EntityType.BOOK_GENRES, bookId, "ADDED", connection);
+            return currentGenreIds(bookId, connection);
+        });
+
+        if (genreIds == null) {
+            return false;
+        }
+        eventPublisher.publishEvent(new BookGenresChangedEvent(bookId, genreIds));
+        return true;
+    }
+
+    /**
+     * Removes a genre from a book.
+     *
+     * @param bookId Book ID
+     * @param genreId Genre ID
+     * @return true if the genre was removed, false if it was not assigned
+     * @throws Exception if there is an error removing the genre
+     */
+    @Override
+    public boolean removeGenreFromBook(Long bookId, Long genreId) throws Exception {
+        logger.info("Removing genre {} from book {}", genreId, bookId);
+
+        Set<Long> genreIds = TransactionManager.executeTransaction(connectionPool, connection -> {
+            if (!genreDao.removeGenreFromBook(bookId, genreId, connection)) {
+                return null;
+            }
+            cacheInvalidationDao.append(CacheInvalidation.EntityType.BOOK_GENRES, bookId, "REMOVED", connection);
+            return currentGenreIds(bookId, connection);
+        });
+
+        if (genreIds == null) {
+            return false;
+        }
+        eventPublisher.publishEvent(new BookGenresChangedEvent(bookId, genreIds));
+        return true;
+    }
+
+    private Set<Long> currentGenreIds(Long bookId, Connection connection) throws SQLException {
+        return genreDao.findByBookId(bookId, connection).stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private GenreSnapshot currentSnapshot() throws SQLException {
+        GenreSnapshot current = snapshot.get();
+        if (current == null) {
+            // Not loaded yet (or the initial load failed); load it now
+            try (Connection connection = connectionPool.getConnection()) {
+                GenreSnapshot loaded = new GenreSnapshot(genreDao.findAll(connection));
+                current = snapshot.compareAndExchange(null, loaded);
+                if (current == null) {
+                    current = loaded;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Swaps in a new snapshot built by applying the change to a mutable copy of the current genres.
+     */
+    private void updateSnapshot(UnaryOperator<List<Genre>> change) throws SQLException {
+        currentSnapshot();
+        snapshot.updateAndGet(current -> new GenreSnapshot(change.apply(new ArrayList<>(current.ordered))));
+    }
+
+    private static String requireName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Genre name is required");
+        }
+        return name.trim();
+    }
+
+    private static String nameKey(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Genres handed out are copies, so callers cannot modify the shared snapshot.
+     */
+    private static Genre copyOf(Genre genre) {
+        return new Genre(genre.getId(), genre.getName());
+    }
+
+    /**
+     * Immutable view of all genres, indexed by ID and by case-insensitive name.
+     */
+    private static final class GenreSnapshot {
+        private final List<Genre> ordered;
+        private final Map<Long, Genre> byId;
+        private final Map<String, Genre> byName;
+
+        private GenreSnapshot(List<Genre> genres) {
+            List<Genre> sorted = new ArrayList<>(genres);
+            sorted.sort(Comparator.comparing(Genre::getName, String.CASE_INSENSITIVE_ORDER));
+            Map<Long, Genre> ids = new HashMap<>();
+            Map<String, Genre> names = new HashMap<>();
+            for (Genre genre : sorted) {
+                ids.put(genre.getId(), genre);
+                names.put(nameKey(genre.getName()), genre);
+            }
+            this.ordered = List.copyOf(sorted);
+            this.byId = Map.copyOf(ids);
+            this.byName = Map.copyOf(names);
+        }
+    }
+}
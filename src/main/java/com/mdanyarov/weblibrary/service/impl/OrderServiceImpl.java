@@ -1,19 +1,32 @@
 package com.mdanyarov.weblibrary.service.impl;
 
 import com.mdanyarov.weblibrary.dao.*;
+import com.mdanyarov.weblibrary.dto.BookOrderRequest;
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
+import com.mdanyarov.weblibrary.dto.WaitlistPosition;
+import com.mdanyarov.weblibrary.entity.Book;
 import com.mdanyarov.weblibrary.entity.BookCopy;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
 import com.mdanyarov.weblibrary.entity.Order;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.entity.WaitlistEntry;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import com.mdanyarov.weblibrary.order.Waitlist;
 import com.mdanyarov.weblibrary.service.OrderService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Implementation of OrderService.
@@ -23,17 +36,38 @@ public class OrderServiceImpl implements OrderService {
 
     private static final Logger logger = LoggerFactory.getLogger(OrderServiceImpl.class);
 
+    /** MySQL error code for duplicate keys. */
+    private static final int ER_DUP_ENTRY = 1062;
+
     private final OrderDao orderDao;
     public final UserDao userDao;
     private final BookCopyDao bookCopyDao;
+    private final BookDao bookDao;
+    private final WaitlistDao waitlistDao;
+    private final CacheInvalidationDao cacheInvalidationDao;
+    private final Waitlist waitlist;
     private final ConnectionPool connectionPool;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int bulkChunkSize;
+    private final long claimLeaseMinutes;
 
     @Autowired
-    public OrderServiceImpl(OrderDao orderDao, UserDao userDao, BookCopyDao bookCopyDao, ConnectionPool connectionPool) {
+    public OrderServiceImpl(OrderDao orderDao, UserDao userDao, BookCopyDao bookCopyDao, BookDao bookDao,
+                            WaitlistDao waitlistDao, CacheInvalidationDao cacheInvalidationDao, Waitlist waitlist, ConnectionPool connectionPool,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value("${orders.bulk.chunkSize:100}") int bulkChunkSize,
+                            @Value("${orders.claim.leaseMinutes:15}") long claimLeaseMinutes) {
         this.orderDao = orderDao;
         this.userDao = userDao;
         this.bookCopyDao = bookCopyDao;
+        this.bookDao = bookDao;
+        this.waitlistDao = waitlistDao;
+        this.cacheInvalidationDao = cacheInvalidationDao;
+        this.waitlist = waitlist;
         this.connectionPool = connectionPool;
+        this.eventPublisher = eventPublisher;
+        this.bulkChunkSize = bulkChunkSize;
+        this.claimLeaseMinutes = claimLeaseMinutes;
     }
 
     /**
@@ -119,6 +153,76 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    /**
+     * Claims the oldest unclaimed pending orders for a librarian.
+     * Orders locked by running transactions are skipped, so librarians claiming at the same time
+     * get different orders instead of waiting for each other.
+     *
+     * @param librarianId Librarian ID
+     * @param count The number of orders to claim, at most the bulk chunk size
+     * @return The number of newly claimed orders
+     * @throws Exception if there is an error claiming the orders
+     */
+    @Override
+    public int claimPendingOrders(Long librarianId, int count) throws Exception {
+        if (count <= 0) {
+            throw new IllegalArgumentException("The number of orders to claim must be positive");
+        }
+        int limit = Math.min(count, bulkChunkSize);
+
+        int claimed = TransactionManager.executeTransaction(connectionPool, connection -> {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime claimExpiresAt = now.plusMinutes(claimLeaseMinutes);
+            orderDao.renewClaims(librarianId, now, claimExpiresAt, connection);
+            List<Long> orderIds = orderDao.lockClaimable(now, limit, connection);
+            return orderDao.claim(orderIds, librarianId, now, claimExpiresAt, connection).size();
+        });
+
+        logger.info("Librarian: {} claimed {} pending orders", librarianId, claimed);
+        return claimed;
+    }
+
+    /**
+     * Releases the claims of a librarian on pending orders.
+     *
+     * @param librarianId Librarian ID
+     * @return The number of released orders
+     * @throws Exception if there is an error releasing the orders
+     */
+    @Override
+    public int releaseClaimedOrders(Long librarianId) throws Exception {
+        try (Connection connection = connectionPool.getConnection()) {
+            return orderDao.releaseClaims(librarianId, connection);
+        }
+    }
+
+    /**
+     * Finds the pending orders claimed by a librarian.
+     *
+     * @param librarianId Librarian ID
+     * @return List of claimed orders, oldest first
+     * @throws Exception if there is an error finding orders
+     */
+    @Override
+    public List<Order> findClaimedOrders(Long librarianId) throws Exception {
+        try (Connection connection = connectionPool.getConnection()) {
+            return orderDao.findClaimedBy(librarianId, LocalDateTime.now(), connection);
+        }
+    }
+
+    /**
+     * Counts the pending orders not claimed by any librarian.
+     *
+     * @return The number of unclaimed pending orders
+     * @throws Exception if there is an error counting orders
+     */
+    @Override
+    public int countUnclaimedPendingOrders() throws Exception {
+        try (Connection connection = connectionPool.getConnection()) {
+            return orderDao.countClaimable(LocalDateTime.now(), connection);
+        }
+    }
+
     /**
      * Creates a new book order.
      *
@@ -133,7 +237,7 @@ public class OrderServiceImpl implements OrderService {
     public Order createOrder(Long userId, Long bookCopyId, Order.OrderType orderType, String notes) throws Exception {
         logger.info("Creating order for user: {} and book copy: {}", userId, bookCopyId);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        Order createdOrder = TransactionManager.executeTransaction(connectionPool, connection -> {
             User user = userDao.findById(userId, connection);
             if (user == null) {
                 throw new IllegalArgumentException("User not found: " + userId);
@@ -148,10 +252,6 @@ public class OrderServiceImpl implements OrderService {
                 throw new IllegalArgumentException("Book copy not found: " + bookCopyId);
             }
 
-            if (bookCopy.getStatus() != BookCopy.CopyStatus.AVAILABLE) {
-                throw new IllegalArgumentException("Book copy is not available: " + bookCopyId);
-            }
-
             List<Order> userActiveOrders = orderDao.findActiveByUserId(userId, connection);
             boolean hasActiveOrderForThisBook = userActiveOrders.stream()
                     .anyMatch(order -> order.getBookCopy().getId().equals(bookCopyId));
@@ -160,6 +260,12 @@ public class OrderServiceImpl implements OrderService {
                 throw new IllegalArgumentException("User already has an active order for this book: " + bookCopyId);
             }
 
+            // Checks and reserves in one statement, so concurrent orders cannot both take the copy
+            if (!bookCopyDao.reserveIfAvailable(bookCopyId, connection)) {
+                throw new IllegalArgumentException("Book copy is not available: " + bookCopyId);
+            }
+            bookCopy.setStatus(BookCopy.CopyStatus.RESERVED);
+
             Order order = new Order();
             order.setUser(user);
             order.setBookCopy(bookCopy);
@@ -169,181 +275,664 @@ public class OrderServiceImpl implements OrderService {
             order.setNotes(notes);
 
             Order savedOrder = orderDao.save(order, connection);
-
-            bookCopyDao.updateStatus(bookCopyId, BookCopy.CopyStatus.RESERVED, connection);
+            logOrderChange(savedOrder, connection);
 
             logger.info("Order created successfully with ID: {}", savedOrder.getId());
             return savedOrder;
         });
+
+        publishOrderChanged(createdOrder);
+        return createdOrder;
+    }
+
+    /**
+     * Creates a new order for any available copy of a book.
+     * The copy is chosen and reserved atomically, so concurrent requests for the same book each get a different copy.
+     *
+     * @param userId User ID requesting the book
+     * @param bookId Book ID
+     * @param orderType Order type (HOME or READING_ROOM)
+     * @param notes Optional notes
+     * @return The created order
+     * @throws Exception if there is an error creating the order
+     */
+    @Override
+    public Order createOrderForBook(Long userId, Long bookId, Order.OrderType orderType, String notes) throws Exception {
+        logger.info("Creating order for user: {} and book: {}", userId, bookId);
+
+        Order createdOrder = TransactionManager.executeTransaction(connectionPool,
+                connection -> placeOrderForBook(userId, bookId, orderType, notes, connection));
+
+        publishOrderChanged(createdOrder);
+        return createdOrder;
+    }
+
+    /**
+     * Creates orders for several book requests in one transaction, so a group of requests costs one
+     * connection checkout and one commit. Each request runs within a savepoint, and a request that
+     * cannot be fulfilled is rolled back to its savepoint and reported as failed.
+     *
+     * @param requests The requests
+     * @return The outcome of each request, in request order, with the created order's ID on success
+     * @throws Exception if there is an error creating the orders, in which case none are created
+     */
+    @Override
+    public List<OrderActionResult> createOrdersForBooks(List<BookOrderRequest> requests) throws Exception {
+        List<Order> createdOrders = new ArrayList<>();
+        List<OrderActionResult> results = TransactionManager.executeTransaction(connectionPool, connection -> {
+            List<OrderActionResult> outcomes = new ArrayList<>();
+            for (BookOrderRequest request : requests) {
+                Savepoint savepoint = connection.setSavepoint();
+                try {
+                    Order order = placeOrderForBook(request.getUserId(), request.getBookId(), request.getOrderType(),
+                            request.getNotes(), connection);
+                    connection.releaseSavepoint(savepoint);
+                    createdOrders.add(order);
+                    outcomes.add(OrderActionResult.success(order.getId()));
+                } catch (IllegalArgumentException e) {
+                    connection.rollback(savepoint);
+                    outcomes.add(OrderActionResult.failure(null, e.getMessage()));
+                }
+            }
+            return outcomes;
+        });
+
+        logger.info("Created {} of {} requested orders", createdOrders.size(), requests.size());
+        createdOrders.forEach(this::publishOrderChanged);
+        return results;
     }
 
     /**
      * Approves an order.
+     * The order and its copy are updated by one statement that only matches a pending order.
      *
      * @param orderId Order ID
      * @param librarian Librarian approving the order
      * @param returnDate Expected return date
-     * @return true if the approval was successful, false otherwise
+     * @return true if the approval was successful
      * @throws Exception if there is an error approving the order
      */
     @Override
     public boolean approveOrder(Long orderId, User librarian, LocalDateTime returnDate) throws Exception {
         logger.info("Approving order: {} by librarian: {}", orderId, librarian.getUsername());
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
-            Order order = orderDao.findById(orderId, connection);
-            if (order == null) {
-                throw new IllegalArgumentException("Order not found: " + orderId);
-            }
-
-            if (order.getOrderStatus() != Order.OrderStatus.PENDING) {
-                throw new IllegalArgumentException("Order is not in pending status");
+        Long bookId = TransactionManager.executeTransaction(connectionPool, connection -> {
+            Long changedBookId = orderDao.approveIfPending(orderId, librarian.getId(), returnDate, connection);
+            if (changedBookId != null) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.ORDER, orderId,
+                        Order.OrderStatus.APPROVED.name(), connection);
             }
-
-            order.approve(librarian, returnDate);
-
-            boolean orderUpdated = orderDao.update(order, connection);
-            boolean copyStatusUpdated = bookCopyDao.updateStatus(order.getBookCopy().getId(),
-                    BookCopy.CopyStatus.ISSUED, connection);
-
-            if (orderUpdated && copyStatusUpdated) {
-                logger.info("Order approved successfully: {}", orderId);
-                return true;
-            }
-            return false;
+            return changedBookId;
         });
+        if (bookId == null) {
+            throw transitionFailure(orderId, null, "Order is not in pending status");
+        }
+        logger.info("Order approved successfully: {}", orderId);
+
+        publishOrderChanged(transitioned(orderId, bookId, Order.OrderStatus.APPROVED, returnDate));
+        return true;
     }
 
     /**
      * Rejects an order.
+     * The order and its copy are updated by one statement that only matches a pending order.
      *
      * @param orderId Order ID
      * @param librarian Librarian rejecting the order
      * @param notes Reason for rejection
-     * @return true if the rejection was successful, false otherwise
+     * @return true if the rejection was successful
      * @throws Exception if there is an error rejecting the order
      */
     @Override
     public boolean rejectOrder(Long orderId, User librarian, String notes) throws Exception {
         logger.info("Rejecting order: {} by librarian: {}", orderId, librarian.getUsername());
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
-            Order order = orderDao.findById(orderId, connection);
-            if (order == null) {
-                throw new IllegalArgumentException("Order not found: " + orderId);
+        Long bookId = TransactionManager.executeTransaction(connectionPool, connection -> {
+            Long changedBookId = orderDao.rejectIfPending(orderId, librarian.getId(), notes, connection);
+            if (changedBookId != null) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.ORDER, orderId,
+                        Order.OrderStatus.REJECTED.name(), connection);
             }
-
-            if (order.getOrderStatus() != Order.OrderStatus.PENDING) {
-                throw new IllegalArgumentException("Order is not in pending status");
-            }
-
-            order.reject(librarian, notes);
-
-            boolean orderUpdated = orderDao.update(order, connection);
-            boolean copyStatusUpdated = bookCopyDao.updateStatus(order.getBookCopy().getId(),
-                    BookCopy.CopyStatus.AVAILABLE, connection );
-
-            if (orderUpdated && copyStatusUpdated) {
-                logger.info("Order rejected successfully: {}", orderId);
-                return true;
-            }
-            return false;
+            return changedBookId;
         });
+        if (bookId == null) {
+            throw transitionFailure(orderId, null, "Order is not in pending status");
+        }
+        logger.info("Order rejected successfully: {}", orderId);
+
+        publishOrderChanged(transitioned(orderId, bookId, Order.OrderStatus.REJECTED, null));
+        offerToWaitlist(bookId);
+        return true;
     }
 
     /**
      * Marks an order as returned.
+     * The order and its copy are updated by one statement that only matches an approved order.
      *
      * @param orderId Order ID
-     * @return true if the return was successful, false otherwise
+     * @return true if the return was successful
      * @throws Exception if there is an error processing the return
      */
     @Override
     public boolean returnOrder(Long orderId) throws Exception {
         logger.info("Processing return for order: {}", orderId);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
-            Order order = orderDao.findById(orderId, connection);
-            if (order == null) {
-                throw new IllegalArgumentException("Order not found: " + orderId);
+        Long bookId = TransactionManager.executeTransaction(connectionPool, connection -> {
+            Long changedBookId = orderDao.returnIfApproved(orderId, connection);
+            if (changedBookId != null) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.ORDER, orderId,
+                        Order.OrderStatus.RETURNED.name(), connection);
             }
-            if (order.getOrderStatus() != Order.OrderStatus.APPROVED) {
-                throw new IllegalArgumentException("Order is not in approved status");
-            }
-
-            order.returnBook();
-
-            boolean orderUpdated = orderDao.update(order, connection);
-            boolean copyStatusUpdated = bookCopyDao.updateStatus(order.getBookCopy().getId(),
-                    BookCopy.CopyStatus.AVAILABLE, connection);
-
-            if (orderUpdated && copyStatusUpdated) {
-                logger.info("Order returned successfully: {}", orderId);
-                return true;
-            }
-
-            return false;
+            return changedBookId;
         });
+        if (bookId == null) {
+            throw transitionFailure(orderId, null, "Order is not in approved status");
+        }
+        logger.info("Order returned successfully: {}", orderId);
+
+        publishOrderChanged(transitioned(orderId, bookId, Order.OrderStatus.RETURNED, null));
+        offerToWaitlist(bookId);
+        return true;
     }
 
     /**
      * Cancels an order.
+     * The order and its copy are updated by one statement that only matches a pending order of the user.
      *
      * @param orderId Order ID
      * @param userId User ID (must match the order's user)
-     * @return true if the cancellation was successful, false otherwise
+     * @return true if the cancellation was successful
      * @throws Exception if there is an error cancelling the order
      */
     @Override
     public boolean cancelOrder(Long orderId, Long userId) throws Exception {
         logger.info("Cancelling order: {} by user: {}", orderId, userId);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
-            Order order = orderDao.findById(orderId, connection);
-            if (order == null) {
-                throw new IllegalArgumentException("Order not found: " + orderId);
+        Long bookId = TransactionManager.executeTransaction(connectionPool, connection -> {
+            Long changedBookId = orderDao.cancelIfPending(orderId, userId, connection);
+            if (changedBookId != null) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.ORDER, orderId,
+                        Order.OrderStatus.CANCELLED.name(), connection);
             }
+            return changedBookId;
+        });
+        if (bookId == null) {
+            throw transitionFailure(orderId, userId, "Order is not in pending status. Only pending order can be cancelled");
+        }
+        logger.info("Order cancelled successfully: {}", orderId);
 
-            if (!order.getUser().getId().equals(userId)) {
-                throw new IllegalArgumentException("Order does not belong to the specified user");
+        publishOrderChanged(transitioned(orderId, bookId, Order.OrderStatus.CANCELLED, null));
+        offerToWaitlist(bookId);
+        return true;
+    }
+
+    /**
+     * Expires pending orders placed before the given time and releases their copies, in one transaction.
+     * The released copies are offered to the waitlists of their books.
+     *
+     * @param orderedBefore The order date limit
+     * @param limit The maximum number of orders to expire
+     * @return The number of expired orders, each of which released one copy
+     * @throws Exception if there is an error expiring the orders
+     */
+    @Override
+    public int expireStalePendingOrders(LocalDateTime orderedBefore, int limit) throws Exception {
+        List<Order> expiredOrders = TransactionManager.executeTransaction(connectionPool, connection -> {
+            List<Order> orders = orderDao.lockStalePending(orderedBefore, limit, connection);
+            Set<Long> expired = orderDao.expirePending(orders.stream().map(Order::getId).toList(), connection);
+
+            List<Order> changed = new ArrayList<>();
+            for (Order order : orders) {
+                if (expired.contains(order.getId())) {
+                    order.setOrderStatus(Order.OrderStatus.EXPIRED);
+                    changed.add(order);
+                }
             }
+            bookCopyDao.updateStatusBatch(changed.stream().map(order -> order.getBookCopy().getId()).toList(),
+                    BookCopy.CopyStatus.AVAILABLE, connection);
+            logOrderChanges(changed, connection);
+            return changed;
+        });
+
+        if (!expiredOrders.isEmpty()) {
+            logger.info("Expired {} pending orders placed before {}", expiredOrders.size(), orderedBefore);
+        }
+        expiredOrders.forEach(this::publishOrderChanged);
+        expiredOrders.stream()
+                .map(order -> order.getBookCopy().getBook().getId())
+                .distinct()
+                .forEach(this::offerToWaitlist);
+        return expiredOrders.size();
+    }
 
-            if (order.getOrderStatus() != Order.OrderStatus.PENDING) {
-                throw new IllegalArgumentException("Order is not in pending status. Only pending order can be cancelled");
+    /**
+     * Adds a reader to the waitlist of a book that has no available copies.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @param orderType Type of the order to place (HOME or READING_ROOM)
+     * @param notes Optional notes for the order
+     * @return The 1-based position of the reader on the waitlist
+     * @throws Exception if there is an error adding the reader
+     */
+    @Override
+    public int joinWaitlist(Long userId, Long bookId, Order.OrderType orderType, String notes) throws Exception {
+        logger.info("Adding user: {} to the waitlist of book: {}", userId, bookId);
+
+        WaitlistEntry entry = TransactionManager.executeTransaction(connectionPool, connection -> {
+            User user = userDao.findById(userId, connection);
+            if (user == null) {
+                throw new IllegalArgumentException("User not found: " + userId);
             }
 
-            order.cancel();
+            if (user.getStatus() != User.UserStatus.ACTIVE) {
+                throw new IllegalArgumentException("User is not active: " + userId);
+            }
 
-            boolean orderUpdated = orderDao.update(order, connection);
-            boolean copyStatusUpdated = bookCopyDao.updateStatus(order.getBookCopy().getId(),
-                    BookCopy.CopyStatus.AVAILABLE, connection);
+            if (hasActiveOrderForBook(userId, bookId, connection)) {
+                throw new IllegalArgumentException("User already has an active order for this book: " + bookId);
+            }
 
-            if (orderUpdated && copyStatusUpdated) {
-                logger.info("Order cancelled successfully: {}", orderId);
-                return true;
+            if (bookCopyDao.countAvailableByBookId(bookId, connection) > 0) {
+                throw new IllegalArgumentException("Copies of this book are available. Please request one directly.");
             }
 
-            return false;
+            try {
+                return waitlistDao.add(bookId, userId, orderType, notes, connection);
+            } catch (SQLIntegrityConstraintViolationException e) {
+                if (e.getErrorCode() == ER_DUP_ENTRY) {
+                    throw new IllegalArgumentException("You are already on the waitlist for this book");
+                }
+                throw new IllegalArgumentException("Book not found: " + bookId);
+            }
+        });
+
+        waitlist.add(entry);
+        // A copy returned while the reader was being added would otherwise wait for the next return
+        offerToWaitlist(bookId);
+        return waitlist.getPosition(bookId, userId);
+    }
+
+    /**
+     * Removes a reader from the waitlist of a book.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @return true if the reader was on the waitlist, false otherwise
+     * @throws Exception if there is an error removing the reader
+     */
+    @Override
+    public boolean leaveWaitlist(Long userId, Long bookId) throws Exception {
+        logger.info("Removing user: {} from the waitlist of book: {}", userId, bookId);
+
+        boolean removed = TransactionManager.executeTransaction(connectionPool,
+                connection -> waitlistDao.deleteByBookIdAndUserId(bookId, userId, connection));
+        waitlist.remove(bookId, userId);
+        return removed;
+    }
+
+    /**
+     * Returns the position of a reader on the waitlist of a book, from the in-memory waitlist.
+     *
+     * @param userId User ID
+     * @param bookId Book ID
+     * @return The 1-based position, or 0 if the reader is not on the waitlist
+     */
+    @Override
+    public int getWaitlistPosition(Long userId, Long bookId) {
+        return waitlist.getPosition(bookId, userId);
+    }
+
+    /**
+     * Returns the number of readers on the waitlist of a book, from the in-memory waitlist.
+     *
+     * @param bookId Book ID
+     * @return The number of waiting readers
+     */
+    @Override
+    public int getWaitlistSize(Long bookId) {
+        return waitlist.size(bookId);
+    }
+
+    /**
+     * Returns the places of a reader on the waitlists of all books the reader waits for. The places
+     * come from the in-memory waitlist; only the books are loaded.
+     *
+     * @param userId User ID
+     * @return The places, in book ID order
+     * @throws Exception if there is an error loading the books
+     */
+    @Override
+    public List<WaitlistPosition> getWaitlistPositions(Long userId) throws Exception {
+        SortedMap<Long, Integer> positions = waitlist.getPositions(userId);
+        if (positions.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Book> books = new HashMap<>();
+        try (Connection connection = connectionPool.getConnection()) {
+            for (Book book : bookDao.findByIds(new ArrayList<>(positions.keySet()), connection)) {
+                books.put(book.getId(), book);
+            }
+        }
+
+        List<WaitlistPosition> result = new ArrayList<>(positions.size());
+        positions.forEach((bookId, position) -> {
+            Book book = books.get(bookId);
+            // A book deleted since the waitlist was loaded takes its entries with it
+            if (book != null) {
+                result.add(new WaitlistPosition(book, position, waitlist.size(bookId)));
+            }
         });
+        return result;
+    }
+
+    /**
+     * Approves several pending orders.
+     *
+     * @param orderIds Order IDs
+     * @param librarian Librarian approving the orders
+     * @param returnDate Expected return date
+     * @return The result for each order, in the order of the IDs
+     */
+    @Override
+    public List<OrderActionResult> approveOrders(List<Long> orderIds, User librarian, LocalDateTime returnDate) {
+        logger.info("Approving {} orders by librarian: {}", orderIds.size(), librarian.getUsername());
+        return transitionOrders(orderIds, Order.OrderStatus.PENDING, order -> order.approve(librarian, returnDate),
+                BookCopy.CopyStatus.ISSUED);
+    }
+
+    /**
+     * Rejects several pending orders.
+     *
+     * @param orderIds Order IDs
+     * @param librarian Librarian rejecting the orders
+     * @param notes Reason for rejection
+     * @return The result for each order, in the order of the IDs
+     */
+    @Override
+    public List<OrderActionResult> rejectOrders(List<Long> orderIds, User librarian, String notes) {
+        logger.info("Rejecting {} orders by librarian: {}", orderIds.size(), librarian.getUsername());
+        return transitionOrders(orderIds, Order.OrderStatus.PENDING, order -> order.reject(librarian, notes),
+                BookCopy.CopyStatus.AVAILABLE);
+    }
+
+    /**
+     * Marks several approved orders as returned.
+     *
+     * @param orderIds Order IDs
+     * @return The result for each order, in the order of the IDs
+     */
+    @Override
+    public List<OrderActionResult> returnOrders(List<Long> orderIds) {
+        logger.info("Processing return for {} orders", orderIds.size());
+        return transitionOrders(orderIds, Order.OrderStatus.APPROVED, Order::returnBook, BookCopy.CopyStatus.AVAILABLE);
     }
 
     /**
-     * Updates an order.
+     * Updates an order. The update is rejected if the order was changed since it was read.
      *
-     * @param order Order with updated information
+     * @param order Order with updated information, carrying the version it was read with
      * @return true if the update was successful, false otherwise
+     * @throws IllegalArgumentException if the order was changed by someone else in the meantime
      * @throws Exception if there is an error updating the order
      */
     @Override
     public boolean updateOrder(Order order) throws Exception {
         logger.info("Updating order: {}", order);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
-            boolean result = orderDao.update(order, connection);
-            if (result) {
-                logger.info("Order updated successfully: {}", order.getId());
+        try {
+            return TransactionManager.executeTransaction(connectionPool, connection -> {
+                boolean result = orderDao.update(order, connection);
+                if (result) {
+                    logger.info("Order updated successfully: {}", order.getId());
+                }
+                return result;
+            });
+        } catch (OptimisticLockException e) {
+            logger.info("Order update conflict: {}", e.getMessage());
+            throw new IllegalArgumentException("The order was changed by someone else. Please reload it and try again.");
+        }
+    }
+
+    /**
+     * Moves orders from one status to another in chunks of bulkChunkSize orders, one transaction per chunk.
+     * Each chunk locks and validates its orders with one query, writes the orders with one prepared statement and
+     * the copies with one statement. A failing chunk fails only its own orders.
+     */
+    private List<OrderActionResult> transitionOrders(List<Long> orderIds, Order.OrderStatus expectedStatus,
+                                                     Consumer<Order> transition, BookCopy.CopyStatus copyStatus) {
+        List<Long> uniqueIds = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        Map<Long, OrderActionResult> results = new HashMap<>();
+
+        for (int from = 0; from < uniqueIds.size(); from += bulkChunkSize) {
+            List<Long> chunk = uniqueIds.subList(from, Math.min(from + bulkChunkSize, uniqueIds.size()));
+            Map<Long, OrderActionResult> chunkResults = new HashMap<>();
+            try {
+                List<Order> changedOrders = TransactionManager.executeTransaction(connectionPool, connection -> {
+                    Map<Long, Order> orders = orderDao.findForTransition(chunk, connection);
+
+                    List<Order> valid = new ArrayList<>();
+                    for (Long orderId : chunk) {
+                        Order order = orders.get(orderId);
+                        if (order == null) {
+                            chunkResults.put(orderId, OrderActionResult.failure(orderId, "Order not found: " + orderId));
+                        } else if (order.getOrderStatus() != expectedStatus) {
+                            chunkResults.put(orderId, OrderActionResult.failure(orderId,
+                                    "Order is not in " + expectedStatus.name().toLowerCase() + " status"));
+                        } else {
+                            transition.accept(order);
+                            valid.add(order);
+                        }
+                    }
+
+                    Set<Long> updated = orderDao.updateTransitionBatch(valid, expectedStatus, connection);
+                    List<Order> changed = new ArrayList<>();
+                    for (Order order : valid) {
+                        if (updated.contains(order.getId())) {
+                            changed.add(order);
+                            chunkResults.put(order.getId(), OrderActionResult.success(order.getId()));
+                        } else {
+                            chunkResults.put(order.getId(), OrderActionResult.failure(order.getId(), "Order was changed concurrently"));
+                        }
+                    }
+                    bookCopyDao.updateStatusBatch(changed.stream().map(order -> order.getBookCopy().getId()).toList(),
+                            copyStatus, connection);
+                    logOrderChanges(changed, connection);
+                    return changed;
+                });
+
+                results.putAll(chunkResults);
+                changedOrders.forEach(this::publishOrderChanged);
+                if (copyStatus == BookCopy.CopyStatus.AVAILABLE) {
+                    changedOrders.stream()
+                            .map(order -> order.getBookCopy().getBook().getId())
+                            .distinct()
+                            .forEach(this::offerToWaitlist);
+                }
+                logger.info("Processed {} {} orders, {} changed", chunk.size(), expectedStatus, changedOrders.size());
+            } catch (Exception e) {
+                logger.error("Error processing orders {}", chunk, e);
+                for (Long orderId : chunk) {
+                    results.put(orderId, OrderActionResult.failure(orderId, "Error processing order. Please try again later."));
+                }
             }
-            return result;
-        });
+        }
+
+        return uniqueIds.stream().map(results::get).toList();
+    }
+
+    /**
+     * Reserves the available copies of a book for the readers on its waitlist, first come first served,
+     * one transaction per reader. Readers who can no longer order the book are removed from the waitlist.
+     * The first entry is locked, so concurrent offers for the same book are serialized.
+     */
+    private void offerToWaitlist(Long bookId) {
+        try {
+            WaitlistOffer offer;
+            do {
+                offer = TransactionManager.executeTransaction(connectionPool, connection -> {
+                    WaitlistEntry entry = waitlistDao.lockFirstByBookId(bookId, connection);
+                    if (entry == null) {
+                        return null;
+                    }
+
+                    User user = userDao.findById(entry.userId(), connection);
+                    if (user == null || user.getStatus() != User.UserStatus.ACTIVE
+                            || hasActiveOrderForBook(entry.userId(), bookId, connection)) {
+                        waitlistDao.delete(entry.id(), connection);
+                        return new WaitlistOffer(entry, null);
+                    }
+
+                    Long bookCopyId = bookCopyDao.reserveAvailableCopy(bookId, connection);
+                    if (bookCopyId == null) {
+                        return null;
+                    }
+                    waitlistDao.delete(entry.id(), connection);
+
+                    Order order = new Order();
+                    order.setUser(user);
+                    order.setBookCopy(bookCopyDao.findById(bookCopyId, connection));
+                    order.setOrderType(entry.orderType());
+                    order.setOrderStatus(Order.OrderStatus.PENDING);
+                    order.setOrderDate(LocalDateTime.now());
+                    order.setNotes(entry.notes());
+                    Order savedOrder = orderDao.save(order, connection);
+                    logOrderChange(savedOrder, connection);
+                    return new WaitlistOffer(entry, savedOrder);
+                });
+
+                if (offer != null) {
+                    waitlist.remove(bookId, offer.entry().userId());
+                    if (offer.order() != null) {
+                        logger.info("Copy {} reserved for user {} from the waitlist of book {}",
+                                offer.order().getBookCopy().getId(), offer.entry().userId(), bookId);
+                        publishOrderChanged(offer.order());
+                    }
+                }
+            } while (offer != null);
+        } catch (Exception e) {
+            logger.error("Error offering copies of book {} to its waitlist", bookId, e);
+        }
+    }
+
+    /**
+     * Reserves any available copy of a book and creates a pending order for it.
+     */
+    private Order placeOrderForBook(Long userId, Long bookId, Order.OrderType orderType, String notes,
+                                    Connection connection) throws SQLException {
+        User user = userDao.findById(userId, connection);
+        if (user == null) {
+            throw new IllegalArgumentException("User not found: " + userId);
+        }
+
+        if (user.getStatus() != User.UserStatus.ACTIVE) {
+            throw new IllegalArgumentException("User is not active: " + userId);
+        }
+
+        if (hasActiveOrderForBook(userId, bookId, connection)) {
+            throw new IllegalArgumentException("User already has an active order for this book: " + bookId);
+        }
+
+        Long bookCopyId = bookCopyDao.reserveAvailableCopy(bookId, connection);
+        if (bookCopyId == null) {
+            throw new IllegalArgumentException("No copies of this book are available. You can join the waitlist instead.");
+        }
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setBookCopy(bookCopyDao.findById(bookCopyId, connection));
+        order.setOrderType(orderType);
+        order.setOrderStatus(Order.OrderStatus.PENDING);
+        order.setOrderDate(LocalDateTime.now());
+        order.setNotes(notes);
+
+        Order savedOrder = orderDao.save(order, connection);
+        logOrderChange(savedOrder, connection);
+
+        logger.info("Order created successfully with ID: {} for copy: {}", savedOrder.getId(), bookCopyId);
+        return savedOrder;
+    }
+
+    private boolean hasActiveOrderForBook(Long userId, Long bookId, Connection connection) throws SQLException {
+        return orderDao.findActiveByUserId(userId, connection).stream()
+                .anyMatch(order -> order.getBookCopy().getBook() != null
+                        && bookId.equals(order.getBookCopy().getBook().getId()));
+    }
+
+    /**
+     * Describes an order changed by a conditional transition, for its change event.
+     * The copy ID is not read back, since the transition statement reports only the book ID.
+     */
+    private static Order transitioned(Long orderId, Long bookId, Order.OrderStatus status, LocalDateTime returnDate) {
+        Book book = new Book();
+        book.setId(bookId);
+        BookCopy bookCopy = new BookCopy();
+        bookCopy.setBook(book);
+
+        Order order = new Order();
+        order.setId(orderId);
+        order.setBookCopy(bookCopy);
+        order.setOrderStatus(status);
+        order.setReturnDate(returnDate);
+        return order;
+    }
+
+    /**
+     * Explains why a conditional transition matched no order. Only called on failure, after the
+     * transition's transaction has ended, so the order is read without locking it and the
+     * successful path does not read it at all.
+     */
+    private IllegalArgumentException transitionFailure(Long orderId, Long userId, String statusMessage)
+            throws Exception {
+        Order order = findById(orderId).orElse(null);
+        if (order == null) {
+            return new IllegalArgumentException("Order not found: " + orderId);
+        }
+        if (userId != null && !userId.equals(order.getUser().getId())) {
+            return new IllegalArgumentException("Order does not belong to the specified user");
+        }
+        return new IllegalArgumentException(statusMessage);
+    }
+
+    /**
+     * Logs an order change for the other nodes, in the transaction making the change.
+     */
+    private void logOrderChange(Order order, Connection connection) throws SQLException {
+        cacheInvalidationDao.append(CacheInvalidation.EntityType.ORDER, order.getId(), order.getOrderStatus().name(),
+                connection);
+    }
+
+    /**
+     * Logs changes of several orders for the other nodes with one batch per new status.
+     */
+    private void logOrderChanges(List<Order> orders, Connection connection) throws SQLException {
+        Map<Order.OrderStatus, List<Long>> orderIdsByStatus = new EnumMap<>(Order.OrderStatus.class);
+        for (Order order : orders) {
+            orderIdsByStatus.computeIfAbsent(order.getOrderStatus(), status -> new ArrayList<>()).add(order.getId());
+        }
+        for (Map.Entry<Order.OrderStatus, List<Long>> entry : orderIdsByStatus.entrySet()) {
+            cacheInvalidationDao.appendAll(CacheInvalidation.EntityType.ORDER, entry.getValue(), entry.getKey().name(),
+                    connection);
+        }
+    }
+
+    /**
+     * Publishes an order change event after the transaction has been committed.
+     */
+    private void publishOrderChanged(Order order) {
+        BookCopy bookCopy = order.getBookCopy();
+        Long bookId = bookCopy.getBook() != null ? bookCopy.getBook().getId() : null;
+        eventPublisher.publishEvent(new OrderChangedEvent(order.getId(), bookId, bookCopy.getId(), order.getOrderStatus(),
+                order.getReturnDate()));
+    }
+
+    /**
+     * Outcome of offering a copy to the first reader on a waitlist.
+     *
+     * @param entry The served entry, removed from the waitlist
+     * @param order The order placed for the reader, or null if the reader could no longer order the book
+     */
+    private record WaitlistOffer(WaitlistEntry entry, Order order) {
     }
 }
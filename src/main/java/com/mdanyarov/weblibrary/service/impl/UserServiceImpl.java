@@ -1,13 +1,17 @@
 package com.mdanyarov.weblibrary.service.impl;
 
+import com.mdanyarov.weblibrary.dao.CacheInvalidationDao;
 import com.mdanyarov.weblibrary.dao.ConnectionPool;
 import com.mdanyarov.weblibrary.dao.TransactionManager;
 import com.mdanyarov.weblibrary.dao.UserDao;
+import com.mdanyarov.weblibrary.entity.CacheInvalidation;
 import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.event.UserChangedEvent;
 import com.mdanyarov.weblibrary.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -26,14 +30,19 @@ public class UserServiceImpl implements UserService {
     private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
 
     private final UserDao userDao;
+    private final CacheInvalidationDao cacheInvalidationDao;
     private final ConnectionPool connectionPool;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserServiceImpl(UserDao userDao, ConnectionPool connectionPool, @Lazy PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserDao userDao, CacheInvalidationDao cacheInvalidationDao, ConnectionPool connectionPool, @Lazy PasswordEncoder passwordEncoder,
+                           ApplicationEventPublisher eventPublisher) {
         this.userDao = userDao;
+        this.cacheInvalidationDao = cacheInvalidationDao;
         this.connectionPool = connectionPool;
         this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -51,7 +60,7 @@ public class UserServiceImpl implements UserService {
     public User registerUser(String username, String password, String email, String firstName, String lastName) throws Exception {
         logger.info("Registering new user: {}", username);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        User registeredUser = TransactionManager.executeTransaction(connectionPool, connection -> {
             Optional<User> existingUser = userDao.findByUsername(username, connection);
             if (existingUser.isPresent()) {
                 throw new IllegalArgumentException("Username is already in use: " + username);
@@ -73,9 +82,15 @@ public class UserServiceImpl implements UserService {
             user.setCreatedAt(LocalDateTime.now());
 
             User savedUser = userDao.save(user, connection);
+            cacheInvalidationDao.append(CacheInvalidation.EntityType.USER, savedUser.getId(),
+                    UserChangedEvent.Type.REGISTERED.name(), connection);
             logger.info("User registered successfully: {}", savedUser.getUsername());
             return savedUser;
         });
+
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.REGISTERED, registeredUser.getId(),
+                registeredUser.getUsername()));
+        return registeredUser;
     }
 
     /**
@@ -169,14 +184,21 @@ public class UserServiceImpl implements UserService {
     public boolean updateUser(User user) throws Exception {
         logger.info("Updating user: {}", user.getUsername());
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        boolean updated = TransactionManager.executeTransaction(connectionPool, connection -> {
             user.setUpdatedAt(LocalDateTime.now());
             boolean result = userDao.update(user, connection);
             if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.USER, user.getId(),
+                        UserChangedEvent.Type.UPDATED.name(), connection);
                 logger.info("User updated successfully: {}", user.getUsername());
             }
             return result;
         });
+
+        if (updated) {
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.UPDATED, user.getId(), user.getUsername()));
+        }
+        return updated;
     }
 
     /**
@@ -191,7 +213,7 @@ public class UserServiceImpl implements UserService {
     public boolean changePassword(Long userId, String newPassword) throws Exception {
         logger.info("Changing password for user ID: {}", userId);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        boolean changed = TransactionManager.executeTransaction(connectionPool, connection -> {
             User user = userDao.findById(userId, connection);
             if (user == null) {
                 throw new IllegalArgumentException("User not found: " + userId);
@@ -200,10 +222,17 @@ public class UserServiceImpl implements UserService {
             String encodedPassword = passwordEncoder.encode(newPassword);
             boolean result = userDao.updatePassword(user, encodedPassword, connection);
             if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.USER, userId,
+                        UserChangedEvent.Type.PASSWORD_CHANGED.name(), connection);
                 logger.info("Password changed successfully for user: {}", user.getUsername());
             }
             return result;
         });
+
+        if (changed) {
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.PASSWORD_CHANGED, userId, null));
+        }
+        return changed;
     }
 
     /**
@@ -218,13 +247,20 @@ public class UserServiceImpl implements UserService {
     public boolean updateStatus(Long userId, User.UserStatus status) throws Exception {
         logger.info("Updating status for user ID {} to {}", userId, status);
 
-        return TransactionManager.executeTransaction(connectionPool, connection -> {
+        boolean updated = TransactionManager.executeTransaction(connectionPool, connection -> {
             boolean result = userDao.updateStatus(userId, status, connection);
             if (result) {
+                cacheInvalidationDao.append(CacheInvalidation.EntityType.USER, userId,
+                        UserChangedEvent.Type.STATUS_CHANGED.name(), connection);
                 logger.info("Status updated successfully for user ID: {}", userId);
             }
             return result;
         });
+
+        if (updated) {
+            eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.STATUS_CHANGED, userId, null));
+        }
+        return updated;
     }
 
     /**
@@ -5,7 +5,11 @@
 USE web_library;
 
 -- Drop tables if they exist (for clean setup)
+DROP TABLE IF EXISTS idempotency_keys;
+DROP TABLE IF EXISTS cache_invalidations;
+DROP TABLE IF EXISTS waitlist_entries;
 DROP TABLE IF EXISTS orders;
+DROP TABLE IF EXISTS book_availability;
 DROP TABLE IF EXISTS book_copies;
 DROP TABLE IF EXISTS book_genres;
 DROP TABLE IF EXISTS books;
@@ -77,6 +81,7 @@ CREATE TABLE book_copies (
                              inventory_number VARCHAR(50) NOT NULL UNIQUE,
                              status ENUM('AVAILABLE', 'ISSUED', 'RESERVED', 'DAMAGED', 'LOST') NOT NULL DEFAULT 'AVAILABLE',
                              location VARCHAR(100),
+                             version INT NOT NULL DEFAULT 0,
                              created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                              updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                              FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE
@@ -87,24 +92,76 @@ CREATE INDEX idx_book_copies_book_id ON book_copies(book_id);
 CREATE INDEX idx_inventory_number ON book_copies(inventory_number);
 CREATE INDEX idx_book_copy_status ON book_copies(status);
 
+-- Per-book copy counts by status, maintained by the triggers below in the same transaction
+-- as every change to book_copies, so availability checks never scan the copies
+CREATE TABLE book_availability (
+                             book_id BIGINT PRIMARY KEY,
+                             available_count INT NOT NULL DEFAULT 0,
+                             issued_count INT NOT NULL DEFAULT 0,
+                             reserved_count INT NOT NULL DEFAULT 0,
+                             FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_book_availability_available ON book_availability(available_count, book_id);
+
+CREATE TRIGGER trg_books_insert AFTER INSERT ON books FOR EACH ROW
+    INSERT INTO book_availability (book_id) VALUES (NEW.id);
+
+CREATE TRIGGER trg_book_copies_insert AFTER INSERT ON book_copies FOR EACH ROW
+    UPDATE book_availability
+    SET available_count = available_count + (NEW.status = 'AVAILABLE'),
+        issued_count = issued_count + (NEW.status = 'ISSUED'),
+        reserved_count = reserved_count + (NEW.status = 'RESERVED')
+    WHERE book_id = NEW.book_id;
+
+CREATE TRIGGER trg_book_copies_update AFTER UPDATE ON book_copies FOR EACH ROW
+    UPDATE book_availability
+    SET available_count = available_count
+            - (book_id = OLD.book_id AND OLD.status = 'AVAILABLE') + (book_id = NEW.book_id AND NEW.status = 'AVAILABLE'),
+        issued_count = issued_count
+            - (book_id = OLD.book_id AND OLD.status = 'ISSUED') + (book_id = NEW.book_id AND NEW.status = 'ISSUED'),
+        reserved_count = reserved_count
+            - (book_id = OLD.book_id AND OLD.status = 'RESERVED') + (book_id = NEW.book_id AND NEW.status = 'RESERVED')
+    WHERE book_id IN (OLD.book_id, NEW.book_id);
+
+CREATE TRIGGER trg_book_copies_delete AFTER DELETE ON book_copies FOR EACH ROW
+    UPDATE book_availability
+    SET available_count = available_count - (OLD.status = 'AVAILABLE'),
+        issued_count = issued_count - (OLD.status = 'ISSUED'),
+        reserved_count = reserved_count - (OLD.status = 'RESERVED')
+    WHERE book_id = OLD.book_id;
+
+-- To add the counts to an existing database, create the table and triggers above and then run:
+-- INSERT INTO book_availability (book_id, available_count, issued_count, reserved_count)
+--     SELECT b.id, COUNT(CASE WHEN bc.status = 'AVAILABLE' THEN 1 END),
+--            COUNT(CASE WHEN bc.status = 'ISSUED' THEN 1 END), COUNT(CASE WHEN bc.status = 'RESERVED' THEN 1 END)
+--     FROM books b LEFT JOIN book_copies bc ON bc.book_id = b.id GROUP BY b.id;
+
 -- Orders table
 CREATE TABLE orders (
                         id BIGINT AUTO_INCREMENT PRIMARY KEY,
                         user_id BIGINT NOT NULL,
                         book_copy_id BIGINT NOT NULL,
                         order_type ENUM('HOME', 'READING_ROOM') NOT NULL,
-                        order_status ENUM('PENDING', 'APPROVED', 'REJECTED', 'RETURNED', 'CANCELLED') NOT NULL DEFAULT 'PENDING',
+                        order_status ENUM('PENDING', 'APPROVED', 'REJECTED', 'RETURNED', 'CANCELLED', 'EXPIRED') NOT NULL DEFAULT 'PENDING',
                         order_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                         approval_date TIMESTAMP NULL,
                         return_date TIMESTAMP NULL,
                         actual_return_date TIMESTAMP NULL,
                         processed_by BIGINT NULL,
                         notes TEXT,
+                        -- Set by the overdue scanner once return_date has passed, cleared on return
+                        overdue BOOLEAN NOT NULL DEFAULT FALSE,
+                        -- Librarian working on a pending order, until claim_expires_at
+                        claimed_by BIGINT NULL,
+                        claim_expires_at TIMESTAMP NULL,
+                        version INT NOT NULL DEFAULT 0,
                         created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                         updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                         FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
                         FOREIGN KEY (book_copy_id) REFERENCES book_copies(id) ON DELETE CASCADE,
-                        FOREIGN KEY (processed_by) REFERENCES users(id) ON DELETE SET NULL
+                        FOREIGN KEY (processed_by) REFERENCES users(id) ON DELETE SET NULL,
+                        FOREIGN KEY (claimed_by) REFERENCES users(id) ON DELETE SET NULL
 );
 
 -- Add indexes for orders table
@@ -112,7 +169,53 @@ CREATE INDEX idx_orders_user_id ON orders(user_id);
 CREATE INDEX idx_orders_book_copy_id ON orders(book_copy_id);
 CREATE INDEX idx_orders_status ON orders(order_status);
 CREATE INDEX idx_orders_date ON orders(order_date);
+CREATE INDEX idx_orders_status_date ON orders(order_status, order_date);
+CREATE INDEX idx_orders_claimed_by ON orders(claimed_by, order_status, claim_expires_at);
 CREATE INDEX idx_orders_return_date ON orders(return_date);
 CREATE INDEX idx_orders_user_status ON orders(user_id, order_status);
 CREATE INDEX idx_orders_overdue ON orders(order_status, return_date, actual_return_date);
-CREATE INDEX idx_book_copies_book_status ON book_copies(book_id, status);
\ No newline at end of file
+CREATE INDEX idx_orders_overdue_flag ON orders(overdue, return_date);
+CREATE INDEX idx_book_copies_book_status ON book_copies(book_id, status);
+
+-- Readers waiting for a copy of a book, served in ID order when a copy is returned or released
+CREATE TABLE waitlist_entries (
+                                  id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                  book_id BIGINT NOT NULL,
+                                  user_id BIGINT NOT NULL,
+                                  order_type ENUM('HOME', 'READING_ROOM') NOT NULL,
+                                  notes TEXT,
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  UNIQUE KEY uk_waitlist_book_user (book_id, user_id),
+                                  FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE,
+                                  FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_waitlist_book_id ON waitlist_entries(book_id, id);
+
+-- Cache invalidation log: every node appends the entities it changed in the same transaction,
+-- and all nodes poll the rows after the highest ID they have seen to evict their own caches.
+-- Rows are purged after a retention period by the nodes themselves.
+CREATE TABLE cache_invalidations (
+                                     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                                     entity_type VARCHAR(20) NOT NULL,
+                                     entity_id BIGINT NOT NULL,
+                                     change_type VARCHAR(20) NOT NULL,
+                                     node_id VARCHAR(36) NOT NULL,
+                                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_cache_invalidations_created ON cache_invalidations(created_at);
+
+-- Idempotency keys of form submissions: a node inserts the key before running the action and
+-- stores its result afterwards, so a resubmission on any node replays the result instead of
+-- running the action again. Rows are purged after a retention period by the nodes themselves.
+CREATE TABLE idempotency_keys (
+                                  user_id BIGINT NOT NULL,
+                                  idempotency_key VARCHAR(64) NOT NULL,
+                                  result TEXT NULL,
+                                  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                  PRIMARY KEY (user_id, idempotency_key),
+                                  FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_idempotency_keys_created ON idempotency_keys(created_at);
@@ -0,0 +1,119 @@
+package com.mdanyarov.weblibrary.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Test
+    void evictsToStayWithinMaximumSize() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 100, TTL);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.stats().evictionCount());
+    }
+
+    @Test
+    void keepsFrequentEntriesDuringScan() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 100, TTL);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot:" + i, "value");
+        }
+        // Moves the last hot entry out of the window, so every hot entry is promoted when read
+        cache.put("filler", "value");
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                assertNotNull(cache.getIfPresent("hot:" + i));
+            }
+        }
+
+        // One-off lookups pass through the window and lose the admission contest
+        for (int i = 0; i < 1000; i++) {
+            cache.getIfPresent("scan:" + i);
+            cache.put("scan:" + i, "value");
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertNotNull(cache.getIfPresent("hot:" + i), "hot:" + i + " was evicted by the scan");
+        }
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    void admitsCandidateRequestedMoreOftenThanVictim() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, TTL);
+        for (int i = 0; i < 10; i++) {
+            cache.put("old:" + i, "value");
+        }
+
+        for (int i = 0; i < 5; i++) {
+            cache.getIfPresent("new");
+        }
+        cache.put("new", "value");
+        cache.put("next", "value");
+
+        assertNotNull(cache.getIfPresent("new"));
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    void boundsTotalWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 100, (key, value) -> value.length(), TTL);
+
+        for (int i = 0; i < 50; i++) {
+            cache.put("key" + i, "0123456789");
+        }
+        cache.put("huge", "x".repeat(101));
+
+        assertTrue(cache.stats().weightedSize() <= 100);
+        assertEquals(10, cache.size());
+        assertNull(cache.getIfPresent("huge"));
+    }
+
+    @Test
+    void resizeEvictsRightAway() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 100, TTL);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "value");
+        }
+
+        cache.resize(10);
+
+        assertEquals(10, cache.size());
+        assertEquals(10, cache.getMaximumWeight());
+    }
+
+    @Test
+    void expiresEntriesAfterWrite() {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, Duration.ofNanos(1));
+        cache.put("key", "value");
+
+        assertNull(cache.getIfPresent("key"));
+        assertEquals(1, cache.stats().expirationCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void doesNotCacheValueLoadedDuringInvalidation() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>("test", 10, TTL);
+
+        String value = cache.get("key", key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+
+        assertEquals("stale", value);
+        assertNull(cache.getIfPresent("key"));
+        assertEquals("fresh", cache.get("key", key -> "fresh"));
+        assertEquals("fresh", cache.getIfPresent("key"));
+    }
+}
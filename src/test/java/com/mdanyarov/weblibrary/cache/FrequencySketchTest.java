@@ -0,0 +1,54 @@
+package com.mdanyarov.weblibrary.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencySketchTest {
+
+    @Test
+    void countsAccessesUpToTheCounterMaximum() {
+        FrequencySketch sketch = new FrequencySketch();
+        assertEquals(0, sketch.frequency("book:1"));
+
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("book:1");
+        }
+        assertEquals(5, sketch.frequency("book:1"));
+
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("book:1");
+        }
+        assertEquals(15, sketch.frequency("book:1"));
+    }
+
+    @Test
+    void halvesAllCountersOnceTheSampleIsFull() {
+        FrequencySketch sketch = new FrequencySketch();
+        for (int i = 0; i < 15; i++) {
+            sketch.increment("hot");
+        }
+
+        int key = 0;
+        while (sketch.frequency("hot") == 15 && key < 100_000) {
+            sketch.increment("cold:" + key++);
+        }
+
+        assertEquals(7, sketch.frequency("hot"));
+    }
+
+    @Test
+    void keepsDistinguishingKeysAfterGrowing() {
+        FrequencySketch sketch = new FrequencySketch();
+        sketch.ensureCapacity(1000);
+        for (int i = 0; i < 1000; i++) {
+            sketch.increment(i);
+        }
+        for (int i = 0; i < 3; i++) {
+            sketch.increment("popular");
+        }
+
+        assertEquals(3, sketch.frequency("popular"));
+        assertTrue(sketch.frequency("never-seen") <= 1);
+    }
+}
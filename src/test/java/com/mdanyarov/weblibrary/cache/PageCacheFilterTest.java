@@ -0,0 +1,123 @@
+package com.mdanyarov.weblibrary.cache;
+
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import com.mdanyarov.weblibrary.search.CatalogVersions;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCacheFilterTest {
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private final CatalogVersions catalogVersions = new CatalogVersions();
+
+    /**
+     * Renders "Каталог v<n>", answering conditional requests with 304 like the catalog controller.
+     */
+    private final HttpServlet catalogPage = new HttpServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            renders.incrementAndGet();
+            if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            response.setContentType("text/html;charset=UTF-8");
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            response.getWriter().write("Каталог v" + renders.get());
+        }
+    };
+
+    @Test
+    void servesFreshPagesWithoutRendering() throws Exception {
+        PageCacheFilter filter = filter(Duration.ofHours(1));
+
+        assertEquals("Каталог v1", get(filter).getContentAsString());
+        MockHttpServletResponse cached = get(filter);
+
+        assertEquals("Каталог v1", cached.getContentAsString());
+        assertEquals("no-cache", cached.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void servesStalePageAndThenRefreshesIt() throws Exception {
+        PageCacheFilter filter = filter(Duration.ZERO);
+        get(filter);
+
+        MockHttpServletResponse stale = get(filter);
+
+        assertEquals("Каталог v1", stale.getContentAsString());
+        assertTrue(stale.isCommitted(), "the stale page is sent before the refresh renders");
+        assertEquals(2, renders.get());
+        assertEquals("Каталог v2", get(filter).getContentAsString());
+    }
+
+    @Test
+    void refreshIgnoresTheVisitorsConditionalHeaders() throws Exception {
+        PageCacheFilter filter = filter(Duration.ZERO);
+        get(filter);
+
+        MockHttpServletRequest conditional = request();
+        conditional.addHeader(HttpHeaders.IF_NONE_MATCH, "\"old\"");
+        MockHttpServletResponse stale = new MockHttpServletResponse();
+        filter.doFilter(conditional, stale, new MockFilterChain(catalogPage));
+
+        assertEquals("Каталог v1", stale.getContentAsString());
+        assertEquals("Каталог v2", get(filter).getContentAsString());
+    }
+
+    @Test
+    void orderChangesDropCachedPages() throws Exception {
+        PageCacheFilter filter = filter(Duration.ofHours(1));
+        get(filter);
+
+        filter.onCatalogChanged();
+        catalogVersions.onOrderChanged(new OrderChangedEvent(1L, 2L, 3L, Order.OrderStatus.APPROVED, null));
+
+        assertEquals("Каталог v2", get(filter).getContentAsString());
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void doesNotCacheRequestsWithASession() throws Exception {
+        PageCacheFilter filter = filter(Duration.ofHours(1));
+        MockHttpServletRequest signedIn = request();
+        signedIn.getSession(true);
+
+        filter.doFilter(signedIn, new MockHttpServletResponse(), new MockFilterChain(catalogPage));
+        get(filter);
+
+        assertEquals(2, renders.get());
+    }
+
+    private PageCacheFilter filter(Duration freshFor) {
+        return new PageCacheFilter(new BoundedCache<>("pages", 1 << 20,
+                (key, page) -> page.body().length + 2L * key.length(), Duration.ofMinutes(10)),
+                catalogVersions, freshFor);
+    }
+
+    private MockHttpServletResponse get(PageCacheFilter filter) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(), response, new MockFilterChain(catalogPage));
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/books");
+        request.setQueryString("page=1");
+        return request;
+    }
+}
@@ -0,0 +1,116 @@
+package com.mdanyarov.weblibrary.order;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private static final long TICK = 100;
+    private static final int SIZE = 8;
+
+    @Test
+    void expiresKeysAtTheirDeadline() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 420);
+
+        assertEquals(List.of(), wheel.advance(200));
+        assertEquals(List.of(), wheel.advance(249));
+        assertEquals(List.of("a"), wheel.advance(250));
+        assertEquals(List.of("b"), wheel.advance(500));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void keepsKeysDueLaterInTheCurrentTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        wheel.schedule("early", 310);
+        wheel.schedule("late", 390);
+
+        assertEquals(List.of("early"), wheel.advance(350));
+        assertTrue(wheel.contains("late"));
+        assertEquals(List.of("late"), wheel.advance(390));
+    }
+
+    @Test
+    void rejectsDeadlinesBeyondOneRevolution() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        assertEquals(TICK * SIZE, wheel.getHorizonMillis());
+
+        assertFalse(wheel.schedule("far", TICK * SIZE));
+        assertTrue(wheel.schedule("last", TICK * SIZE - 1));
+        assertFalse(wheel.contains("far"));
+    }
+
+    @Test
+    void reusesBucketsOnLaterRevolutions() {
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        List<Integer> expired = new ArrayList<>();
+
+        // Keys over five revolutions, each scheduled once it is within the horizon
+        int next = 0;
+        for (long now = 0; now <= 5 * SIZE * TICK; now += TICK / 2) {
+            while (next * 70L < wheel.getHorizonMillis() && next * 70L <= 5 * SIZE * TICK) {
+                assertTrue(wheel.schedule(next, next * 70L));
+                next++;
+            }
+            for (Integer key : wheel.advance(now)) {
+                assertTrue(key * 70L <= now, "key " + key + " expired early at " + now);
+                assertTrue(key * 70L > now - TICK / 2, "key " + key + " expired late at " + now);
+                expired.add(key);
+            }
+        }
+
+        assertEquals(next, expired.size());
+        for (int i = 0; i < expired.size(); i++) {
+            assertEquals(i, expired.get(i));
+        }
+    }
+
+    @Test
+    void expiresEverythingAfterJumpingPastARevolution() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        wheel.schedule("a", 50);
+        wheel.schedule("b", 450);
+        wheel.schedule("c", 799);
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(10 * SIZE * TICK));
+        assertEquals(0, wheel.size());
+        assertEquals(11 * SIZE * TICK, wheel.getHorizonMillis());
+    }
+
+    @Test
+    void cancelledKeysDoNotExpire() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        wheel.schedule("kept", 300);
+        wheel.schedule("cancelled", 300);
+
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("unknown"));
+        assertEquals(List.of("kept"), wheel.advance(300));
+    }
+
+    @Test
+    void reschedulingReplacesTheDeadline() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 0);
+        wheel.schedule("a", 200);
+        wheel.schedule("a", 600);
+
+        assertEquals(List.of(), wheel.advance(300));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("a"), wheel.advance(600));
+    }
+
+    @Test
+    void expiresPastDeadlinesOnTheNextAdvance() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE, 1000);
+        wheel.schedule("overdue", 10);
+
+        assertEquals(List.of("overdue"), wheel.advance(1000));
+    }
+}
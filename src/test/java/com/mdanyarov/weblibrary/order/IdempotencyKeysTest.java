@@ -0,0 +1,125 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.cache.BoundedCache;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.IdempotencyKeyDao;
+import com.mdanyarov.weblibrary.dto.OrderActionResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private static final Long USER = 7L;
+    private static final String KEY = "3f6c2a9e-key";
+    private static final String VIEW = "redirect:/librarian/orders/pending";
+
+    private IdempotencyKeyDao idempotencyKeyDao;
+    private ConnectionPool connectionPool;
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        idempotencyKeyDao = mock(IdempotencyKeyDao.class);
+        connectionPool = mock(ConnectionPool.class);
+        when(connectionPool.getConnection()).thenReturn(mock(Connection.class));
+    }
+
+    @Test
+    void replaysBulkResultsOnTheSameNode() throws Exception {
+        when(idempotencyKeyDao.insert(eq(USER), eq(KEY), any())).thenReturn(true);
+        IdempotencyKeys keys = idempotencyKeys();
+
+        RedirectAttributes first = new RedirectAttributesModelMap();
+        assertEquals(VIEW, keys.submit(request(), USER, first, VIEW, bulkApprove(first)));
+        RedirectAttributes second = new RedirectAttributesModelMap();
+        assertEquals(VIEW, keys.submit(request(), USER, second, VIEW, bulkApprove(second)));
+
+        assertEquals(1, runs.get());
+        assertSameResults(first, second);
+    }
+
+    @Test
+    void replaysBulkResultsStoredByAnotherNode() throws Exception {
+        when(idempotencyKeyDao.insert(eq(USER), eq(KEY), any())).thenReturn(true);
+        RedirectAttributes first = new RedirectAttributesModelMap();
+        idempotencyKeys().submit(request(), USER, first, VIEW, bulkApprove(first));
+        ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyKeyDao).saveResult(eq(USER), eq(KEY), stored.capture(), any());
+
+        // A resubmission routed to a node that did not run the action finds the key and its result
+        when(idempotencyKeyDao.insert(eq(USER), eq(KEY), any())).thenReturn(false);
+        when(idempotencyKeyDao.findResult(eq(USER), eq(KEY), any())).thenReturn(stored.getValue());
+        RedirectAttributes second = new RedirectAttributesModelMap();
+        assertEquals(VIEW, idempotencyKeys().submit(request(), USER, second, VIEW, bulkApprove(second)));
+
+        assertEquals(1, runs.get());
+        assertSameResults(first, second);
+    }
+
+    @Test
+    void runsSubmissionsWithoutAKeyEveryTime() {
+        IdempotencyKeys keys = idempotencyKeys();
+        RedirectAttributes attributes = new RedirectAttributesModelMap();
+
+        keys.submit(new MockHttpServletRequest(), USER, attributes, VIEW, bulkApprove(attributes));
+        keys.submit(new MockHttpServletRequest(), USER, attributes, VIEW, bulkApprove(attributes));
+
+        assertEquals(2, runs.get());
+        verifyNoInteractions(idempotencyKeyDao);
+    }
+
+    private IdempotencyKeys idempotencyKeys() {
+        return new IdempotencyKeys(idempotencyKeyDao, connectionPool,
+                new BoundedCache<>("idempotency", 100, Duration.ofMinutes(1)), 1000, 60);
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/librarian/orders/bulk/approve");
+        request.setParameter(IdempotencyKeys.PARAMETER, KEY);
+        return request;
+    }
+
+    /**
+     * Flashes what LibrarianController does for a bulk approval where one of three orders failed.
+     */
+    private Supplier<String> bulkApprove(RedirectAttributes redirectAttributes) {
+        return () -> {
+            runs.incrementAndGet();
+            redirectAttributes.addFlashAttribute("successMessage", "2 orders approved successfully");
+            redirectAttributes.addFlashAttribute("errorMessage", "1 orders could not be approved");
+            redirectAttributes.addFlashAttribute("failedOrders",
+                    List.of(OrderActionResult.failure(12L, "Order is not pending")));
+            return VIEW;
+        };
+    }
+
+    private static void assertSameResults(RedirectAttributes expected, RedirectAttributes actual) {
+        Map<String, ?> expectedAttributes = expected.getFlashAttributes();
+        Map<String, ?> actualAttributes = actual.getFlashAttributes();
+        assertEquals(expectedAttributes.keySet(), actualAttributes.keySet());
+        assertEquals(expectedAttributes.get("successMessage"), actualAttributes.get("successMessage"));
+        assertEquals(expectedAttributes.get("errorMessage"), actualAttributes.get("errorMessage"));
+
+        List<?> failedOrders = assertInstanceOf(List.class, actualAttributes.get("failedOrders"));
+        assertEquals(1, failedOrders.size());
+        OrderActionResult failed = assertInstanceOf(OrderActionResult.class, failedOrders.get(0));
+        assertEquals(12L, failed.getOrderId());
+        assertFalse(failed.isSuccess());
+        assertEquals("Order is not pending", failed.getMessage());
+    }
+}
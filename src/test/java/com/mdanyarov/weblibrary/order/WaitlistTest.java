@@ -0,0 +1,134 @@
+package com.mdanyarov.weblibrary.order;
+
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.WaitlistDao;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.entity.WaitlistEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class WaitlistTest {
+
+    private static final Long BOOK = 1L;
+
+    private WaitlistDao waitlistDao;
+    private Waitlist waitlist;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        waitlistDao = mock(WaitlistDao.class);
+        ConnectionPool connectionPool = mock(ConnectionPool.class);
+        when(connectionPool.getConnection()).thenReturn(mock(Connection.class));
+        waitlist = new Waitlist(waitlistDao, connectionPool);
+    }
+
+    @Test
+    void positionsFollowRemovals() {
+        for (long user = 1; user <= 100; user++) {
+            waitlist.add(entry(user, BOOK, user));
+        }
+        waitlist.add(entry(101, 2L, 1));
+
+        assertEquals(100, waitlist.size(BOOK));
+        assertEquals(37, waitlist.getPosition(BOOK, 37L));
+        assertEquals(1, waitlist.getPosition(2L, 1L));
+
+        for (long user = 1; user <= 90; user += 2) {
+            waitlist.remove(BOOK, user);
+        }
+
+        assertEquals(55, waitlist.size(BOOK));
+        assertEquals(0, waitlist.getPosition(BOOK, 37L));
+        assertEquals(19, waitlist.getPosition(BOOK, 38L));
+        assertEquals(46, waitlist.getPosition(BOOK, 91L));
+        assertEquals(0, waitlist.getPosition(BOOK, 1000L));
+        assertEquals(0, waitlist.getPosition(3L, 1L));
+    }
+
+    @Test
+    void removingTheLastReaderEmptiesTheQueue() {
+        waitlist.add(entry(1, BOOK, 7));
+        waitlist.remove(BOOK, 7L);
+        waitlist.remove(BOOK, 7L);
+
+        assertEquals(0, waitlist.size(BOOK));
+        assertEquals(0, waitlist.getPosition(BOOK, 7L));
+    }
+
+    @Test
+    void keepsEntryOrderWhenAnOlderEntryArrivesLate() throws Exception {
+        when(waitlistDao.findAll(any())).thenReturn(List.of(entry(1, BOOK, 10), entry(5, BOOK, 50)));
+        waitlist.reload();
+
+        waitlist.add(entry(3, BOOK, 30));
+
+        assertEquals(1, waitlist.getPosition(BOOK, 10L));
+        assertEquals(2, waitlist.getPosition(BOOK, 30L));
+        assertEquals(3, waitlist.getPosition(BOOK, 50L));
+    }
+
+    @Test
+    void reloadKeepsChangesMadeWhileLoading() throws Exception {
+        waitlist.add(entry(1, BOOK, 10));
+        waitlist.add(entry(2, BOOK, 20));
+        when(waitlistDao.findAll(any())).thenAnswer(invocation -> {
+            List<WaitlistEntry> rows = new ArrayList<>(List.of(
+                    entry(1, BOOK, 10), entry(2, BOOK, 20), entry(3, BOOK, 30)));
+            // Local changes that committed after the rows were read
+            waitlist.remove(BOOK, 10L);
+            waitlist.add(entry(4, BOOK, 40));
+            return rows;
+        });
+
+        waitlist.reload();
+
+        assertEquals(3, waitlist.size(BOOK));
+        assertEquals(0, waitlist.getPosition(BOOK, 10L));
+        assertEquals(1, waitlist.getPosition(BOOK, 20L));
+        assertEquals(2, waitlist.getPosition(BOOK, 30L));
+        assertEquals(3, waitlist.getPosition(BOOK, 40L));
+    }
+
+    @Test
+    void listsThePositionsOfAReader() throws Exception {
+        waitlist.add(entry(1, 2L, 10));
+        waitlist.add(entry(2, BOOK, 20));
+        waitlist.add(entry(3, BOOK, 10));
+        waitlist.add(entry(4, 3L, 10));
+        waitlist.remove(3L, 10L);
+
+        assertEquals(Map.of(BOOK, 2, 2L, 1), waitlist.getPositions(10L));
+        assertEquals(Map.of(), waitlist.getPositions(30L));
+
+        when(waitlistDao.findAll(any())).thenReturn(List.of(entry(2, BOOK, 20), entry(3, BOOK, 10)));
+        waitlist.reload();
+
+        assertEquals(Map.of(BOOK, 2), waitlist.getPositions(10L));
+    }
+
+    @Test
+    void failedReloadKeepsTheCurrentQueues() throws Exception {
+        waitlist.add(entry(1, BOOK, 10));
+        when(waitlistDao.findAll(any())).thenThrow(new SQLException("down"));
+
+        waitlist.reload();
+        waitlist.add(entry(2, BOOK, 20));
+
+        assertEquals(2, waitlist.getPosition(BOOK, 20L));
+    }
+
+    private static WaitlistEntry entry(long id, Long bookId, long userId) {
+        return new WaitlistEntry(id, bookId, userId, Order.OrderType.HOME, null, null);
+    }
+}
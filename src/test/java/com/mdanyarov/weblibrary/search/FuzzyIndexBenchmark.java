@@ -0,0 +1,128 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures FuzzyIndex build time, lookup latency and update cost against the catalog size.
+ * <p>
+ * Not part of the regular build (surefire only picks up *Test classes); run it with
+ * {@code mvn test -Dtest=FuzzyIndexBenchmark}. The catalog is synthetic: random multi-syllable titles
+ * and authors give a much larger vocabulary than a real catalog, so the numbers are pessimistic.
+ */
+class FuzzyIndexBenchmark {
+
+    private static final int[] CATALOG_SIZES = {10_000, 50_000, 100_000};
+    private static final int LOOKUPS = 2_000;
+    private static final int UPDATES = 1_000;
+    private static final String[] SYLLABLES = {
+            "ka", "to", "mi", "re", "sa", "no", "vi", "le", "do", "ran", "bor", "ev", "sky", "ov", "in", "st"};
+
+    @Test
+    void fuzzyLookupAgainstCatalogSize() throws Exception {
+        System.out.println("books    build     p50       p99       update");
+        for (int size : CATALOG_SIZES) {
+            Random random = new Random(size);
+            List<Book> catalog = new ArrayList<>(size);
+            for (long id = 1; id <= size; id++) {
+                catalog.add(book(id, random));
+            }
+            FuzzyIndex index = index(catalog);
+
+            long start = System.nanoTime();
+            index.rebuild();
+            long buildNanos = System.nanoTime() - start;
+
+            List<String> queries = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Book book = catalog.get(random.nextInt(size));
+                queries.add(misspell(random.nextBoolean() ? book.getTitle() : book.getAuthor(), random));
+            }
+            Set<FuzzyIndex.Field> fields = EnumSet.allOf(FuzzyIndex.Field.class);
+            for (String query : queries) {
+                index.search(query, fields, 50);
+            }
+
+            long[] latencies = new long[LOOKUPS];
+            int found = 0;
+            for (int i = 0; i < LOOKUPS; i++) {
+                start = System.nanoTime();
+                found += index.search(queries.get(i % queries.size()), fields, 50).isEmpty() ? 0 : 1;
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+
+            start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                long id = 1 + random.nextInt(size);
+                index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, id, book(id, random)));
+            }
+            long updateNanos = (System.nanoTime() - start) / UPDATES;
+
+            System.out.printf("%-8d %-9s %-9s %-9s %s%n", size, millis(buildNanos),
+                    micros(latencies[LOOKUPS / 2]), micros(latencies[LOOKUPS * 99 / 100]), micros(updateNanos));
+            assertFalse(found == 0, "no misspelled query found its book");
+        }
+    }
+
+    private static FuzzyIndex index(List<Book> catalog) throws Exception {
+        BookDao bookDao = mock(BookDao.class);
+        ConnectionPool connectionPool = mock(ConnectionPool.class);
+        when(connectionPool.getConnection()).thenReturn(mock(Connection.class));
+        when(bookDao.findAll(any())).thenReturn(catalog);
+        return new FuzzyIndex(bookDao, connectionPool);
+    }
+
+    private static Book book(long id, Random random) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(words(random, 1 + random.nextInt(4)));
+        book.setAuthor(words(random, 2));
+        return book;
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            int syllables = 2 + random.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                text.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Replaces one character after the first, which the index corrects.
+     */
+    private static String misspell(String text, Random random) {
+        char[] chars = text.toCharArray();
+        int position = 1 + random.nextInt(chars.length - 1);
+        if (chars[position] != ' ') {
+            chars[position] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f ms", nanos / 1e6);
+    }
+
+    private static String micros(long nanos) {
+        return String.format("%d us", nanos / 1000);
+    }
+}
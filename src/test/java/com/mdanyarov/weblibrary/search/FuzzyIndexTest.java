@@ -0,0 +1,99 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FuzzyIndexTest {
+
+    private static final Set<FuzzyIndex.Field> BOTH = EnumSet.allOf(FuzzyIndex.Field.class);
+
+    private FuzzyIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BookDao bookDao = mock(BookDao.class);
+        ConnectionPool connectionPool = mock(ConnectionPool.class);
+        when(connectionPool.getConnection()).thenReturn(mock(Connection.class));
+        when(bookDao.findAll(any())).thenReturn(List.of(
+                book(1L, "Crime and Punishment", "Fyodor Dostoevsky"),
+                book(2L, "The Raven", "Edgar Allan Poe"),
+                book(3L, "War and Peace", "Leo Tolstoy"),
+                book(4L, "Brothers Karamazov", "Fyodor Dostoevsky")));
+
+        index = new FuzzyIndex(bookDao, connectionPool);
+        index.rebuild();
+    }
+
+    @Test
+    void matchesTransliterationVariants() {
+        assertEquals(List.of(1L, 4L), index.search("Dostoyevsky", BOTH, 10));
+        assertEquals(List.of(1L, 4L), index.search("Достоевский", BOTH, 10));
+    }
+
+    @Test
+    void boundsEditDistanceByTokenLength() {
+        // Up to 5 characters allow one edit, longer tokens two
+        assertEquals(List.of(2L), index.search("Pie", BOTH, 10));
+        assertTrue(index.search("Pxx", BOTH, 10).isEmpty());
+        assertEquals(List.of(3L), index.search("Tolstoja", BOTH, 10));
+        assertTrue(index.search("Tulstoja", BOTH, 10).isEmpty());
+    }
+
+    @Test
+    void doesNotCorrectTheFirstLetter() {
+        assertTrue(index.search("Fostoevsky", BOTH, 10).isEmpty());
+    }
+
+    @Test
+    void ignoresShortTokens() {
+        assertTrue(index.search("Po", BOTH, 10).isEmpty());
+        assertEquals(List.of(3L), index.search("of Tolstoi", BOTH, 10));
+    }
+
+    @Test
+    void requiresEveryTokenToMatch() {
+        assertEquals(List.of(1L), index.search("Dostoevski Crme", BOTH, 10));
+        assertTrue(index.search("Dostoevski Raven", BOTH, 10).isEmpty());
+    }
+
+    @Test
+    void searchesOnlyTheRequestedFields() {
+        assertTrue(index.search("Dostoevsky", EnumSet.of(FuzzyIndex.Field.TITLE), 10).isEmpty());
+        assertEquals(List.of(2L), index.search("Ravn", EnumSet.of(FuzzyIndex.Field.TITLE), 10));
+        assertTrue(index.search("Ravn", Set.of(), 10).isEmpty());
+        assertTrue(index.search("Ravn", BOTH, 0).isEmpty());
+    }
+
+    @Test
+    void followsBookChanges() {
+        index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 1L, null));
+        assertEquals(List.of(4L), index.search("Dostoyevsky", BOTH, 10));
+
+        index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, 2L,
+                book(2L, "The Gold-Bug", "Edgar Allan Poe")));
+        assertTrue(index.search("Ravn", BOTH, 10).isEmpty());
+        assertEquals(List.of(2L), index.search("Golt", BOTH, 10));
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        return book;
+    }
+}
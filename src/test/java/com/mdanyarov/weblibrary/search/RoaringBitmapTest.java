@@ -0,0 +1,112 @@
+package com.mdanyarov.weblibrary.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoaringBitmapTest {
+
+    @Test
+    void keepsValuesOnBothSidesOfChunkBoundaries() {
+        RoaringBitmap bitmap = RoaringBitmap.of(65_535, 65_536, 0, 131_071, 131_072, Integer.MAX_VALUE);
+
+        assertEquals(6, bitmap.getCardinality());
+        assertTrue(bitmap.contains(65_535));
+        assertTrue(bitmap.contains(65_536));
+        assertTrue(bitmap.contains(Integer.MAX_VALUE));
+        assertFalse(bitmap.contains(65_537));
+        assertFalse(bitmap.contains(-1));
+        assertEquals(List.of(0, 65_535, 65_536, 131_071, 131_072, Integer.MAX_VALUE), toList(bitmap));
+    }
+
+    @Test
+    void switchesBetweenArrayAndBitmapChunks() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        int dense = RoaringBitmap.ARRAY_LIMIT + 100;
+        for (int i = 0; i < dense; i++) {
+            bitmap.add(i * 2);
+        }
+        assertEquals(dense, bitmap.getCardinality());
+        assertTrue(bitmap.contains(2 * (dense - 1)));
+        assertFalse(bitmap.contains(1));
+
+        for (int i = 0; i < dense - 10; i++) {
+            bitmap.remove(i * 2);
+        }
+        assertEquals(10, bitmap.getCardinality());
+        assertFalse(bitmap.contains(0));
+        assertTrue(bitmap.contains(2 * (dense - 1)));
+
+        for (int i = dense - 10; i < dense; i++) {
+            bitmap.remove(i * 2);
+        }
+        assertTrue(bitmap.isEmpty());
+    }
+
+    @Test
+    void setOperationsMatchSortedSets() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Integer> left = randomSet(random);
+            TreeSet<Integer> right = randomSet(random);
+            RoaringBitmap a = toBitmap(left);
+            RoaringBitmap b = toBitmap(right);
+
+            TreeSet<Integer> intersection = new TreeSet<>(left);
+            intersection.retainAll(right);
+            TreeSet<Integer> union = new TreeSet<>(left);
+            union.addAll(right);
+
+            assertEquals(new ArrayList<>(intersection), toList(RoaringBitmap.and(a, b)));
+            assertEquals(intersection.size(), RoaringBitmap.andCardinality(a, b));
+            assertEquals(new ArrayList<>(union), toList(RoaringBitmap.or(a, b)));
+            assertEquals(new ArrayList<>(left), toList(a), "operands must not change");
+            assertEquals(new ArrayList<>(right), toList(b), "operands must not change");
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        RoaringBitmap original = RoaringBitmap.of(1, 70_000);
+        RoaringBitmap copy = original.copy();
+
+        copy.add(2);
+        copy.remove(70_000);
+
+        assertEquals(List.of(1, 70_000), toList(original));
+        assertEquals(List.of(1, 2), toList(copy));
+    }
+
+    @Test
+    void rejectsNegativeValues() {
+        assertThrows(IllegalArgumentException.class, () -> new RoaringBitmap().add(-5));
+    }
+
+    /**
+     * Values spread over four chunks, each chunk either sparse (array) or dense (bitmap).
+     */
+    private static TreeSet<Integer> randomSet(Random random) {
+        TreeSet<Integer> values = new TreeSet<>();
+        for (int chunk = 0; chunk < 4; chunk++) {
+            int count = random.nextBoolean() ? random.nextInt(200) : RoaringBitmap.ARRAY_LIMIT + random.nextInt(20_000);
+            for (int i = 0; i < count; i++) {
+                values.add((chunk << 16) | random.nextInt(1 << 16));
+            }
+        }
+        return values;
+    }
+
+    private static RoaringBitmap toBitmap(Collection<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static List<Integer> toList(RoaringBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
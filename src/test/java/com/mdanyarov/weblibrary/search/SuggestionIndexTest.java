@@ -0,0 +1,106 @@
+package com.mdanyarov.weblibrary.search;
+
+import com.mdanyarov.weblibrary.dao.BookDao;
+import com.mdanyarov.weblibrary.dao.ConnectionPool;
+import com.mdanyarov.weblibrary.dao.OrderDao;
+import com.mdanyarov.weblibrary.dto.BookSuggestion;
+import com.mdanyarov.weblibrary.entity.Book;
+import com.mdanyarov.weblibrary.entity.Order;
+import com.mdanyarov.weblibrary.event.BookChangedEvent;
+import com.mdanyarov.weblibrary.event.OrderChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SuggestionIndexTest {
+
+    private SuggestionIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BookDao bookDao = mock(BookDao.class);
+        OrderDao orderDao = mock(OrderDao.class);
+        ConnectionPool connectionPool = mock(ConnectionPool.class);
+        when(connectionPool.getConnection()).thenReturn(mock(Connection.class));
+        when(bookDao.findAll(any())).thenReturn(List.of(
+                book(1L, "The Great Gatsby", "F. Scott Fitzgerald"),
+                book(2L, "Great Expectations", "Charles Dickens"),
+                book(3L, "Crime and Punishment", "Фёдор Достоевский")));
+        when(orderDao.countOrdersByBook(any())).thenReturn(Map.of(2L, 5));
+
+        index = new SuggestionIndex(bookDao, orderDao, connectionPool);
+        index.rebuild();
+    }
+
+    @Test
+    void matchesWordStartsInsideTitles() {
+        List<BookSuggestion> suggestions = index.suggest("gat", 10);
+
+        assertEquals(1, suggestions.size());
+        assertEquals("The Great Gatsby", suggestions.get(0).getText());
+        assertEquals(1L, suggestions.get(0).getBookId());
+    }
+
+    @Test
+    void ranksByPopularity() {
+        assertEquals(List.of("Great Expectations", "The Great Gatsby"), texts(index.suggest("great", 10)));
+
+        for (int i = 0; i < 10; i++) {
+            index.onOrderChanged(new OrderChangedEvent((long) i, 1L, null, Order.OrderStatus.PENDING, null));
+        }
+
+        assertEquals(List.of("The Great Gatsby", "Great Expectations"), texts(index.suggest("great", 10)));
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        assertEquals(List.of("Фёдор Достоевский"), texts(index.suggest("ФЕДОР", 10)));
+        assertEquals(List.of("Crime and Punishment"), texts(index.suggest("  CRIME ", 10)));
+    }
+
+    @Test
+    void returnsNothingForEmptyPrefixOrLimit() {
+        assertTrue(index.suggest("", 10).isEmpty());
+        assertTrue(index.suggest("   ", 10).isEmpty());
+        assertTrue(index.suggest("great", 0).isEmpty());
+        assertTrue(index.suggest("zzz", 10).isEmpty());
+    }
+
+    @Test
+    void capsLimitAtTopK() {
+        assertEquals(1, index.suggest("great", 1).size());
+        assertTrue(index.suggest("g", 100).size() <= SuggestionIndex.TOP_K);
+    }
+
+    @Test
+    void followsBookChanges() {
+        index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, 1L,
+                book(1L, "Tender Is the Night", "F. Scott Fitzgerald")));
+        assertEquals(List.of("Great Expectations"), texts(index.suggest("great", 10)));
+        assertEquals(List.of("Tender Is the Night"), texts(index.suggest("tender", 10)));
+
+        index.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 2L, null));
+        assertTrue(index.suggest("great", 10).isEmpty());
+        assertTrue(index.suggest("dickens", 10).isEmpty());
+    }
+
+    private static List<String> texts(List<BookSuggestion> suggestions) {
+        return suggestions.stream().map(BookSuggestion::getText).toList();
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        return book;
+    }
+}
@@ -0,0 +1,91 @@
+package com.mdanyarov.weblibrary.security;
+
+import com.mdanyarov.weblibrary.cache.BoundedCache;
+import com.mdanyarov.weblibrary.entity.User;
+import com.mdanyarov.weblibrary.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CurrentUserArgumentResolverTest {
+
+    private static final LocalDateTime LOGIN = LocalDateTime.of(2025, 3, 1, 9, 0);
+
+    private UserService userService;
+    private BoundedCache<String, Optional<User>> userCache;
+    private CurrentUserArgumentResolver resolver;
+    private final MockHttpServletRequest request = new MockHttpServletRequest();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userService = mock(UserService.class);
+        userCache = new BoundedCache<>("users", 100, Duration.ofMinutes(1));
+        resolver = new CurrentUserArgumentResolver(new CustomUserDetailsService(userService, userCache), userService);
+
+        User user = user(User.UserRole.READER, LOGIN);
+        when(userService.findByUsername("reader")).thenReturn(Optional.of(user));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new CustomUserDetailsService.CustomUserPrincipal(user), null, List.of()));
+        request.getSession(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void servesTheSnapshotWithoutPassword() throws Exception {
+        User first = resolve();
+        User second = resolve();
+
+        assertEquals(7L, second.getId());
+        assertNull(first.getPassword());
+        assertNotSame(first, second);
+        verify(userService, times(1)).findByUsername("reader");
+    }
+
+    @Test
+    void rebuildsTheSnapshotWhenUpdatedAtChanges() throws Exception {
+        assertEquals(User.UserRole.READER, resolve().getRole());
+
+        // A change this node never heard of, picked up once the cached user expires
+        when(userService.findByUsername("reader"))
+                .thenReturn(Optional.of(user(User.UserRole.LIBRARIAN, LOGIN.plusMinutes(5))));
+        userCache.invalidateAll();
+
+        assertEquals(User.UserRole.LIBRARIAN, resolve().getRole());
+    }
+
+    @Test
+    void rebuildsTheSnapshotWhenTheRoleChangesWithinTheSameSecond() throws Exception {
+        resolve();
+
+        when(userService.findByUsername("reader")).thenReturn(Optional.of(user(User.UserRole.ADMIN, LOGIN)));
+        userCache.invalidateAll();
+
+        assertEquals(User.UserRole.ADMIN, resolve().getRole());
+    }
+
+    private User resolve() throws Exception {
+        return (User) resolver.resolveArgument(null, null, new ServletWebRequest(request), null);
+    }
+
+    private static User user(User.UserRole role, LocalDateTime updatedAt) {
+        User user = new User(7L, "reader", "hash", "reader@example.com", "Ann", "Reader", role, User.UserStatus.ACTIVE);
+        user.setUpdatedAt(updatedAt);
+        return user;
+    }
+}